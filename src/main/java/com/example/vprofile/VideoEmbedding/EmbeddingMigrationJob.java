@@ -0,0 +1,55 @@
+package com.example.vprofile.VideoEmbedding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rewrites embeddings saved as JSON text into the float32 BLOB column, a
+ * batch at a time, until none are left. Rows are converted with a
+ * conditional update, so several nodes can run it at once.
+ */
+@Component
+public class EmbeddingMigrationJob {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingMigrationJob.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    private final EmbeddingService embeddingService;
+
+    @Value("${embedding.migration.enabled:true}")
+    private boolean enabled;
+
+    // Set once a run finds nothing to convert; new embeddings are written as BLOBs
+    private volatile boolean finished;
+
+    public EmbeddingMigrationJob(EmbeddingService embeddingService) {
+        this.embeddingService = embeddingService;
+    }
+
+    @Scheduled(initialDelay = 30000, fixedDelayString = "${embedding.migration.poll-ms:60000}")
+    public void migrate() {
+        if (!enabled || finished) {
+            return;
+        }
+        long start = System.nanoTime();
+        int total = 0;
+        try {
+            int migrated;
+            do {
+                migrated = embeddingService.migrateJsonEmbeddings(BATCH_SIZE);
+                total += migrated;
+            } while (migrated > 0);
+        } catch (RuntimeException e) {
+            log.warn("Embedding migration failed after {} rows: {}", total, e.getMessage());
+            return;
+        }
+        if (total > 0) {
+            log.info("Migrated {} JSON embeddings to float32 in {} ms", total, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            finished = true;
+        }
+    }
+}
@@ -3,17 +3,27 @@ package com.example.vprofile.VideoEmbedding;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import com.example.vprofile.videofolder.Video;
 import com.example.vprofile.videofolder.VideoRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import reactor.core.publisher.Mono;
+
 /**
  * Service responsible for generating and retrieving embedding vectors
  * by interacting with the external BGE FastAPI service.
@@ -21,6 +31,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 @Service
 public class EmbeddingService {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingService.class);
 
     @Autowired
     private VideoRepository videoRepo;
@@ -28,6 +39,12 @@ public class EmbeddingService {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private SemanticSearchIndex semanticSearchIndex;
+
+    @Autowired
+    private QueryEmbeddingCache queryCache;
+
     // IMPORTANT: Update this URL to match your running FastAPI server
     private final WebClient webClient = WebClient.builder()
             .baseUrl("http://app.wezume.in:8000")
@@ -39,7 +56,8 @@ public class EmbeddingService {
 
     /**
      * Generates a highly focused embedding for a video using semantic key point
-     * extraction.
+     * extraction, stores it and adds it to the semantic index. Run by the
+     * pipeline's EMBED stage once the transcript is saved.
      */
     public void generateEmbeddingFor(Video video) throws Exception {
 
@@ -63,14 +81,46 @@ public class EmbeddingService {
                 .block();
 
         if (response == null || !response.containsKey("embedding")) {
-            return;
+            // Failing lets the pipeline retry with backoff
+            throw new IllegalStateException("No embedding returned for video " + video.getId());
         }
 
-        List<Double> vector = (List<Double>) response.get("embedding");
-        String jsonVector = mapper.writeValueAsString(vector);
+        float[] vector = EmbeddingCodec.toVector((List<Number>) response.get("embedding"));
 
-        video.setEmbeddingVector(jsonVector);
-        videoRepo.save(video);
+        // Reload: other stages may have updated the row during the request
+        Optional<Video> current = videoRepo.findById(video.getId());
+        if (current.isEmpty()) {
+            return;
+        }
+        Video saved = current.get();
+        saved.setEmbedding(EmbeddingCodec.encode(vector));
+        saved.setEmbeddingVector(null);
+        // Tells other nodes' semantic index sync that the vector changed
+        saved.setEmbeddingVersion(saved.getEmbeddingVersion() + 1);
+        videoRepo.save(saved);
+        semanticSearchIndex.add(saved.getId(), saved.getJobId(), saved.getCollege(), saved.getEmbeddingVersion(),
+                vector);
+    }
+
+    /**
+     * Converts up to {@code batchSize} embeddings still stored as JSON to the
+     * float32 column. Returns how many rows were converted.
+     */
+    @Transactional
+    public int migrateJsonEmbeddings(int batchSize) {
+        int migrated = 0;
+        for (Object[] row : videoRepo.findJsonEmbeddings(PageRequest.of(0, batchSize))) {
+            Long videoId = (Long) row[0];
+            try {
+                List<Double> values = mapper.readValue((String) row[1], new TypeReference<List<Double>>() {});
+                migrated += videoRepo.storeMigratedEmbedding(videoId,
+                        EmbeddingCodec.encode(EmbeddingCodec.toVector(values)));
+            } catch (Exception e) {
+                // Left as JSON; the semantic index skips it too
+                log.warn("Could not migrate embedding of video {}: {}", videoId, e.getMessage());
+            }
+        }
+        return migrated;
     }
 
     // --- Core Search Query Embedding (Dynamic Logic) ---
@@ -78,6 +128,8 @@ public class EmbeddingService {
     /**
      * Generates a 'query' mode embedding for text input.
      * Handles combined searches ("finance and marketing") by averaging vectors.
+     * Embeddings are cached by the text sent to the service, so repeated
+     * searches and shared concepts skip the round-trip.
      */
     public List<Double> getEmbeddingForText(String query) throws Exception {
 
@@ -100,42 +152,54 @@ public class EmbeddingService {
 
                 // Skip if either concept is too short
                 if (concept1.length() < 3 || concept2.length() < 3) {
-                    return getRawVector("query: " + sanitizedQuery);
+                    return await(rawVector("query: " + sanitizedQuery));
                 }
 
-                // 1. Embed individual concepts with focused prompts
-                List<Double> vector1 = getRawVector("query: " + concept1 + " expertise and skills");
-                List<Double> vector2 = getRawVector("query: " + concept2 + " expertise and skills");
+                // 1. Embed individual concepts with focused prompts, both requests in parallel
+                CompletableFuture<List<Double>> vector1 = rawVector("query: " + concept1 + " expertise and skills");
+                CompletableFuture<List<Double>> vector2 = rawVector("query: " + concept2 + " expertise and skills");
 
                 // 2. Combine/Average the vectors
-                return combineVectors(vector1, vector2);
+                return combineVectors(await(vector1), await(vector2));
             }
         }
 
         // Default: Fallback to single query embedding
-        return getRawVector("query: " + sanitizedQuery);
+        return await(rawVector("query: " + sanitizedQuery));
     }
 
     /**
-     * Private utility method to get a raw vector for a specific piece of text from
-     * the FastAPI /embed endpoint.
+     * Raw vector for a specific piece of text, from the cache or the FastAPI
+     * /embed endpoint.
      */
-    private List<Double> getRawVector(String text) throws Exception {
+    private CompletableFuture<List<Double>> rawVector(String text) {
+        return queryCache.get(text, t -> requestVector(t).toFuture());
+    }
+
+    private Mono<List<Double>> requestVector(String text) {
         Map<String, Object> body = Map.of(
                 "input", text,
                 "type", "query");
 
-        Map<String, Object> response = webClient.post()
+        return webClient.post()
                 .uri("/embed")
                 .bodyValue(body)
                 .retrieve()
                 .bodyToMono(Map.class)
-                .block();
+                .filter(response -> response.containsKey("embedding"))
+                .map(response -> (List<Double>) response.get("embedding"))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Failed to retrieve embedding for query: " + text)));
+    }
 
-        if (response == null || !response.containsKey("embedding")) {
-            throw new RuntimeException("Failed to retrieve embedding for query: " + text);
+    private static List<Double> await(CompletableFuture<List<Double>> vector) throws Exception {
+        try {
+            return vector.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
         }
-        return (List<Double>) response.get("embedding");
     }
 
     /**
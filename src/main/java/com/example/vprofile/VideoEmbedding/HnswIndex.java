@@ -0,0 +1,318 @@
+package com.example.vprofile.VideoEmbedding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph (Malkov &amp; Yashunin) for
+ * approximate cosine nearest-neighbour search. Vectors are normalised on the
+ * way in so similarity is a plain dot product. Not thread-safe; see
+ * {@link SemanticSearchIndex} for the locking.
+ *
+ * Nodes are numbered in insertion order. Replacing or removing a video only
+ * marks its node dead: it keeps routing searches but is never returned.
+ *
+ * Scoped searches that leave only a small part of the graph are answered by
+ * an exact scan of that part, which is both faster and exact there; wider
+ * ones walk the graph and skip non-matching nodes while collecting results.
+ */
+final class HnswIndex implements VectorIndex {
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    // Scoped searches over at most this many nodes scan them exactly
+    private final int exactScanMax;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private float[][] vectors = new float[256][];
+    private long[] videoIds = new long[256];
+    // node -> level -> neighbour nodes
+    private int[][][] links = new int[256][][];
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> nodeByVideo = new HashMap<>();
+
+    HnswIndex(int dimension, int m, int efConstruction, int efSearch, int exactScanMax) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.exactScanMax = exactScanMax;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return nodeByVideo.size();
+    }
+
+    @Override
+    public int nodeCount() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(long videoId) {
+        return nodeByVideo.containsKey(videoId);
+    }
+
+    @Override
+    public long videoId(int node) {
+        return videoIds[node];
+    }
+
+    @Override
+    public BitSet liveNodes() {
+        return live;
+    }
+
+    @Override
+    public int insert(long videoId, float[] vector) {
+        remove(videoId);
+        float[] normalised = VectorIndex.normalise(vector, dimension);
+        int node = size++;
+        if (node == vectors.length) {
+            int capacity = node * 2;
+            vectors = Arrays.copyOf(vectors, capacity);
+            videoIds = Arrays.copyOf(videoIds, capacity);
+            links = Arrays.copyOf(links, capacity);
+        }
+        vectors[node] = normalised;
+        videoIds[node] = videoId;
+        live.set(node);
+        nodeByVideo.put(videoId, node);
+
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[0];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(normalised, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(normalised, ep, efConstruction, l, null);
+            int[] selected = selectNeighbours(normalised, candidates, m);
+            links[node][l] = selected;
+            int maxConnections = l == 0 ? maxM0 : m;
+            for (int neighbour : selected) {
+                connect(neighbour, node, l, maxConnections);
+            }
+            ep = candidates.get(0).node;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    @Override
+    public void remove(long videoId) {
+        Integer node = nodeByVideo.remove(videoId);
+        if (node != null) {
+            live.clear(node);
+        }
+    }
+
+    @Override
+    public List<Candidate> search(float[] query, int k, BitSet scope) {
+        if (scope == null) {
+            return searchGraph(query, k, efSearch, null);
+        }
+        int matching = scope.cardinality();
+        if (matching <= Math.max(exactScanMax, k)) {
+            return exactSearch(query, k, scope);
+        }
+        // The graph has to be walked further to collect k matches when most nodes are skipped
+        int spread = (int) Math.ceil((double) size() / matching);
+        int ef = Math.min(size(), Math.max(efSearch, k) * Math.min(spread, 8));
+        return searchGraph(query, k, ef, scope::get);
+    }
+
+    /**
+     * Approximate top {@code k} live nodes accepted by {@code filter} (null
+     * accepts all), best first.
+     */
+    private List<Candidate> searchGraph(float[] query, int k, int ef, IntPredicate filter) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        float[] q = VectorIndex.normalise(query, dimension);
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(q, ep, l);
+        }
+        IntPredicate accept = filter == null ? live::get : node -> live.get(node) && filter.test(node);
+        List<Candidate> results = searchLayer(q, ep, Math.max(ef, k), 0, accept);
+        return results.size() > k ? new ArrayList<>(results.subList(0, k)) : results;
+    }
+
+    @Override
+    public List<Candidate> exactSearch(float[] query, int k, BitSet nodes) {
+        float[] q = VectorIndex.normalise(query, dimension);
+        PriorityQueue<Candidate> top = new PriorityQueue<>(Comparator.comparingDouble(c -> c.similarity));
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            if (!live.get(node)) {
+                continue;
+            }
+            float similarity = VectorIndex.dot(q, vectors[node]);
+            if (top.size() < k) {
+                top.add(new Candidate(node, similarity));
+            } else if (similarity > top.peek().similarity) {
+                top.poll();
+                top.add(new Candidate(node, similarity));
+            }
+        }
+        List<Candidate> result = new ArrayList<>(top);
+        result.sort(BEST_FIRST);
+        return result;
+    }
+
+    private int greedyClosest(float[] q, int start, int level) {
+        int current = start;
+        float best = VectorIndex.dot(q, vectors[current]);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : neighbours(current, level)) {
+                float similarity = VectorIndex.dot(q, vectors[neighbour]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer. Every node is traversed, but only those
+     * accepted by {@code accept} (all if null) are collected. Best first.
+     */
+    private List<Candidate> searchLayer(float[] q, int ep, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(c -> c.similarity));
+
+        Candidate start = new Candidate(ep, VectorIndex.dot(q, vectors[ep]));
+        visited.set(ep);
+        frontier.add(start);
+        if (accept == null || accept.test(ep)) {
+            results.add(start);
+        }
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (results.size() >= ef && current.similarity < results.peek().similarity) {
+                break;
+            }
+            for (int neighbour : neighbours(current.node, level)) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = VectorIndex.dot(q, vectors[neighbour]);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    frontier.add(candidate);
+                    if (accept == null || accept.test(neighbour)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * Neighbour selection heuristic: a candidate is kept only if it is closer
+     * to the new node than to every neighbour already kept, which spreads the
+     * links in different directions. Free slots are then filled with the
+     * closest of the skipped candidates.
+     */
+    private int[] selectNeighbours(float[] q, List<Candidate> candidates, int limit) {
+        List<Candidate> kept = new ArrayList<>(limit);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (kept.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate other : kept) {
+                if (VectorIndex.dot(vectors[candidate.node], vectors[other.node]) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? kept : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && kept.size() < limit; i++) {
+            kept.add(skipped.get(i));
+        }
+        int[] result = new int[kept.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = kept.get(i).node;
+        }
+        return result;
+    }
+
+    private void connect(int from, int to, int level, int maxConnections) {
+        int[] existing = links[from][level];
+        if (existing.length < maxConnections) {
+            int[] grown = Arrays.copyOf(existing, existing.length + 1);
+            grown[existing.length] = to;
+            links[from][level] = grown;
+            return;
+        }
+        float[] base = vectors[from];
+        List<Candidate> candidates = new ArrayList<>(existing.length + 1);
+        for (int node : existing) {
+            candidates.add(new Candidate(node, VectorIndex.dot(base, vectors[node])));
+        }
+        candidates.add(new Candidate(to, VectorIndex.dot(base, vectors[to])));
+        candidates.sort(BEST_FIRST);
+        links[from][level] = selectNeighbours(base, candidates, maxConnections);
+    }
+
+    private int[] neighbours(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return level < nodeLinks.length ? nodeLinks[level] : EMPTY;
+    }
+
+}
@@ -0,0 +1,262 @@
+package com.example.vprofile.VideoEmbedding;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Brute-force index over int8 copies of the embeddings. Each vector is
+ * normalised and scalar-quantised with its own scale, so the arena holds one
+ * byte per dimension instead of the four a float copy takes. A search scores
+ * every node in scope on the quantised vectors, then re-ranks the best
+ * {@code rerank} of them with the exact float vectors from the
+ * {@link VectorStore}, which read from the mapped file rather than the heap.
+ * Not thread-safe; see {@link SemanticSearchIndex} for the locking.
+ *
+ * Nodes are numbered in insertion order. Replacing or removing a video only
+ * marks its node dead; the space is reclaimed when the index is rebuilt.
+ * The codes live in one array, which caps the index at about 2.8 million
+ * 768-dimensional vectors.
+ */
+final class QuantizedIndex implements VectorIndex {
+
+    private final int dimension;
+    private final int rerank;
+    private final VectorStore store;
+
+    private byte[] codes;
+    private float[] scales = new float[1024];
+    private long[] videoIds = new long[1024];
+    private int size;
+
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> nodeByVideo = new HashMap<>();
+
+    QuantizedIndex(int dimension, int rerank, VectorStore store) {
+        this.dimension = dimension;
+        this.rerank = rerank;
+        this.store = store;
+        this.codes = new byte[dimension * 1024];
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return nodeByVideo.size();
+    }
+
+    @Override
+    public int nodeCount() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(long videoId) {
+        return nodeByVideo.containsKey(videoId);
+    }
+
+    @Override
+    public long videoId(int node) {
+        return videoIds[node];
+    }
+
+    @Override
+    public BitSet liveNodes() {
+        return live;
+    }
+
+    @Override
+    public int insert(long videoId, float[] vector) {
+        float[] normalised = VectorIndex.normalise(vector, dimension);
+        remove(videoId);
+        int node = size++;
+        if (node == videoIds.length) {
+            int capacity = (int) Math.min((long) node * 2, (Integer.MAX_VALUE - 8) / dimension);
+            if (capacity <= node) {
+                size--;
+                throw new IllegalArgumentException("Quantized index is full at " + node + " vectors");
+            }
+            codes = Arrays.copyOf(codes, capacity * dimension);
+            scales = Arrays.copyOf(scales, capacity);
+            videoIds = Arrays.copyOf(videoIds, capacity);
+        }
+        scales[node] = quantize(normalised, codes, node * dimension);
+        videoIds[node] = videoId;
+        live.set(node);
+        nodeByVideo.put(videoId, node);
+        return node;
+    }
+
+    @Override
+    public void remove(long videoId) {
+        Integer node = nodeByVideo.remove(videoId);
+        if (node != null) {
+            live.clear(node);
+        }
+    }
+
+    @Override
+    public List<Candidate> search(float[] query, int k, BitSet scope) {
+        float[] q = VectorIndex.normalise(query, dimension);
+        byte[] queryCodes = new byte[dimension];
+        float queryScale = quantize(q, queryCodes, 0);
+
+        // Min-heap of the best approximate scores so far, kept in parallel primitive arrays
+        int capacity = Math.max(k, rerank);
+        int[] heapNodes = new int[capacity];
+        float[] heapScores = new float[capacity];
+        int heapSize = 0;
+        BitSet nodes = scope != null ? scope : live;
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            if (node >= size || !live.get(node)) {
+                continue;
+            }
+            float score = dot(queryCodes, codes, node * dimension, dimension) * queryScale * scales[node];
+            if (heapSize < capacity) {
+                heapNodes[heapSize] = node;
+                heapScores[heapSize] = score;
+                siftUp(heapNodes, heapScores, heapSize++);
+            } else if (score > heapScores[0]) {
+                heapNodes[0] = node;
+                heapScores[0] = score;
+                siftDown(heapNodes, heapScores, heapSize);
+            }
+        }
+
+        List<Candidate> reranked = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            int node = heapNodes[i];
+            float exact = exactSimilarity(q, node);
+            reranked.add(new Candidate(node, Float.isNaN(exact) ? heapScores[i] : exact));
+        }
+        reranked.sort(BEST_FIRST);
+        return reranked.size() > k ? new ArrayList<>(reranked.subList(0, k)) : reranked;
+    }
+
+    @Override
+    public List<Candidate> exactSearch(float[] query, int k, BitSet nodes) {
+        float[] q = VectorIndex.normalise(query, dimension);
+        PriorityQueue<Candidate> top = new PriorityQueue<>(Comparator.comparingDouble(c -> c.similarity));
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            if (node >= size || !live.get(node)) {
+                continue;
+            }
+            float similarity = exactSimilarity(q, node);
+            if (Float.isNaN(similarity)) {
+                continue;
+            }
+            if (top.size() < k) {
+                top.add(new Candidate(node, similarity));
+            } else if (similarity > top.peek().similarity) {
+                top.poll();
+                top.add(new Candidate(node, similarity));
+            }
+        }
+        List<Candidate> result = new ArrayList<>(top);
+        result.sort(BEST_FIRST);
+        return result;
+    }
+
+    /**
+     * Cosine similarity between the normalised query and the stored float
+     * vector, or NaN if the store no longer has a matching vector.
+     */
+    private float exactSimilarity(float[] q, int node) {
+        FloatBuffer vector = store.get(videoIds[node]);
+        if (vector == null || vector.remaining() != dimension) {
+            return Float.NaN;
+        }
+        double dot = 0;
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            float value = vector.get(i);
+            dot += value * q[i];
+            norm += value * value;
+        }
+        return norm > 0 ? (float) (dot / Math.sqrt(norm)) : 0;
+    }
+
+    /**
+     * Symmetric int8 quantisation of {@code vector} into {@code target} at
+     * {@code offset}. Returns the scale that maps the codes back to floats.
+     */
+    private static float quantize(float[] vector, byte[] target, int offset) {
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        if (max == 0) {
+            Arrays.fill(target, offset, offset + vector.length, (byte) 0);
+            return 0;
+        }
+        float scale = max / 127f;
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+
+    /**
+     * Integer dot product of {@code a} with the {@code length} codes of
+     * {@code b} starting at {@code offset}. Kept as a plain counted loop with
+     * one accumulator, the shape C2 auto-vectorises; manual unrolling
+     * measured slower.
+     */
+    static int dot(byte[] a, byte[] b, int offset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[offset + i];
+        }
+        return sum;
+    }
+
+    private static void siftUp(int[] nodes, float[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] <= scores[i]) {
+                return;
+            }
+            swap(nodes, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] nodes, float[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < size && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(nodes, scores, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] nodes, float[] scores, int i, int j) {
+        int node = nodes[i];
+        nodes[i] = nodes[j];
+        nodes[j] = node;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
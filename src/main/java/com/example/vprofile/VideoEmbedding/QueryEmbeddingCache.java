@@ -0,0 +1,155 @@
+package com.example.vprofile.VideoEmbedding;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bounded LRU cache of query embeddings keyed by the text sent to the
+ * embedding service, with entries expiring after a TTL. Concurrent misses
+ * for the same text share one request instead of each calling the service.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Guarded by itself; access order makes it an LRU
+    private final LinkedHashMap<String, Entry> entries;
+    // Requests under way, so concurrent misses for the same text wait for the first one
+    private final Map<String, CompletableFuture<List<Double>>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Timer fetchTimer;
+
+    public QueryEmbeddingCache(MeterRegistry meterRegistry,
+            @Value("${embedding.query-cache.max-entries:1000}") int maxEntries,
+            @Value("${embedding.query-cache.ttl-minutes:60}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > QueryEmbeddingCache.this.maxEntries;
+            }
+        };
+
+        this.hits = Counter.builder("embedding.query.cache")
+                .tag("result", "hit")
+                .description("Query embeddings served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("embedding.query.cache")
+                .tag("result", "miss")
+                .description("Query embeddings requested from the embedding service")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("embedding.query.cache")
+                .tag("result", "coalesced")
+                .description("Query embeddings that joined a request already under way")
+                .register(meterRegistry);
+        this.fetchTimer = Timer.builder("embedding.query.fetch")
+                .description("Round-trip time of a query embedding request")
+                .register(meterRegistry);
+        Gauge.builder("embedding.query.cache.hit.ratio", this, QueryEmbeddingCache::hitRatio)
+                .description("Share of query embeddings not requested from the embedding service")
+                .register(meterRegistry);
+        Gauge.builder("embedding.query.cache.size", this, QueryEmbeddingCache::size)
+                .description("Query embeddings currently cached")
+                .register(meterRegistry);
+    }
+
+    private static final class Entry {
+        final List<Double> vector;
+        final long expiresAt;
+
+        Entry(List<Double> vector, long expiresAt) {
+            this.vector = vector;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Cached embedding of {@code text}, or the result of {@code loader} for
+     * it, shared with any concurrent caller asking for the same text. Failed
+     * loads are not cached.
+     */
+    public CompletableFuture<List<Double>> get(String text,
+            Function<String, CompletableFuture<List<Double>>> loader) {
+        synchronized (entries) {
+            Entry entry = entries.get(text);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return CompletableFuture.completedFuture(entry.vector);
+                }
+                entries.remove(text);
+            }
+        }
+
+        CompletableFuture<List<Double>> created = new CompletableFuture<>();
+        CompletableFuture<List<Double>> existing = inFlight.putIfAbsent(text, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        misses.increment();
+        long start = System.nanoTime();
+        CompletableFuture<List<Double>> load;
+        try {
+            load = loader.apply(text);
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((vector, error) -> {
+            fetchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            List<Double> cached = null;
+            Throwable failure = error;
+            if (failure == null) {
+                try {
+                    cached = List.copyOf(vector);
+                } catch (RuntimeException e) {
+                    // Null vector or components
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                synchronized (entries) {
+                    entries.put(text, new Entry(cached, System.nanoTime() + ttlNanos));
+                }
+                // Cached before leaving the in-flight map, so no caller misses both
+                inFlight.remove(text, created);
+                created.complete(cached);
+            } else {
+                inFlight.remove(text, created);
+                created.completeExceptionally(failure);
+            }
+        });
+        return created;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double served = hits.count() + coalesced.count();
+        double total = served + misses.count();
+        return total == 0 ? 0 : served / total;
+    }
+}
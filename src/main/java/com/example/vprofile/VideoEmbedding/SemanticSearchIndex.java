@@ -0,0 +1,525 @@
+package com.example.vprofile.VideoEmbedding;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.vprofile.videofolder.VideoRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-memory {@link VectorIndex} over the stored video embeddings for semantic
+ * candidate search, with optional jobId and college filters. Built in the
+ * background at startup from the local {@link VectorStore}, which is first
+ * topped up from the database; afterwards a periodic sync adds embeddings saved by
+ * other nodes and drops deleted videos, and embeddings saved on this node
+ * are added as they are stored.
+ *
+ * {@code semantic.index.engine} picks the index: {@code hnsw} (the default)
+ * keeps a graph over float copies of the vectors; {@code quantized} keeps
+ * int8 copies at a quarter of the memory and scans them, re-ranking the best
+ * candidates against the exact vectors, which suits very large corpora and
+ * searches filtered to large job pools.
+ */
+@Service
+public class SemanticSearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(SemanticSearchIndex.class);
+
+    private static final int BATCH_SIZE = 200;
+
+    private final VideoRepository videoRepo;
+    private final ObjectMapper mapper;
+    private final VectorStore vectorStore;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Null until the first build has finished
+    private VectorIndex index;
+    private Partitions partitions = new Partitions();
+
+    @Value("${semantic.index.engine:hnsw}")
+    private String engine;
+
+    @Value("${semantic.index.m:16}")
+    private int m;
+
+    @Value("${semantic.index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${semantic.index.ef-search:100}")
+    private int efSearch;
+
+    // Filtered searches over at most this many videos scan them exactly
+    @Value("${semantic.index.exact-scan-max:5000}")
+    private int exactScanMax;
+
+    // Quantised candidates re-ranked with the exact vectors per search
+    @Value("${semantic.index.rerank:300}")
+    private int rerank;
+
+    // Replaced and removed videos leave dead nodes behind; past this share
+    // of all nodes the next sync rebuilds, as VectorStore.load compacts at half
+    @Value("${semantic.index.max-dead-ratio:0.5}")
+    private double maxDeadRatio;
+
+    public SemanticSearchIndex(VideoRepository videoRepo, ObjectMapper mapper, VectorStore vectorStore) {
+        this.videoRepo = videoRepo;
+        this.mapper = mapper;
+        this.vectorStore = vectorStore;
+    }
+
+    public static final class Hit {
+        private final Long videoId;
+        private final double similarity;
+
+        Hit(Long videoId, double similarity) {
+            this.videoId = videoId;
+            this.similarity = similarity;
+        }
+
+        public Long getVideoId() {
+            return videoId;
+        }
+
+        /**
+         * Cosine similarity to the query, in [-1, 1].
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return index != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Videos most similar to the query vector, best first. Empty until the
+     * index has been built. Blank filters are ignored; college matches
+     * ignoring case.
+     */
+    public List<Hit> search(float[] query, int k, String jobId, String college) {
+        lock.readLock().lock();
+        try {
+            if (index == null || k <= 0 || query.length != index.dimension()) {
+                return List.of();
+            }
+            return toHits(index.search(query, k, scope(jobId, college)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces a video's embedding, e.g. right after it is saved.
+     */
+    public void add(Long videoId, String jobId, String college, int version, float[] embedding) {
+        try {
+            vectorStore.put(videoId, version, embedding);
+        } catch (IOException e) {
+            log.warn("Could not write embedding of video {} to the vector store: {}", videoId, e.getMessage());
+        }
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                insert(index, partitions, videoId, jobId, college, version, embedding);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping embedding of video {}: {}", videoId, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Brings the index in line with the table: builds it the first time,
+     * afterwards adds missing embeddings, re-reads the ones whose
+     * embeddingVersion changed, moves videos whose jobId or college changed
+     * and drops videos that are gone. Rebuilds once too many nodes are dead.
+     */
+    @Scheduled(initialDelay = 2000, fixedDelayString = "${semantic.index.sync-ms:300000}")
+    public void sync() {
+        try {
+            if (!isReady()) {
+                build();
+            } else if (deadRatio() > maxDeadRatio) {
+                log.info("Semantic index is {}% dead nodes, rebuilding", Math.round(deadRatio() * 100));
+                build();
+            }
+            // Also picks up whatever was saved while a build ran
+            catchUp();
+        } catch (RuntimeException e) {
+            log.warn("Semantic index sync failed: {}", e.getMessage());
+        }
+    }
+
+    private double deadRatio() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.deadRatio();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        List<Object[]> videos = videoRepo.findEmbeddedVideos();
+        fillStore(videos);
+
+        VectorIndex fresh = null;
+        Partitions freshPartitions = new Partitions();
+        for (Object[] row : videos) {
+            float[] vector = vectorStore.read((Long) row[0]);
+            if (vector == null) {
+                continue;
+            }
+            if (fresh == null) {
+                fresh = newIndex(vector.length);
+            }
+            try {
+                insert(fresh, freshPartitions, (Long) row[0], (String) row[1], (String) row[2],
+                        vectorStore.version((Long) row[0]), vector);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping embedding of video {}: {}", row[0], e.getMessage());
+            }
+        }
+        if (fresh == null) {
+            // Nothing embedded yet; the next sync tries again
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+            partitions = freshPartitions;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Semantic index built ({}): {} videos, {} dimensions in {} ms", engine, fresh.size(),
+                fresh.dimension(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private VectorIndex newIndex(int dimension) {
+        if ("quantized".equalsIgnoreCase(engine)) {
+            return new QuantizedIndex(dimension, rerank, vectorStore);
+        }
+        return new HnswIndex(dimension, m, efConstruction, efSearch, exactScanMax);
+    }
+
+    private void catchUp() {
+        if (!isReady()) {
+            return;
+        }
+        List<Object[]> videos = videoRepo.findEmbeddedVideos();
+        Set<Long> stored = new HashSet<>();
+        videos.forEach(row -> stored.add((Long) row[0]));
+        for (Long videoId : List.copyOf(vectorStore.videoIds())) {
+            if (!stored.contains(videoId)) {
+                vectorStore.remove(videoId);
+            }
+        }
+
+        List<Object[]> changed = new ArrayList<>();
+        int moved = 0;
+        lock.writeLock().lock();
+        try {
+            for (Long videoId : List.copyOf(partitions.videos.keySet())) {
+                if (!stored.contains(videoId)) {
+                    index.remove(videoId);
+                    partitions.remove(videoId);
+                }
+            }
+            for (Object[] row : videos) {
+                Long videoId = (Long) row[0];
+                IndexedVideo indexed = partitions.videos.get(videoId);
+                if (indexed == null || indexed.version != version(row[3])) {
+                    changed.add(row);
+                } else if (!indexed.matches((String) row[1], (String) row[2])) {
+                    // Same vector under a new jobId or college: only the partitions change
+                    partitions.put(indexed.node, videoId, (String) row[1], (String) row[2], indexed.version);
+                    moved++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (moved > 0) {
+            log.info("Semantic index moved {} videos to a new jobId or college", moved);
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        fillStore(changed);
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : changed) {
+                Long videoId = (Long) row[0];
+                float[] vector = vectorStore.read(videoId);
+                if (vector != null && vector.length == index.dimension()) {
+                    insert(index, partitions, videoId, (String) row[1], (String) row[2],
+                            vectorStore.version(videoId), vector);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Semantic index caught up with {} new or changed embeddings", changed.size());
+    }
+
+    /**
+     * Copies the vectors the local store does not have yet, or has at an
+     * older embeddingVersion, from the database.
+     */
+    private void fillStore(List<Object[]> videos) {
+        List<Long> stale = new ArrayList<>();
+        for (Object[] row : videos) {
+            if (vectorStore.version((Long) row[0]) != version(row[3])) {
+                stale.add((Long) row[0]);
+            }
+        }
+        for (int from = 0; from < stale.size(); from += BATCH_SIZE) {
+            for (Object[] row : videoRepo.findEmbeddings(stale.subList(from, Math.min(stale.size(), from + BATCH_SIZE)))) {
+                float[] vector = decode(row);
+                if (vector == null) {
+                    continue;
+                }
+                try {
+                    vectorStore.put((Long) row[0], version(row[3]), vector);
+                } catch (IOException e) {
+                    log.warn("Could not write to the vector store: {}", e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares index search with an exact scan on {@code queries} stored
+     * vectors picked at random: mean recall@k and latency percentiles for
+     * both. The video a query was taken from is left out of both result
+     * lists, since finding itself would inflate recall. Runs under the read
+     * lock, so it does not block searches.
+     */
+    public Map<String, Object> benchmark(int queries, int k) {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            if (index == null || index.size() == 0) {
+                result.put("message", "Semantic index is not built yet");
+                return result;
+            }
+            BitSet live = index.liveNodes();
+            int[] nodes = live.stream().toArray();
+            Random random = new Random(7);
+            long[] indexNanos = new long[queries];
+            long[] exactNanos = new long[queries];
+            double recallSum = 0;
+            for (int i = 0; i < queries; i++) {
+                int source = nodes[random.nextInt(nodes.length)];
+                float[] query = vectorStore.read(index.videoId(source));
+                if (query == null || query.length != index.dimension()) {
+                    source = -1;
+                    query = new float[index.dimension()];
+                    for (int d = 0; d < query.length; d++) {
+                        query[d] = (float) random.nextGaussian();
+                    }
+                }
+
+                long start = System.nanoTime();
+                List<VectorIndex.Candidate> approximate = index.search(query, k + 1, null);
+                indexNanos[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<VectorIndex.Candidate> exact = index.exactSearch(query, k + 1, live);
+                exactNanos[i] = System.nanoTime() - start;
+
+                approximate = withoutNode(approximate, source, k);
+                exact = withoutNode(exact, source, k);
+
+                Set<Integer> truth = new HashSet<>();
+                exact.forEach(c -> truth.add(c.node));
+                long found = approximate.stream().filter(c -> truth.contains(c.node)).count();
+                recallSum += truth.isEmpty() ? 1 : (double) found / truth.size();
+            }
+            result.put("engine", engine);
+            result.put("videos", index.size());
+            result.put("dimensions", index.dimension());
+            result.put("queries", queries);
+            result.put("k", k);
+            if (index instanceof QuantizedIndex) {
+                result.put("rerank", rerank);
+            } else {
+                result.put("efSearch", efSearch);
+            }
+            result.put("recall", recallSum / queries);
+            result.put("indexMicros", percentiles(indexNanos));
+            result.put("exactMicros", percentiles(exactNanos));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<VectorIndex.Candidate> withoutNode(List<VectorIndex.Candidate> candidates, int node, int k) {
+        List<VectorIndex.Candidate> result = new ArrayList<>(k);
+        for (VectorIndex.Candidate candidate : candidates) {
+            if (candidate.node != node && result.size() < k) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Object> percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mean", Arrays.stream(sorted).average().orElse(0) / 1000.0);
+        result.put("p50", sorted[sorted.length / 2] / 1000.0);
+        result.put("p99", sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1000.0);
+        return result;
+    }
+
+    private BitSet scope(String jobId, String college) {
+        BitSet scope = null;
+        if (jobId != null && !jobId.isBlank()) {
+            scope = copy(partitions.byJob.get(jobId));
+        }
+        if (college != null && !college.isBlank()) {
+            BitSet byCollege = copy(partitions.byCollege.get(college.trim().toLowerCase()));
+            if (scope == null) {
+                scope = byCollege;
+            } else {
+                scope.and(byCollege);
+            }
+        }
+        return scope;
+    }
+
+    private static BitSet copy(BitSet nodes) {
+        return nodes != null ? (BitSet) nodes.clone() : new BitSet();
+    }
+
+    private List<Hit> toHits(List<VectorIndex.Candidate> candidates) {
+        List<Hit> hits = new ArrayList<>(candidates.size());
+        for (VectorIndex.Candidate candidate : candidates) {
+            hits.add(new Hit(index.videoId(candidate.node), candidate.similarity));
+        }
+        return hits;
+    }
+
+    private static void insert(VectorIndex target, Partitions into, Long videoId, String jobId, String college,
+            int version, float[] vector) {
+        into.remove(videoId);
+        int node = target.insert(videoId, vector);
+        into.put(node, videoId, jobId, college, version);
+    }
+
+    private static int version(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * Vector from an (id, embedding, embeddingVector, embeddingVersion) row: the float32 BLOB,
+     * or the legacy JSON for rows the migration has not reached yet.
+     */
+    private float[] decode(Object[] row) {
+        byte[] blob = (byte[]) row[1];
+        if (blob != null && blob.length > 0) {
+            return EmbeddingCodec.decode(blob);
+        }
+        String json = (String) row[2];
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            List<Double> values = mapper.readValue(json, new TypeReference<List<Double>>() {});
+            return values.isEmpty() ? null : EmbeddingCodec.toVector(values);
+        } catch (Exception e) {
+            log.warn("Unreadable embedding for video {}: {}", row[0], e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Filter bitsets over the index nodes, plus what each video was indexed
+     * with so a sync can tell what changed. Guarded by the index lock.
+     */
+    private static final class Partitions {
+        final Map<String, BitSet> byJob = new HashMap<>();
+        final Map<String, BitSet> byCollege = new HashMap<>();
+        final Map<Long, IndexedVideo> videos = new HashMap<>();
+
+        void put(int node, Long videoId, String jobId, String college, int version) {
+            remove(videoId);
+            IndexedVideo indexed = new IndexedVideo(node, jobKey(jobId), collegeKey(college), version);
+            if (indexed.jobId != null) {
+                byJob.computeIfAbsent(indexed.jobId, k -> new BitSet()).set(node);
+            }
+            if (indexed.college != null) {
+                byCollege.computeIfAbsent(indexed.college, k -> new BitSet()).set(node);
+            }
+            videos.put(videoId, indexed);
+        }
+
+        void remove(Long videoId) {
+            IndexedVideo indexed = videos.remove(videoId);
+            if (indexed == null) {
+                return;
+            }
+            if (indexed.jobId != null) {
+                byJob.get(indexed.jobId).clear(indexed.node);
+            }
+            if (indexed.college != null) {
+                byCollege.get(indexed.college).clear(indexed.node);
+            }
+        }
+    }
+
+    private static final class IndexedVideo {
+        final int node;
+        final String jobId;
+        final String college;
+        final int version;
+
+        IndexedVideo(int node, String jobId, String college, int version) {
+            this.node = node;
+            this.jobId = jobId;
+            this.college = college;
+            this.version = version;
+        }
+
+        boolean matches(String jobId, String college) {
+            return Objects.equals(this.jobId, jobKey(jobId)) && Objects.equals(this.college, collegeKey(college));
+        }
+    }
+
+    private static String jobKey(String jobId) {
+        return jobId != null && !jobId.isBlank() ? jobId : null;
+    }
+
+    private static String collegeKey(String college) {
+        return college != null && !college.isBlank() ? college.trim().toLowerCase() : null;
+    }
+}
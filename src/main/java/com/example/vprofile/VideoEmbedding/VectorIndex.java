@@ -0,0 +1,101 @@
+package com.example.vprofile.VideoEmbedding;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Nearest-neighbour index over video embeddings, by cosine similarity.
+ * Entries are numbered nodes; replacing or removing a video only marks its
+ * node dead. Implementations are not thread-safe; {@link SemanticSearchIndex}
+ * does the locking.
+ */
+interface VectorIndex {
+
+    Comparator<Candidate> BEST_FIRST = Comparator.comparingDouble((Candidate c) -> c.similarity).reversed();
+
+    int dimension();
+
+    int size();
+
+    /**
+     * Node numbers used so far, live or dead.
+     */
+    int nodeCount();
+
+    /**
+     * Dead nodes as a share of all nodes used.
+     */
+    default double deadRatio() {
+        int nodes = nodeCount();
+        return nodes == 0 ? 0 : 1.0 - (double) size() / nodes;
+    }
+
+    boolean contains(long videoId);
+
+    long videoId(int node);
+
+    /**
+     * Live nodes, i.e. the ones a search may return. Do not modify.
+     */
+    BitSet liveNodes();
+
+    /**
+     * Adds the video, replacing any earlier vector for it. Returns the node.
+     */
+    int insert(long videoId, float[] vector);
+
+    void remove(long videoId);
+
+    /**
+     * Top {@code k} live nodes, restricted to {@code scope} unless it is null,
+     * best first. May be approximate.
+     */
+    List<Candidate> search(float[] query, int k, BitSet scope);
+
+    /**
+     * Exact top {@code k} among the given nodes, best first. The reference
+     * for benchmarks.
+     */
+    List<Candidate> exactSearch(float[] query, int k, BitSet nodes);
+
+    /**
+     * Unit-length copy of the vector; all zeros stays all zeros.
+     */
+    static float[] normalise(float[] vector, int dimension) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Expected a " + dimension + "-dimensional vector, got " + vector.length);
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] result = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                result[i] = (float) (vector[i] / norm);
+            }
+        }
+        return result;
+    }
+
+    static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    final class Candidate {
+        final int node;
+        final float similarity;
+
+        Candidate(int node, float similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.vprofile.VideoEmbedding;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local, append-only mirror of the stored embeddings in a memory-mapped
+ * file, so index builds and exact scans read vectors straight from the page
+ * cache instead of fetching and decoding them from the database. The
+ * database stays the source of truth: the file is only a cache and is
+ * refilled from there if it is lost or discarded.
+ *
+ * The file is a sequence of 64 MB segments, each mapped separately. A record
+ * is a little-endian header (magic, video id, dimension, embedding version)
+ * followed by the float32 components, and never crosses a segment boundary.
+ * Writing a video again appends a new record and points the id at it; the
+ * old record stays as dead space until the file is discarded on a later
+ * start. The version is the row's embeddingVersion, so a sync can tell when
+ * another node has replaced a vector.
+ */
+@Component
+public class VectorStore {
+    private static final Logger log = LoggerFactory.getLogger(VectorStore.class);
+
+    private static final int MAGIC = 0x32434556; // "VEC2"
+    private static final int HEADER_BYTES = 20;
+    private static final long SEGMENT_BYTES = 64L << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    // video id -> offset of its latest record
+    private final Map<Long, Long> offsets = new ConcurrentHashMap<>();
+    private long end;
+
+    public VectorStore(@Value("${embedding.store.path:media_analysis/embeddings.vec}") String location)
+            throws IOException {
+        this.path = Paths.get(location).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        load();
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.close();
+    }
+
+    public boolean contains(long videoId) {
+        return offsets.containsKey(videoId);
+    }
+
+    public Set<Long> videoIds() {
+        return offsets.keySet();
+    }
+
+    public int size() {
+        return offsets.size();
+    }
+
+    /**
+     * Read-only view of the stored vector, backed by the mapped file, or null
+     * if the video is not stored.
+     */
+    public FloatBuffer get(long videoId) {
+        Long offset = offsets.get(videoId);
+        if (offset == null) {
+            return null;
+        }
+        MappedByteBuffer segment = segments.get((int) (offset / SEGMENT_BYTES));
+        int position = (int) (offset % SEGMENT_BYTES);
+        int dimension = segment.getInt(position + 12);
+        return segment.slice(position + HEADER_BYTES, dimension * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer()
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * Embedding version of the stored vector, or -1 if the video is not
+     * stored.
+     */
+    public int version(long videoId) {
+        Long offset = offsets.get(videoId);
+        if (offset == null) {
+            return -1;
+        }
+        return segments.get((int) (offset / SEGMENT_BYTES)).getInt((int) (offset % SEGMENT_BYTES) + 16);
+    }
+
+    /**
+     * Copy of the stored vector, or null if the video is not stored.
+     */
+    public float[] read(long videoId) {
+        FloatBuffer view = get(videoId);
+        if (view == null) {
+            return null;
+        }
+        float[] vector = new float[view.remaining()];
+        view.get(vector);
+        return vector;
+    }
+
+    public synchronized void put(long videoId, int version, float[] vector) throws IOException {
+        int recordBytes = HEADER_BYTES + vector.length * Float.BYTES;
+        if (recordBytes > SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Vector too large for the store: " + vector.length);
+        }
+        long remaining = SEGMENT_BYTES - end % SEGMENT_BYTES;
+        if (remaining < recordBytes) {
+            end += remaining;
+        }
+        int index = (int) (end / SEGMENT_BYTES);
+        while (segments.size() <= index) {
+            segments.add(map(segments.size()));
+        }
+        MappedByteBuffer segment = segments.get(index);
+        int position = (int) (end % SEGMENT_BYTES);
+        segment.putLong(position + 4, videoId);
+        segment.putInt(position + 12, vector.length);
+        segment.putInt(position + 16, version);
+        segment.slice(position + HEADER_BYTES, vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer()
+                .put(vector);
+        // Written last, so a record cut short by a crash is not picked up on the next start
+        segment.putInt(position, MAGIC);
+
+        offsets.put(videoId, end);
+        end += recordBytes;
+    }
+
+    public void remove(long videoId) {
+        offsets.remove(videoId);
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, index * SEGMENT_BYTES, SEGMENT_BYTES);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        return segment;
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        int segmentCount = (int) ((fileSize + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(map(i));
+        }
+        if (segmentCount > 0 && segments.get(0).getInt(0) != MAGIC) {
+            // Empty, or written in an older format: start over and let the sync refill it
+            segments.clear();
+            channel.truncate(0);
+            end = 0;
+            log.info("Vector store {}: starting empty", path);
+            return;
+        }
+        long position = 0;
+        long totalBytes = 0;
+        while (position < segmentCount * SEGMENT_BYTES) {
+            MappedByteBuffer segment = segments.get((int) (position / SEGMENT_BYTES));
+            int local = (int) (position % SEGMENT_BYTES);
+            boolean headerFits = SEGMENT_BYTES - local >= HEADER_BYTES;
+            if (!headerFits || segment.getInt(local) != MAGIC) {
+                // Either the padding at the end of a segment or the end of the data
+                long next = (position / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+                if (local == 0 || next >= segmentCount * SEGMENT_BYTES
+                        || segments.get((int) (next / SEGMENT_BYTES)).getInt(0) != MAGIC) {
+                    break;
+                }
+                position = next;
+                continue;
+            }
+            int dimension = segment.getInt(local + 12);
+            long recordBytes = HEADER_BYTES + (long) dimension * Float.BYTES;
+            if (dimension <= 0 || local + recordBytes > SEGMENT_BYTES) {
+                log.warn("Corrupt record at offset {} in {}, ignoring the rest", position, path);
+                break;
+            }
+            offsets.put(segment.getLong(local + 4), position);
+            totalBytes += recordBytes;
+            position += recordBytes;
+        }
+        end = position;
+        long liveBytes = 0;
+        for (Map.Entry<Long, Long> entry : offsets.entrySet()) {
+            MappedByteBuffer segment = segments.get((int) (entry.getValue() / SEGMENT_BYTES));
+            liveBytes += HEADER_BYTES + (long) segment.getInt((int) (entry.getValue() % SEGMENT_BYTES) + 12) * Float.BYTES;
+        }
+
+        if (totalBytes > SEGMENT_BYTES && liveBytes * 2 < totalBytes) {
+            // Mostly superseded records: start over and let the sync refill it from the database
+            log.info("Discarding {} ({} of {} bytes live)", path, liveBytes, totalBytes);
+            segments.clear();
+            offsets.clear();
+            channel.truncate(0);
+            end = 0;
+            return;
+        }
+        log.info("Vector store {}: {} vectors", path, offsets.size());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.vprofile.analysis;
+
+import java.time.LocalDateTime;
+
+import com.example.vprofile.transcription.Transcript;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Analysis results remembered by SHA-256 of the media they were computed
+ * from. Transcripts and speech features are stored under the audio-track
+ * hash, facial features under the hash of the uploaded file; a transcript is
+ * also stored under the upload hash so a byte-identical re-upload finds it
+ * before its audio has been extracted.
+ */
+@Entity
+@Table(name = "analysis_cache", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"content_hash"})
+})
+public class AnalysisCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(columnDefinition = "LONGTEXT")
+    private String transcription;
+
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] wordTimings;
+
+    // Speech features (see ProsodyFeatures)
+    private Double pitch;
+    private Double energy;
+    private Double tone;
+    private Double voiceProb;
+    private Double zcr;
+    // ProsodyExtractor name; features from one extractor are not valid for another
+    @Column(length = 32)
+    private String prosodyExtractor;
+
+    // Facial scores (see FacialScoring)
+    private Double smileScore;
+    private Double eyeContactScore;
+    private Double straightFaceScore;
+    private Double facialTotalScore;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public AnalysisCacheEntry() {
+    }
+
+    public AnalysisCacheEntry(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    @PrePersist
+    void prePersist() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void preUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public boolean hasProsody(String extractor) {
+        return extractor != null && extractor.equalsIgnoreCase(prosodyExtractor)
+                && pitch != null && energy != null && tone != null && voiceProb != null && zcr != null;
+    }
+
+    public boolean hasFacialScores() {
+        return smileScore != null && eyeContactScore != null && straightFaceScore != null
+                && facialTotalScore != null;
+    }
+
+    public ProsodyFeatures toProsodyFeatures() {
+        return new ProsodyFeatures(pitch, energy, tone, voiceProb, zcr);
+    }
+
+    public Transcript toTranscript() {
+        return new Transcript(transcription, wordTimings);
+    }
+
+    public void setTranscript(Transcript transcript) {
+        this.transcription = transcript.getText();
+        this.wordTimings = transcript.getWordTimings();
+    }
+
+    public void setProsody(String extractor, ProsodyFeatures features) {
+        this.prosodyExtractor = extractor;
+        this.pitch = features.getPitch();
+        this.energy = features.getEnergy();
+        this.tone = features.getTone();
+        this.voiceProb = features.getVoiceProb();
+        this.zcr = features.getZcr();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getTranscription() {
+        return transcription;
+    }
+
+    public void setTranscription(String transcription) {
+        this.transcription = transcription;
+    }
+
+    public Double getSmileScore() {
+        return smileScore;
+    }
+
+    public void setSmileScore(Double smileScore) {
+        this.smileScore = smileScore;
+    }
+
+    public Double getEyeContactScore() {
+        return eyeContactScore;
+    }
+
+    public void setEyeContactScore(Double eyeContactScore) {
+        this.eyeContactScore = eyeContactScore;
+    }
+
+    public Double getStraightFaceScore() {
+        return straightFaceScore;
+    }
+
+    public void setStraightFaceScore(Double straightFaceScore) {
+        this.straightFaceScore = straightFaceScore;
+    }
+
+    public Double getFacialTotalScore() {
+        return facialTotalScore;
+    }
+
+    public void setFacialTotalScore(Double facialTotalScore) {
+        this.facialTotalScore = facialTotalScore;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
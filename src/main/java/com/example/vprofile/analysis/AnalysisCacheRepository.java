@@ -0,0 +1,10 @@
+package com.example.vprofile.analysis;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AnalysisCacheRepository extends JpaRepository<AnalysisCacheEntry, Long> {
+
+        Optional<AnalysisCacheEntry> findByContentHash(String contentHash);
+}
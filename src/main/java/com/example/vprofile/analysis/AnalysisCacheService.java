@@ -0,0 +1,137 @@
+package com.example.vprofile.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.example.vprofile.transcription.Transcript;
+
+/**
+ * Lets re-uploads of the same clip reuse earlier transcription and analysis
+ * results instead of paying for them again. Entries are keyed by SHA-256 of
+ * the uploaded bytes or of the extracted analysis audio.
+ */
+@Service
+public class AnalysisCacheService {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisCacheService.class);
+
+    @Autowired
+    private AnalysisCacheRepository cacheRepository;
+
+    @Value("${analysis.cache.enabled:true}")
+    private boolean enabled;
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * SHA-256 of a file, read in a streaming fashion.
+     */
+    public static String hashFile(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest);
+    }
+
+    /**
+     * Cached transcript for the first of the given hashes that has one.
+     */
+    public Optional<Transcript> findTranscription(String... hashes) {
+        for (String hash : hashes) {
+            Optional<Transcript> hit = find(hash)
+                    .filter(entry -> entry.getTranscription() != null)
+                    .map(AnalysisCacheEntry::toTranscript);
+            if (hit.isPresent()) {
+                logger.info("♻️ Transcript cache hit for {}", hash);
+                return hit;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Cached speech features for the audio, if they were produced by the named
+     * {@link ProsodyExtractor}.
+     */
+    public Optional<ProsodyFeatures> findProsody(String audioHash, String extractor) {
+        return find(audioHash).filter(entry -> entry.hasProsody(extractor))
+                .map(AnalysisCacheEntry::toProsodyFeatures);
+    }
+
+    public Optional<AnalysisCacheEntry> findFacialScores(String contentHash) {
+        return find(contentHash).filter(AnalysisCacheEntry::hasFacialScores);
+    }
+
+    public void storeTranscription(Transcript transcript, String... hashes) {
+        for (String hash : hashes) {
+            update(hash, entry -> entry.setTranscript(transcript));
+        }
+    }
+
+    public void storeProsody(String audioHash, String extractor, ProsodyFeatures features) {
+        update(audioHash, entry -> entry.setProsody(extractor, features));
+    }
+
+    public void storeFacialScores(String contentHash, double smile, double eyeContact, double straightFace,
+            double total) {
+        update(contentHash, entry -> {
+            entry.setSmileScore(smile);
+            entry.setEyeContactScore(eyeContact);
+            entry.setStraightFaceScore(straightFace);
+            entry.setFacialTotalScore(total);
+        });
+    }
+
+    private Optional<AnalysisCacheEntry> find(String hash) {
+        if (!enabled || hash == null) {
+            return Optional.empty();
+        }
+        return cacheRepository.findByContentHash(hash);
+    }
+
+    private void update(String hash, Consumer<AnalysisCacheEntry> change) {
+        if (!enabled || hash == null) {
+            return;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            AnalysisCacheEntry entry = cacheRepository.findByContentHash(hash)
+                    .orElseGet(() -> new AnalysisCacheEntry(hash));
+            change.accept(entry);
+            try {
+                cacheRepository.save(entry);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Another worker created the row first; apply the change to theirs
+            }
+        }
+        logger.warn("Could not update analysis cache entry {}", hash);
+    }
+}
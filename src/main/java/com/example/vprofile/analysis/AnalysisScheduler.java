@@ -1,18 +1,61 @@
 package com.example.vprofile.analysis;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import com.example.vprofile.VideoEmbedding.EmbeddingService;
+import com.example.vprofile.ffmpeg.TranscodeExecutor;
+import com.example.vprofile.ffmpeg.TranscodePolicy;
+import com.example.vprofile.pipeline.PipelineJob;
+import com.example.vprofile.pipeline.PipelineJobService;
+import com.example.vprofile.pipeline.PipelineTimelineEntry;
+import com.example.vprofile.pipeline.PipelineTimelineService;
+import com.example.vprofile.score.FacialScoringRepository;
 import com.example.vprofile.score.FacialScoringService;
+import com.example.vprofile.score.SpeechScoreRepository;
+import com.example.vprofile.transcription.TranscriptionService;
+import com.example.vprofile.videofolder.MediaLocator;
 import com.example.vprofile.videofolder.Video;
 import com.example.vprofile.videofolder.VideoRepository;
 import com.example.vprofile.videofolder.VideoService;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Drains the pipeline_job queue. Each tick claims as many jobs per stage as
+ * there are idle workers for that stage and hands them to the stage's thread
+ * pool, so backlog throughput scales with worker count and node count instead
+ * of one video per cron tick.
+ *
+ * Stage order comes from {@link PipelineJob.Stage}: when a job completes, the
+ * successors it unblocks are enqueued and their stage is polled right away,
+ * so a video moves along its critical path without waiting for the next
+ * tick. The scheduled polls remain for retries and for work enqueued by
+ * other nodes.
+ */
 @Component
 public class AnalysisScheduler {
     private static final Logger logger = LoggerFactory.getLogger(AnalysisScheduler.class);
@@ -29,65 +72,409 @@ public class AnalysisScheduler {
     @Autowired
     private AudioAnalysisService audioAnalysisService;
 
-    // Scheduler for Transcription - Runs every 30s, picks up newly uploaded videos
-    @Scheduled(fixedRate = 30000)
-    public void scheduleTranscription() {
-        Optional<Video> videoOpt = videoRepository.findFirstNeedingTranscription();
-        if (videoOpt.isPresent()) {
-            Video video = videoOpt.get();
-            try {
-                logger.info("🎙 Starting transcription for video ID: {}", video.getId());
-                videoService.transcribeVideo(video.getId());
-                logger.info("✅ Transcription complete for video ID: {}", video.getId());
-            } catch (Exception e) {
-                logger.error("❌ Transcription failed for video ID {}: {}", video.getId(), e.getMessage(), e);
+    @Autowired
+    private FacialScoringRepository facialScoringRepository;
+
+    @Autowired
+    private SpeechScoreRepository speechScoreRepository;
+
+    @Autowired
+    private PipelineJobService pipelineJobService;
+
+    @Autowired
+    private TranscodeExecutor transcodeExecutor;
+
+    @Autowired
+    private MediaLocator mediaLocator;
+
+    @Autowired
+    private TranscriptionService transcriptionService;
+
+    @Autowired
+    private PipelineTimelineService timelineService;
+
+    @Autowired
+    private TranscodePolicy transcodePolicy;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Value("${transcode.reencode.enabled:true}")
+    private boolean reencodeEnabled;
+
+    // Threads that prepare audio and submit it; the remote jobs themselves are not counted here
+    @Value("${pipeline.transcribe.workers:2}")
+    private int transcribeWorkers;
+
+    @Value("${pipeline.facial.workers:1}")
+    private int facialWorkers;
+
+    // Speech analyses run in isolated workspaces, so several can share a node
+    @Value("${pipeline.speech.workers:2}")
+    private int speechWorkers;
+
+    // Each embedding is one blocking call to the embedding service
+    @Value("${pipeline.embed.workers:1}")
+    private int embedWorkers;
+
+    private final Map<PipelineJob.Stage, StageWorkers> workers = new EnumMap<>(PipelineJob.Stage.class);
+
+    // Job ids currently executing on this node; their leases are renewed by heartbeat()
+    private final Set<Long> runningJobIds = ConcurrentHashMap.newKeySet();
+
+    // Runs out-of-band polls for stages that a completed job just unblocked
+    private final ExecutorService wakeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pipeline-wake");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    void startWorkers() {
+        workers.put(PipelineJob.Stage.TRANSCRIBE, new StageWorkers("transcribe", transcribeWorkers));
+        workers.put(PipelineJob.Stage.FACIAL, new StageWorkers("facial", facialWorkers));
+        workers.put(PipelineJob.Stage.SPEECH, new StageWorkers("speech", speechWorkers));
+        workers.put(PipelineJob.Stage.EMBED, new StageWorkers("embed", embedWorkers));
+        if (facialScoringService == null) {
+            pipelineJobService.disableStage(PipelineJob.Stage.FACIAL);
+        }
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        // Interrupted jobs keep status RUNNING and are reclaimed once their lease expires
+        wakeExecutor.shutdownNow();
+        workers.values().forEach(w -> w.executor.shutdownNow());
+    }
+
+    // Compression runs on the dedicated transcode pool rather than a stage pool so
+    // that its size and lanes are shared with upload admission control
+    @Scheduled(fixedDelay = 5000)
+    public void pollCompression() {
+        transcodeExecutor.recordBacklog(pipelineJobService.countBacklog(PipelineJob.Stage.COMPRESS));
+
+        JobHandler handler = (job, video) -> videoService.compressVideo(video.getId(), Paths.get(job.getPayload()));
+        for (PipelineJob job : pipelineJobService.claim(PipelineJob.Stage.COMPRESS, transcodeExecutor.freeSlots())) {
+            TranscodeExecutor.Lane lane = job.getPriority() > 0
+                    ? TranscodeExecutor.Lane.REUPLOAD
+                    : TranscodeExecutor.Lane.FIRST_UPLOAD;
+            runningJobIds.add(job.getId());
+            boolean accepted = transcodeExecutor.submit(lane, job.getCreatedAt(), () -> {
+                try {
+                    run(job, handler);
+                } finally {
+                    runningJobIds.remove(job.getId());
+                }
+            });
+            if (!accepted) {
+                runningJobIds.remove(job.getId());
+                pipelineJobService.release(job.getId());
             }
         }
     }
 
-    // Scheduler for Facial Analysis - Runs every minute
-    @Scheduled(cron = "0 * * * * *")
-    public void scheduleFacialAnalysis() {
+    // Transcription is remote: the stage pool only prepares and submits, and up to
+    // transcription.max-in-flight jobs wait on the provider without holding a thread
+    @Scheduled(fixedDelay = 10000)
+    public void pollTranscription() {
+        int capacity = transcriptionService.getVideoMaxInFlight();
+        dispatchAsync(PipelineJob.Stage.TRANSCRIBE, capacity, (job, video) -> {
+            logger.info("🎙 Starting transcription for video ID: {}", video.getId());
+            return videoService.transcribeVideoAsync(video.getId())
+                    .thenRun(() -> logger.info("✅ Transcription complete for video ID: {}", video.getId()));
+        });
+    }
+
+    @Scheduled(fixedDelay = 15000)
+    public void pollFacialAnalysis() {
         if (facialScoringService == null) {
-            logger.warn("⚠️ Facial Analysis Service not available (Haar cascade files missing)");
             return;
         }
+        dispatch(PipelineJob.Stage.FACIAL, (job, video) -> {
+            if (facialScoringRepository.findByVideoId(video.getId()).isPresent()) {
+                return;
+            }
+            logger.info("🎥 Starting facial analysis for video ID: {}", video.getId());
+            // Decode the local compressed file when this node has it; fall back to the public URL
+            String source = mediaLocator.findLocal(video.getFilePath())
+                    .map(Path::toString)
+                    .orElseGet(() -> mediaLocator.resolve(video.getUrl()));
+            double score = facialScoringService.analyzeVideoAndScore(source, video.getId());
+            if (score < 0) {
+                throw new IOException("Facial analysis produced no frames for video " + video.getId());
+            }
+        });
+    }
 
-        logger.info("🕒 Facial Analysis Scheduler Triggered...");
-        Optional<Video> videoOpt = videoRepository.findFirstMissingFacialScore();
+    // A batching extractor queues prepared WAVs instead of holding a worker for
+    // each one, so more jobs than workers can be in flight; scoring itself
+    // still runs on the stage pool
+    @Scheduled(fixedDelay = 15000)
+    public void pollAudioAnalysis() {
+        StageWorkers stageWorkers = workers.get(PipelineJob.Stage.SPEECH);
+        int capacity = Math.max(stageWorkers.size, audioAnalysisService.getMaxInFlight());
+        dispatchAsync(PipelineJob.Stage.SPEECH, capacity, (job, video) -> {
+            if (speechScoreRepository.findByVideoId(video.getId()).isPresent()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            logger.info("🎵 Starting audio analysis for video ID: {}", video.getId());
+            return audioAnalysisService.analyzeAudioAsync(mediaLocator.resolve(video.getUrl()), video.getId(),
+                    stageWorkers.executor);
+        });
+    }
 
-        if (videoOpt.isPresent()) {
-            Video video = videoOpt.get();
+    @Scheduled(fixedDelay = 15000)
+    public void pollEmbedding() {
+        dispatch(PipelineJob.Stage.EMBED, (job, video) -> {
+            if (video.getTranscription() == null || video.getTranscription().isBlank()) {
+                return;
+            }
+            logger.info("🧭 Generating search embedding for video ID: {}", video.getId());
+            embeddingService.generateEmbeddingFor(video);
+        });
+    }
+
+    // Uploads transcoded with a faster preset during a backlog get the quality
+    // preset once the transcode pool has nothing else to do. A claim that is
+    // never run is released straight away; one whose re-encode failed is left
+    // to expire (transcode.reencode.claim-timeout-minutes) so a broken file is
+    // not retried on every poll, and after transcode.reencode.max-attempts
+    // claims the video keeps its faster-preset file.
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${transcode.reencode.poll-ms:60000}")
+    public void pollReencode() {
+        if (!reencodeEnabled || !transcodeExecutor.isIdle()) {
+            return;
+        }
+        for (Video video : videoService.findNeedingReencode(transcodePolicy.getQualityPreset(), 1)) {
+            if (!videoService.claimReencode(video.getId())) {
+                continue;
+            }
+            Long videoId = video.getId();
+            boolean submitted = false;
             try {
-                logger.info("🎥 Staring scheduled facial analysis for video ID: {}", video.getId());
-                facialScoringService.analyzeVideoAndScore(video.getUrl(), video.getId());
-            } catch (Exception e) {
-                logger.error("❌ Error in scheduled facial analysis for video ID {}: {}", video.getId(), e.getMessage(),
-                        e);
+                submitted = transcodeExecutor.submit(TranscodeExecutor.Lane.BACKGROUND, LocalDateTime.now(), () -> {
+                    try {
+                        logger.info("🎞 Re-encoding video ID {} at the quality preset", videoId);
+                        videoService.reencodeAtQuality(videoId);
+                    } catch (InterruptedException e) {
+                        // Shutting down mid re-encode; let the next node start over
+                        videoService.releaseReencode(videoId);
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        int attempts = video.getReencodeAttempts() == null ? 1 : video.getReencodeAttempts() + 1;
+                        if (attempts >= videoService.getReencodeMaxAttempts()) {
+                            logger.error("❌ Quality re-encode failed for video ID {} (attempt {}), giving up: {}",
+                                    videoId, attempts, e.getMessage());
+                        } else {
+                            logger.warn("Quality re-encode failed for video ID {} (attempt {}): {}", videoId,
+                                    attempts, e.getMessage());
+                        }
+                    }
+                });
+            } finally {
+                if (!submitted) {
+                    videoService.releaseReencode(videoId);
+                }
             }
-        } else {
-            logger.info("✅ No videos pending facial analysis.");
         }
     }
 
-    // Scheduler for Audio Analysis - Runs every minute (offset by 30s to avoid
-    // heavy overlap)
-    @Scheduled(initialDelay = 30000, fixedRate = 60000)
-    public void scheduleAudioAnalysis() {
-        logger.info("🕒 Audio Analysis Scheduler Triggered...");
-        Optional<Video> videoOpt = videoRepository.findFirstMissingSpeechScore();
+    @Scheduled(fixedDelayString = "${pipeline.heartbeat-ms:60000}")
+    public void heartbeat() {
+        if (!runningJobIds.isEmpty()) {
+            pipelineJobService.renewLeases(new ArrayList<>(runningJobIds));
+        }
+    }
 
-        if (videoOpt.isPresent()) {
-            Video video = videoOpt.get();
+    // Enqueues jobs for videos that have no job row for their next stage, e.g.
+    // uploads stuck in PROCESSING from before the queue existed.
+    @Scheduled(initialDelay = 20000, fixedDelay = 300000)
+    public void backfillJobs() {
+        int limit = 100;
+        for (Video video : videoRepository.findNeedingCompressJob(limit)) {
+            Optional<Path> original = videoService.findOriginalUpload(video);
+            if (original.isPresent()) {
+                pipelineJobService.enqueue(video.getId(), PipelineJob.Stage.COMPRESS, original.get().toString());
+            } else {
+                logger.warn("⚠️ Original upload missing for video ID {} - marking as ERROR", video.getId());
+                videoService.markProcessingFailed(video.getId());
+            }
+        }
+        videoRepository.findNeedingTranscriptionJob(limit)
+                .forEach(v -> pipelineJobService.enqueue(v.getId(), PipelineJob.Stage.TRANSCRIBE, null));
+        if (facialScoringService != null) {
+            videoRepository.findNeedingFacialJob(limit)
+                    .forEach(v -> pipelineJobService.enqueue(v.getId(), PipelineJob.Stage.FACIAL, null));
+        }
+        videoRepository.findNeedingSpeechJob(limit)
+                .forEach(v -> pipelineJobService.enqueue(v.getId(), PipelineJob.Stage.SPEECH, null));
+        // Also covers transcribed videos from before the EMBED stage existed
+        videoRepository.findNeedingEmbedJob(limit)
+                .forEach(v -> pipelineJobService.enqueue(v.getId(), PipelineJob.Stage.EMBED, null));
+    }
+
+    /**
+     * Polls the given stages now instead of at their next scheduled tick.
+     */
+    private void wake(List<PipelineJob.Stage> stages) {
+        for (PipelineJob.Stage stage : stages) {
             try {
-                logger.info("🎵 Starting scheduled audio analysis for video ID: {}", video.getId());
-                audioAnalysisService.analyzeAudio(video.getUrl(), video.getId());
-            } catch (Exception e) {
-                logger.error("❌ Error in scheduled audio analysis for video ID {}: {}", video.getId(), e.getMessage(),
-                        e);
+                wakeExecutor.execute(() -> {
+                    switch (stage) {
+                        case COMPRESS -> pollCompression();
+                        case TRANSCRIBE -> pollTranscription();
+                        case FACIAL -> pollFacialAnalysis();
+                        case SPEECH -> pollAudioAnalysis();
+                        case EMBED -> pollEmbedding();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the jobs stay queued for the next node to pick up
+            }
+        }
+    }
+
+    private void complete(PipelineJob job) {
+        wake(pipelineJobService.complete(job.getId()));
+    }
+
+    private void dispatch(PipelineJob.Stage stage, JobHandler handler) {
+        StageWorkers stageWorkers = workers.get(stage);
+        List<PipelineJob> jobs;
+        // A wake-up and a scheduled tick may poll the same stage at once
+        synchronized (stageWorkers) {
+            int idle = stageWorkers.size - stageWorkers.inFlight.get();
+            if (idle <= 0) {
+                return;
             }
-        } else {
-            logger.info("✅ No videos pending audio analysis.");
+            jobs = pipelineJobService.claim(stage, idle);
+            stageWorkers.inFlight.addAndGet(jobs.size());
+        }
+        for (PipelineJob job : jobs) {
+            runningJobIds.add(job.getId());
+            stageWorkers.executor.execute(() -> {
+                try {
+                    run(job, handler);
+                } finally {
+                    runningJobIds.remove(job.getId());
+                    stageWorkers.inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Like {@link #dispatch} for handlers that return once their work has been
+     * handed off. A job counts against {@code capacity} until its future
+     * completes, while the stage pool is only busy for the hand-off itself.
+     */
+    private void dispatchAsync(PipelineJob.Stage stage, int capacity, AsyncJobHandler handler) {
+        StageWorkers stageWorkers = workers.get(stage);
+        List<PipelineJob> jobs;
+        synchronized (stageWorkers) {
+            int idle = capacity - stageWorkers.inFlight.get();
+            if (idle <= 0) {
+                return;
+            }
+            jobs = pipelineJobService.claim(stage, idle);
+            stageWorkers.inFlight.addAndGet(jobs.size());
+        }
+        for (PipelineJob job : jobs) {
+            runningJobIds.add(job.getId());
+            Runnable done = () -> {
+                runningJobIds.remove(job.getId());
+                stageWorkers.inFlight.decrementAndGet();
+            };
+            stageWorkers.executor.execute(() -> {
+                Optional<Video> videoOpt = videoRepository.findById(job.getVideoId());
+                if (videoOpt.isEmpty()) {
+                    pipelineJobService.discard(job.getId());
+                    done.run();
+                    return;
+                }
+                PipelineTimelineService.Span span = timelineService.start(job.getVideoId(),
+                        PipelineTimelineEntry.Step.of(stage), job.getAttempts());
+                CompletableFuture<?> future;
+                try {
+                    future = handler.handle(job, videoOpt.get());
+                } catch (Exception e) {
+                    span.end(e);
+                    handleFailure(job, e);
+                    done.run();
+                    return;
+                }
+                future.whenComplete((result, error) -> {
+                    try {
+                        if (error == null) {
+                            span.end(null);
+                            complete(job);
+                        } else {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause()
+                                    : error;
+                            span.end(cause);
+                            handleFailure(job, cause);
+                        }
+                    } finally {
+                        done.run();
+                    }
+                });
+            });
+        }
+    }
+
+    private void run(PipelineJob job, JobHandler handler) {
+        Optional<Video> videoOpt = videoRepository.findById(job.getVideoId());
+        if (videoOpt.isEmpty()) {
+            // Video was deleted or replaced by a re-upload; nothing left to do
+            pipelineJobService.discard(job.getId());
+            return;
+        }
+        PipelineTimelineService.Span span = timelineService.start(job.getVideoId(),
+                PipelineTimelineEntry.Step.of(job.getStage()), job.getAttempts());
+        try {
+            handler.handle(job, videoOpt.get());
+            span.end(null);
+            complete(job);
+        } catch (Exception e) {
+            span.end(e);
+            handleFailure(job, e);
+        }
+    }
+
+    private void handleFailure(PipelineJob job, Throwable e) {
+        logger.error("❌ {} job {} failed for video ID {} (attempt {}): {}", job.getStage(), job.getId(),
+                job.getVideoId(), job.getAttempts(), e.getMessage(), e);
+        boolean exhausted = pipelineJobService.fail(job.getId(), e);
+        // A missing search embedding does not make the video itself unusable
+        if (exhausted && job.getStage() != PipelineJob.Stage.EMBED) {
+            videoService.markProcessingFailed(job.getVideoId());
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobHandler {
+        void handle(PipelineJob job, Video video) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface AsyncJobHandler {
+        CompletableFuture<?> handle(PipelineJob job, Video video) throws Exception;
+    }
+
+    private static class StageWorkers {
+        final ExecutorService executor;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final int size;
+
+        StageWorkers(String name, int size) {
+            this.size = Math.max(1, size);
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(this.size, r -> {
+                Thread t = new Thread(r, "pipeline-" + name + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
         }
     }
 }
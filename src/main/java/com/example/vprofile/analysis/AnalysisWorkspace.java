@@ -0,0 +1,46 @@
+package com.example.vprofile.analysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Private scratch directory for one analysis run. Every run gets its own
+ * directory under the shared root, so concurrent analyses never touch each
+ * other's files, and everything in it is removed on close.
+ */
+public class AnalysisWorkspace implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisWorkspace.class);
+
+    private final Path dir;
+
+    private AnalysisWorkspace(Path dir) {
+        this.dir = dir;
+    }
+
+    public static AnalysisWorkspace create(Path root, String prefix) throws IOException {
+        Files.createDirectories(root);
+        return new AnalysisWorkspace(Files.createTempDirectory(root, prefix));
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public Path resolve(String name) {
+        return dir.resolve(name);
+    }
+
+    @Override
+    public void close() {
+        try {
+            FileSystemUtils.deleteRecursively(dir);
+        } catch (IOException e) {
+            logger.warn("Could not clean up analysis workspace {}", dir, e);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.vprofile.analysis;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -18,6 +22,12 @@ public class AudioAnalysisController {
     @Autowired
     private SpeechScoreService speechScoreService;
 
+    @Autowired
+    private ProsodyBenchmark prosodyBenchmark;
+
+    @Value("${pipeline.admin-token:}")
+    private String adminToken;
+
   @GetMapping("/analyze")
     @SuppressWarnings("UseSpecificCatch")
 public SpeechScore analyzeAudio(
@@ -45,6 +55,17 @@ public SpeechScore analyzeAudio(
     }
 }
 
-
-
+    /**
+     * Time and feature differences of each prosody extractor on this node's
+     * prepared WAVs. Requires the admin token.
+     */
+    @GetMapping("/extractor-benchmark")
+    public ResponseEntity<?> extractorBenchmark(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(defaultValue = "20") int videos) throws Exception {
+        if (adminToken.isBlank() || !adminToken.equals(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(prosodyBenchmark.run(Math.max(1, Math.min(videos, 200))));
+    }
 }
@@ -1,27 +1,29 @@
 package com.example.vprofile.analysis;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.example.vprofile.score.SpeechScore;
 import com.example.vprofile.score.SpeechScoreRepository;
 import com.example.vprofile.score.TotalScoreService;
+import com.example.vprofile.videofolder.MediaLocator;
+import com.example.vprofile.videofolder.Video;
 import com.example.vprofile.videofolder.VideoRepository;
 
 @Service
@@ -36,160 +38,77 @@ public class AudioAnalysisService {
     @Autowired
     private VideoRepository videoRepository;
 
-    private final String openSmileBin = "/usr/local/bin";
-    private final String configFile = "/root/opensmile/config/is09-13/IS09_emotion.conf";
-    private final String audioDir = System.getProperty("user.dir") + "/audio_analysis_temp";
+    @Autowired
+    private MediaLocator mediaLocator;
 
-    public SpeechScore analyzeAudio(String audioUrl, Long videoId)
-            throws IOException, InterruptedException {
+    @Autowired
+    private List<ProsodyExtractor> prosodyExtractors;
 
-        try {
-            Files.createDirectories(Paths.get(audioDir));
-            System.out.println("Audio directory created or already exists: " + audioDir);
-        } catch (IOException e) {
-            System.err.println("Failed to create audio directory: " + e.getMessage());
-            e.printStackTrace();
-        }
+    @Autowired
+    private AnalysisCacheService analysisCacheService;
 
-        String tempMp3Path = audioDir + "/downloaded_audio.mp3";
-        String wavPath = audioDir + "/downloaded_audio.wav";
-        String outputCsv = audioDir + "/smile_output.csv";
-
-        // 1. Download the audio file
-        try (InputStream in = new URL(audioUrl).openStream();
-                FileOutputStream out = new FileOutputStream(tempMp3Path)) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
-            }
-        }
+    private final String audioDir = System.getProperty("user.dir") + "/audio_analysis_temp";
 
-        // 2. Convert MP3 to WAV using FFmpeg
-        ProcessBuilder ffmpegBuilder = new ProcessBuilder("/usr/bin/ffmpeg", "-y", "-i", tempMp3Path,
-                "-ar", "16000",
-                "-ac", "1", wavPath);
-        ffmpegBuilder.redirectErrorStream(true);
-        Process ffmpegProcess = ffmpegBuilder.start();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ffmpegProcess.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-            }
-        }
+    // "opensmile" (reference implementation) or "java" (in-process, no subprocess)
+    @Value("${speech.extractor:opensmile}")
+    private String extractorName;
 
-        int ffmpegExitCode = ffmpegProcess.waitFor();
-        if (ffmpegExitCode != 0) {
-            throw new RuntimeException("FFmpeg conversion failed.");
-        }
+    public SpeechScore analyzeAudio(String audioUrl, Long videoId)
+            throws IOException, InterruptedException {
 
-        // 3. Run openSMILE on WAV
-        ProcessBuilder smileBuilder = new ProcessBuilder(
-                openSmileBin + "/SMILExtract",
-                "-C", configFile,
-                "-I", wavPath,
-                "-O", outputCsv);
-        smileBuilder.redirectErrorStream(true);
-        Process smileProcess = smileBuilder.start();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(smileProcess.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+        // Each run gets its own scratch directory so several analyses can run at once
+        ProsodyFeatures features;
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(Paths.get(audioDir), "speech-" + videoId + "-")) {
+            features = extractFeatures(audioUrl, videoId, workspace, Runnable::run).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
             }
+            throw new RuntimeException(cause);
         }
+        return scoreFeatures(videoId, features);
+    }
 
-        int smileExitCode = smileProcess.waitFor();
-        if (smileExitCode != 0) {
-            throw new RuntimeException("openSMILE failed.");
+    /**
+     * Like {@link #analyzeAudio}, but returns once extraction is under way.
+     * Caching and scoring run on {@code executor}, never on the extractor's
+     * own threads.
+     */
+    public CompletableFuture<SpeechScore> analyzeAudioAsync(String audioUrl, Long videoId, Executor executor)
+            throws IOException {
+        AnalysisWorkspace workspace = AnalysisWorkspace.create(Paths.get(audioDir), "speech-" + videoId + "-");
+        CompletableFuture<ProsodyFeatures> features;
+        try {
+            features = extractFeatures(audioUrl, videoId, workspace, executor);
+        } catch (RuntimeException e) {
+            workspace.close();
+            throw e;
         }
+        return features
+                .whenComplete((result, error) -> workspace.close())
+                .thenApplyAsync(result -> scoreFeatures(videoId, result), executor);
+    }
 
-        // 4. Parse CSV output
-        double pitch = 0, energy = 0, tone = 0, emotion = 0;
-        java.util.List<String> attributes = new java.util.ArrayList<>();
-        int pitchIndex = -1;
-        int energyIndex = -1;
-        int toneIndex = -1; // MFCC
-        int voiceProbIndex = -1;
-        int zcrIndex = -1;
-        double voiceProb = 0, zcr = 0;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(outputCsv))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("@attribute")) {
-                    String[] parts = line.split("\\s+");
-                    if (parts.length > 1) {
-                        attributes.add(parts[1]);
-                    }
-                    continue;
-                }
-                if (line.startsWith("@") || line.startsWith("name"))
-                    continue;
-
-                // Find indices dynamically if not found yet
-                if (pitchIndex == -1 && !attributes.isEmpty()) {
-                    for (int i = 0; i < attributes.size(); i++) {
-                        String attr = attributes.get(i);
-                        if (attr.contains("F0_sma_amean"))
-                            pitchIndex = i;
-                        else if (attr.contains("pcm_RMSenergy_sma_amean"))
-                            energyIndex = i;
-                        else if (attr.contains("pcm_fftMag_mfcc_sma[4]_amean"))
-                            toneIndex = i;
-                        else if (attr.contains("voiceProb_sma_amean"))
-                            voiceProbIndex = i;
-                        else if (attr.contains("pcm_zcr_sma_amean"))
-                            zcrIndex = i;
-                    }
-                    // Fallbacks if exact names not found
-                    if (energyIndex == -1)
-                        energyIndex = 6; // Default fallback
-                    if (toneIndex == -1)
-                        toneIndex = 24;
-                    if (pitchIndex == -1)
-                        pitchIndex = attributes.size() - 2;
-                    if (voiceProbIndex == -1)
-                        voiceProbIndex = 14;
-                    if (zcrIndex == -1)
-                        zcrIndex = 13;
-                }
-
-                String[] parts = line.split(",");
-
-                if (parts.length > 300) {
-                    // Use dynamic indices.
-                    // attributes.get(i) corresponds to parts[i].
-                    // attributes[0] is 'name', parts[0] is instance name.
-
-                    if (energyIndex != -1 && energyIndex < parts.length)
-                        energy = Double.parseDouble(parts[energyIndex]);
-
-                    if (toneIndex != -1 && toneIndex < parts.length)
-                        tone = Double.parseDouble(parts[toneIndex]);
-
-                    if (pitchIndex != -1 && pitchIndex < parts.length)
-                        pitch = Double.parseDouble(parts[pitchIndex]);
-
-                    if (voiceProbIndex != -1 && voiceProbIndex < parts.length)
-                        voiceProb = Double.parseDouble(parts[voiceProbIndex]);
-
-                    if (zcrIndex != -1 && zcrIndex < parts.length)
-                        zcr = Double.parseDouble(parts[zcrIndex]);
-
-                    // Emotion Proxy
-                    emotion = (energy * 1000) + (pitch / 50);
+    /**
+     * How many speech jobs are worth running at once beyond the stage's own
+     * workers, as reported by the configured extractor.
+     */
+    public int getMaxInFlight() {
+        return prosodyExtractor().getMaxInFlight();
+    }
 
-                    System.out.println("Extracted - Pitch: " + pitch + ", Energy: " + energy + ", Tone: " + tone
-                            + ", VoiceProb: " + voiceProb + ", ZCR: " + zcr
-                            + ", Emotion Proxy: " + emotion);
-                    break;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private SpeechScore scoreFeatures(Long videoId, ProsodyFeatures features) {
+        double pitch = features.getPitch();
+        double energy = features.getEnergy();
+        double tone = features.getTone();
+        double voiceProb = features.getVoiceProb();
+        double zcr = features.getZcr();
+        // Emotion Proxy
+        double emotion = (energy * 1000) + (pitch / 50);
 
         // Normalize values (Revised based on logs)
         // Pitch: Normal speech F0 is 80-250Hz. Using lower base to tolerate deep
@@ -379,12 +298,48 @@ public class AudioAnalysisService {
 
         totalScoreService.computeTotalScoreIfReady(videoId);
 
-        // 8. Cleanup (optional)
-        new File(tempMp3Path).delete();
-        new File(wavPath).delete();
-        new File(outputCsv).delete();
-
         return score;
     }
 
+    /**
+     * Produces the acoustic features for a video with the configured
+     * {@link ProsodyExtractor}. The WAV written by the single-pass transcode is
+     * used when present; otherwise the extractor decodes the media itself.
+     */
+    private CompletableFuture<ProsodyFeatures> extractFeatures(String audioUrl, Long videoId,
+            AnalysisWorkspace workspace, Executor executor) {
+        Video video = videoRepository.findById(videoId).orElse(null);
+        String audioHash = video != null ? video.getAudioHash() : null;
+
+        // Identical audio was analysed before by the same extractor
+        ProsodyExtractor extractor = prosodyExtractor();
+        Optional<ProsodyFeatures> cached = analysisCacheService.findProsody(audioHash, extractor.getName());
+        if (cached.isPresent()) {
+            System.out.println("♻️ Reusing cached speech features for video " + videoId);
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        // The single-pass transcode already wrote a 16 kHz mono WAV for this video
+        Path preparedWav = Optional.ofNullable(video)
+                .map(Video::getAnalysisAudioPath)
+                .map(Paths::get)
+                .filter(Files::exists)
+                .orElse(null);
+
+        // Read the media from local disk when this node has it; ffmpeg streams remote URLs itself
+        String mediaSource = mediaLocator.resolve(audioUrl);
+
+        return extractor.extractAsync(preparedWav, mediaSource, workspace)
+                .thenApplyAsync(features -> {
+                    analysisCacheService.storeProsody(audioHash, extractor.getName(), features);
+                    return features;
+                }, executor);
+    }
+
+    private ProsodyExtractor prosodyExtractor() {
+        return prosodyExtractors.stream()
+                .filter(e -> e.getName().equalsIgnoreCase(extractorName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown speech.extractor: " + extractorName));
+    }
 }
@@ -0,0 +1,180 @@
+package com.example.vprofile.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process replacement for the openSMILE run: decodes 16 kHz mono PCM and
+ * computes exactly the five features speech scoring reads (F0, RMS energy,
+ * MFCC[4], voicing probability and zero-crossing rate) with the kernels in
+ * {@link ProsodyKernels}. No subprocess is started when the transcode has
+ * already written the analysis WAV.
+ */
+@Component
+public class JavaProsodyExtractor implements ProsodyExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(JavaProsodyExtractor.class);
+
+    private static final int MFCC_COEFFICIENT = 4;
+
+    @Override
+    public String getName() {
+        return "java";
+    }
+
+    @Override
+    public ProsodyFeatures extract(Path preparedWav, String mediaSource, AnalysisWorkspace workspace)
+            throws IOException, InterruptedException {
+        float[] pcm = null;
+        if (preparedWav != null) {
+            pcm = readWav(preparedWav);
+        }
+        if (pcm == null) {
+            pcm = decode(preparedWav != null ? preparedWav.toString() : mediaSource);
+        }
+        return extract(pcm);
+    }
+
+    /**
+     * Features for normalised 16 kHz mono samples.
+     */
+    ProsodyFeatures extract(float[] pcm) {
+        double[][] contours = contours(pcm);
+        return functionals(contours, 0, contours[0].length);
+    }
+
+    /**
+     * Per-frame F0, RMS energy, MFCC, voicing probability and zero-crossing
+     * rate, in that order.
+     */
+    double[][] contours(float[] pcm) {
+        int frames = pcm.length < ProsodyKernels.FRAME_SIZE
+                ? 0
+                : 1 + (pcm.length - ProsodyKernels.FRAME_SIZE) / ProsodyKernels.FRAME_STEP;
+
+        double[] f0 = new double[frames];
+        double[] energy = new double[frames];
+        double[] mfcc = new double[frames];
+        double[] voiceProb = new double[frames];
+        double[] zcr = new double[frames];
+
+        double[] re = new double[ProsodyKernels.FFT_SIZE];
+        double[] im = new double[ProsodyKernels.FFT_SIZE];
+        double[] bands = new double[ProsodyKernels.MEL_BANDS];
+        double[] diff = new double[ProsodyKernels.TAU_MAX + 1];
+        double[] voicing = new double[1];
+        int pitchSpan = ProsodyKernels.YIN_WINDOW + ProsodyKernels.TAU_MAX;
+
+        for (int i = 0; i < frames; i++) {
+            int off = i * ProsodyKernels.FRAME_STEP;
+            energy[i] = ProsodyKernels.rms(pcm, off, ProsodyKernels.FRAME_SIZE);
+            zcr[i] = ProsodyKernels.zcr(pcm, off, ProsodyKernels.FRAME_SIZE);
+            mfcc[i] = ProsodyKernels.mfcc(pcm, off, MFCC_COEFFICIENT, re, im, bands);
+
+            if (off + pitchSpan <= pcm.length) {
+                f0[i] = ProsodyKernels.yin(pcm, off, diff, voicing);
+                voiceProb[i] = voicing[0];
+            }
+        }
+        return new double[][] { f0, energy, mfcc, voiceProb, zcr };
+    }
+
+    /**
+     * The {@code _sma_amean} functionals over frames {@code from} to
+     * {@code to}, smoothing across the whole contour the way SMILExtract
+     * does for a {@code -frameList} segment.
+     */
+    ProsodyFeatures functionals(double[][] contours, int from, int to) {
+        if (to <= from) {
+            return new ProsodyFeatures(0, 0, 0, 0, 0);
+        }
+        return new ProsodyFeatures(
+                ProsodyKernels.smaMean(contours[0], from, to),
+                ProsodyKernels.smaMean(contours[1], from, to),
+                ProsodyKernels.smaMean(contours[2], from, to),
+                ProsodyKernels.smaMean(contours[3], from, to),
+                ProsodyKernels.smaMean(contours[4], from, to));
+    }
+
+    /**
+     * Reads a 16-bit PCM WAV in the analysis format. Returns null if the file
+     * is in any other format, so the caller can let ffmpeg resample it.
+     */
+    private float[] readWav(Path wav) throws IOException {
+        try (FileChannel channel = FileChannel.open(wav, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) {
+                return null; // not "RIFF....WAVE"
+            }
+
+            boolean analysisFormat = false;
+            int pos = 12;
+            while (pos + 8 <= buffer.limit()) {
+                int id = buffer.getInt(pos);
+                long size = Integer.toUnsignedLong(buffer.getInt(pos + 4));
+                int body = pos + 8;
+                if (id == 0x20746d66) { // "fmt "
+                    analysisFormat = buffer.getShort(body) == 1
+                            && buffer.getShort(body + 2) == 1
+                            && buffer.getInt(body + 4) == ProsodyKernels.SAMPLE_RATE
+                            && buffer.getShort(body + 14) == 16;
+                } else if (id == 0x61746164) { // "data"
+                    if (!analysisFormat) {
+                        return null;
+                    }
+                    // Streamed WAVs leave the size unset; read to the end of the file
+                    long available = buffer.limit() - body;
+                    int samples = (int) (Math.min(size, available) / 2);
+                    ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                    data.position(body);
+                    float[] pcm = new float[samples];
+                    for (int i = 0; i < samples; i++) {
+                        pcm[i] = data.getShort() / 32768f;
+                    }
+                    return pcm;
+                }
+                pos = body + (int) (size + (size & 1));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Decodes any media ffmpeg can read to 16 kHz mono samples over a pipe.
+     */
+    private float[] decode(String source) throws IOException, InterruptedException {
+        Process ffmpeg = new ProcessBuilder("/usr/bin/ffmpeg", "-v", "error", "-i", source,
+                "-ar", String.valueOf(ProsodyKernels.SAMPLE_RATE),
+                "-ac", "1",
+                "-f", "s16le", "-")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        byte[] raw;
+        try (InputStream in = ffmpeg.getInputStream()) {
+            raw = in.readAllBytes();
+        }
+        int exitCode = ffmpeg.waitFor();
+        if (exitCode != 0) {
+            throw new RuntimeException("FFmpeg conversion failed.");
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        float[] pcm = new float[raw.length / 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = data.getShort() / 32768f;
+        }
+        logger.debug("Decoded {} samples from {}", pcm.length, source);
+        return pcm;
+    }
+}
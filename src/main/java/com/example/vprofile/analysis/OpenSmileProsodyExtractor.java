@@ -0,0 +1,616 @@
+package com.example.vprofile.analysis;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs SMILExtract with the IS09 emotion config and reads the handful of
+ * functionals speech scoring uses out of its 384-column output. This is the
+ * reference implementation the in-process extractor is checked against.
+ *
+ * WAVs prepared by the transcode are scored in batches: concurrent requests
+ * are queued, concatenated and run through one SMILExtract launch with a
+ * segment list, and each caller gets the row for its own segment back.
+ * Batched requests are only queued by {@link #extractAsync}, so the speech
+ * stage can keep a full batch waiting without tying up a worker per video.
+ * Any batch whose output does not have one row per clip is rerun file by
+ * file.
+ */
+@Component
+public class OpenSmileProsodyExtractor implements ProsodyExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(OpenSmileProsodyExtractor.class);
+
+    private static final int BYTES_PER_SECOND = 16000 * 2;
+    // Clips in a batch start on a 10 ms frame step, as they would in their own file
+    static final int STEP_BYTES = BYTES_PER_SECOND / 100;
+    // Silence between clips, well past the 25 ms window and the sma/delta
+    // context, so no frame or smoothed contour reaches into the next clip
+    static final int GAP_BYTES = BYTES_PER_SECOND / 10;
+
+    private final String openSmileBin = "/usr/local/bin";
+    private final String configFile = "/root/opensmile/config/is09-13/IS09_emotion.conf";
+
+    @Value("${speech.pipe-wav:true}")
+    private boolean pipeWav;
+
+    @Value("${speech.smile-timeout-seconds:600}")
+    private long smileTimeoutSeconds;
+
+    // Prepared WAVs waiting for the next batched SMILExtract launch
+    @Value("${speech.smile-batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${speech.smile-batch.max-size:16}")
+    private int maxBatchSize;
+
+    @Value("${speech.smile-batch.window-ms:2000}")
+    private long batchWindowMs;
+
+    // Files the batch could not score are rerun on this many threads, as in unbatched mode
+    @Value("${pipeline.speech.workers:2}")
+    private int fallbackWorkers;
+
+    private final String batchDir = System.getProperty("user.dir") + "/audio_analysis_temp";
+    private final BlockingQueue<BatchRequest> batchQueue = new LinkedBlockingQueue<>();
+    private Thread batchThread;
+    private ExecutorService fallbackPool;
+
+    @PostConstruct
+    void startBatchWorker() {
+        if (!batchEnabled) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        fallbackPool = Executors.newFixedThreadPool(Math.max(1, fallbackWorkers), r -> {
+            Thread t = new Thread(r, "opensmile-single-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        batchThread = new Thread(this::runBatches, "opensmile-batch");
+        batchThread.setDaemon(true);
+        batchThread.start();
+    }
+
+    @PreDestroy
+    void stopBatchWorker() {
+        if (batchThread != null) {
+            batchThread.interrupt();
+        }
+        if (fallbackPool != null) {
+            fallbackPool.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "opensmile";
+    }
+
+    /**
+     * Queues prepared WAVs for the next batch and returns straight away;
+     * everything else is extracted on the calling thread.
+     */
+    @Override
+    public CompletableFuture<ProsodyFeatures> extractAsync(Path preparedWav, String mediaSource,
+            AnalysisWorkspace workspace) {
+        if (preparedWav == null || !batchEnabled) {
+            return ProsodyExtractor.super.extractAsync(preparedWav, mediaSource, workspace);
+        }
+        BatchRequest request = new BatchRequest(preparedWav);
+        batchQueue.add(request);
+        return request.result;
+    }
+
+    /**
+     * Enough for one batch to fill while the previous one runs.
+     */
+    @Override
+    public int getMaxInFlight() {
+        return batchEnabled ? 2 * maxBatchSize : 0;
+    }
+
+    /**
+     * Without a prepared WAV the media is converted on the fly and, where the
+     * platform supports named pipes, streamed from ffmpeg straight into
+     * SMILExtract without touching disk.
+     */
+    @Override
+    public ProsodyFeatures extract(Path preparedWav, String mediaSource, AnalysisWorkspace workspace)
+            throws IOException, InterruptedException {
+        Path outputCsv = workspace.resolve("smile_output.csv");
+
+        if (preparedWav != null && batchEnabled) {
+            return awaitBatch(extractAsync(preparedWav, mediaSource, workspace));
+        } else if (preparedWav != null) {
+            runOpenSmile(preparedWav, outputCsv);
+        } else {
+            boolean piped = pipeWav && convertAndExtractPiped(mediaSource, workspace, outputCsv);
+            if (!piped) {
+                Path wavPath = workspace.resolve("audio.wav");
+                convertToWav(mediaSource, wavPath);
+                runOpenSmile(wavPath, outputCsv);
+            }
+        }
+
+        return parseSmileOutput(outputCsv);
+    }
+
+    /**
+     * Runs ffmpeg and SMILExtract side by side over a named pipe. Returns false
+     * if the pipe could not be set up or SMILExtract rejected the streamed WAV,
+     * in which case the caller converts to a file instead.
+     */
+    private boolean convertAndExtractPiped(String audioSource, AnalysisWorkspace workspace, Path outputCsv)
+            throws IOException, InterruptedException {
+        Path fifo = workspace.resolve("audio_pipe.wav");
+        try {
+            Process mkfifo = new ProcessBuilder("mkfifo", fifo.toString()).start();
+            if (mkfifo.waitFor() != 0) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        Process smileProcess = new ProcessBuilder(
+                openSmileBin + "/SMILExtract",
+                "-C", configFile,
+                "-I", fifo.toString(),
+                "-O", outputCsv.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        Process ffmpegProcess;
+        try {
+            ffmpegProcess = new ProcessBuilder("/usr/bin/ffmpeg", "-y", "-i", audioSource,
+                    "-ar", "16000",
+                    "-ac", "1",
+                    "-f", "wav", fifo.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (IOException e) {
+            smileProcess.destroyForcibly();
+            throw e;
+        }
+
+        int ffmpegExitCode = ffmpegProcess.waitFor();
+        if (ffmpegExitCode != 0) {
+            // SMILExtract may still be blocked opening the pipe
+            smileProcess.destroyForcibly();
+            throw new RuntimeException("FFmpeg conversion failed.");
+        }
+
+        if (!smileProcess.waitFor(smileTimeoutSeconds, TimeUnit.SECONDS)) {
+            smileProcess.destroyForcibly();
+            throw new RuntimeException("openSMILE timed out.");
+        }
+        if (smileProcess.exitValue() != 0) {
+            System.err.println("openSMILE could not read piped WAV, retrying from file");
+            return false;
+        }
+        return true;
+    }
+
+    private void convertToWav(String audioSource, Path wavPath) throws IOException, InterruptedException {
+        ProcessBuilder ffmpegBuilder = new ProcessBuilder("/usr/bin/ffmpeg", "-y", "-i", audioSource,
+                "-ar", "16000",
+                "-ac", "1", wavPath.toString());
+        ffmpegBuilder.redirectErrorStream(true);
+        Process ffmpegProcess = ffmpegBuilder.start();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ffmpegProcess.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+
+        int ffmpegExitCode = ffmpegProcess.waitFor();
+        if (ffmpegExitCode != 0) {
+            throw new RuntimeException("FFmpeg conversion failed.");
+        }
+    }
+
+    private void runOpenSmile(Path wavPath, Path outputCsv) throws IOException, InterruptedException {
+        runOpenSmile(wavPath, outputCsv, List.of());
+    }
+
+    private void runOpenSmile(Path wavPath, Path outputCsv, List<String> extraArgs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                openSmileBin + "/SMILExtract",
+                "-C", configFile,
+                "-I", wavPath.toString(),
+                "-O", outputCsv.toString()));
+        command.addAll(extraArgs);
+        ProcessBuilder smileBuilder = new ProcessBuilder(command);
+        smileBuilder.redirectErrorStream(true);
+        Process smileProcess = smileBuilder.start();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(smileProcess.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+
+        int smileExitCode = smileProcess.waitFor();
+        if (smileExitCode != 0) {
+            throw new RuntimeException("openSMILE failed.");
+        }
+    }
+
+    private ProsodyFeatures parseSmileOutput(Path outputCsv) {
+        List<ProsodyFeatures> rows = parseSmileRows(outputCsv);
+        return rows.isEmpty() ? new ProsodyFeatures(0, 0, 0, 0, 0) : rows.get(0);
+    }
+
+    /**
+     * One entry per instance row in the SMILExtract output, in file order.
+     */
+    private List<ProsodyFeatures> parseSmileRows(Path outputCsv) {
+        List<ProsodyFeatures> rows = new ArrayList<>();
+        double pitch = 0, energy = 0, tone = 0;
+        List<String> attributes = new ArrayList<>();
+        int pitchIndex = -1;
+        int energyIndex = -1;
+        int toneIndex = -1; // MFCC
+        int voiceProbIndex = -1;
+        int zcrIndex = -1;
+        double voiceProb = 0, zcr = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(outputCsv.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("@attribute")) {
+                    String[] parts = line.split("\\s+");
+                    if (parts.length > 1) {
+                        attributes.add(parts[1]);
+                    }
+                    continue;
+                }
+                if (line.startsWith("@") || line.startsWith("name"))
+                    continue;
+
+                // Find indices dynamically if not found yet
+                if (pitchIndex == -1 && !attributes.isEmpty()) {
+                    for (int i = 0; i < attributes.size(); i++) {
+                        String attr = attributes.get(i);
+                        if (attr.contains("F0_sma_amean"))
+                            pitchIndex = i;
+                        else if (attr.contains("pcm_RMSenergy_sma_amean"))
+                            energyIndex = i;
+                        else if (attr.contains("pcm_fftMag_mfcc_sma[4]_amean"))
+                            toneIndex = i;
+                        else if (attr.contains("voiceProb_sma_amean"))
+                            voiceProbIndex = i;
+                        else if (attr.contains("pcm_zcr_sma_amean"))
+                            zcrIndex = i;
+                    }
+                    // Fallbacks if exact names not found
+                    if (energyIndex == -1)
+                        energyIndex = 6; // Default fallback
+                    if (toneIndex == -1)
+                        toneIndex = 24;
+                    if (pitchIndex == -1)
+                        pitchIndex = attributes.size() - 2;
+                    if (voiceProbIndex == -1)
+                        voiceProbIndex = 14;
+                    if (zcrIndex == -1)
+                        zcrIndex = 13;
+                }
+
+                String[] parts = line.split(",");
+
+                if (parts.length > 300) {
+                    // Use dynamic indices.
+                    // attributes.get(i) corresponds to parts[i].
+                    // attributes[0] is 'name', parts[0] is instance name.
+
+                    if (energyIndex != -1 && energyIndex < parts.length)
+                        energy = Double.parseDouble(parts[energyIndex]);
+
+                    if (toneIndex != -1 && toneIndex < parts.length)
+                        tone = Double.parseDouble(parts[toneIndex]);
+
+                    if (pitchIndex != -1 && pitchIndex < parts.length)
+                        pitch = Double.parseDouble(parts[pitchIndex]);
+
+                    if (voiceProbIndex != -1 && voiceProbIndex < parts.length)
+                        voiceProb = Double.parseDouble(parts[voiceProbIndex]);
+
+                    if (zcrIndex != -1 && zcrIndex < parts.length)
+                        zcr = Double.parseDouble(parts[zcrIndex]);
+
+                    System.out.println("Extracted - Pitch: " + pitch + ", Energy: " + energy + ", Tone: " + tone
+                            + ", VoiceProb: " + voiceProb + ", ZCR: " + zcr);
+                    rows.add(new ProsodyFeatures(pitch, energy, tone, voiceProb, zcr));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read openSMILE output {}", outputCsv, e);
+        }
+
+        return rows;
+    }
+
+    private static ProsodyFeatures awaitBatch(CompletableFuture<ProsodyFeatures> result)
+            throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException("openSMILE failed.", cause);
+        }
+    }
+
+    /**
+     * Collects prepared WAVs for up to {@code speech.smile-batch.window-ms}
+     * (or until {@code speech.smile-batch.max-size} are waiting) and scores
+     * them with a single SMILExtract launch, so process start-up and config
+     * parsing are paid once per batch instead of once per video.
+     */
+    private void runBatches() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<BatchRequest> batch = new ArrayList<>();
+            try {
+                batch.add(batchQueue.take());
+                long deadline = System.currentTimeMillis() + batchWindowMs;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    BatchRequest next = batchQueue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(r -> r.result.completeExceptionally(e));
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                processBatch(batch);
+            } catch (Exception e) {
+                batch.forEach(r -> r.result.completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Concatenates the batch into one WAV, laid out by {@link BatchLayout},
+     * and asks SMILExtract for functionals over each video's segment, giving
+     * one output row per video in order.
+     * Anything that does not fit that shape is scored on its own, on the
+     * fallback pool so those runs stay parallel and do not hold up the next
+     * batch.
+     */
+    private void processBatch(List<BatchRequest> batch) throws IOException, InterruptedException {
+        List<BatchRequest> combinable = new ArrayList<>();
+        List<long[]> dataChunks = new ArrayList<>();
+        for (BatchRequest request : batch) {
+            long[] chunk = locateAnalysisData(request.wav);
+            if (chunk != null && chunk[1] > 0) {
+                combinable.add(request);
+                dataChunks.add(chunk);
+            } else {
+                scoreSingly(request);
+            }
+        }
+        if (combinable.size() == 1) {
+            scoreSingly(combinable.get(0));
+            return;
+        }
+        if (combinable.isEmpty()) {
+            return;
+        }
+
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(Paths.get(batchDir), "smile-batch-")) {
+            Path combined = workspace.resolve("batch.wav");
+            Path outputCsv = workspace.resolve("smile_output.csv");
+
+            long[] lengths = dataChunks.stream().mapToLong(c -> c[1]).toArray();
+            BatchLayout layout = new BatchLayout(lengths);
+            try (FileChannel out = FileChannel.open(combined, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                out.write(wavHeader(layout.totalBytes));
+                for (int i = 0; i < combinable.size(); i++) {
+                    long[] chunk = dataChunks.get(i);
+                    try (FileChannel in = FileChannel.open(combinable.get(i).wav, StandardOpenOption.READ)) {
+                        long copied = 0;
+                        while (copied < chunk[1]) {
+                            copied += in.transferTo(chunk[0] + copied, chunk[1] - copied, out);
+                        }
+                    }
+                    long silence = layout.end(i) - layout.starts[i] - chunk[1];
+                    out.write(ByteBuffer.allocate((int) silence));
+                }
+            }
+
+            List<ProsodyFeatures> rows;
+            try {
+                runOpenSmile(combined, outputCsv,
+                        List.of("-frameModeFunctionals", "list", "-frameList", layout.frameList()));
+                rows = parseSmileRows(outputCsv);
+            } catch (RuntimeException e) {
+                logger.warn("openSMILE batch run failed: {}", e.getMessage());
+                rows = List.of();
+            }
+
+            if (rows.size() != combinable.size()) {
+                logger.warn("openSMILE batch returned {} rows for {} files, scoring individually",
+                        rows.size(), combinable.size());
+                combinable.forEach(this::scoreSingly);
+                return;
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                combinable.get(i).result.complete(rows.get(i));
+            }
+        }
+    }
+
+    private void scoreSingly(BatchRequest request) {
+        try {
+            fallbackPool.execute(() -> runSingle(request));
+        } catch (RuntimeException e) {
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    private void runSingle(BatchRequest request) {
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(Paths.get(batchDir), "smile-")) {
+            Path outputCsv = workspace.resolve("smile_output.csv");
+            runOpenSmile(request.wav, outputCsv);
+            request.result.complete(parseSmileOutput(outputCsv));
+        } catch (IOException | RuntimeException e) {
+            request.result.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Offset and length of the sample data if the file is a 16 kHz mono 16-bit
+     * PCM WAV, otherwise null.
+     */
+    private long[] locateAnalysisData(Path wav) throws IOException {
+        try (FileChannel channel = FileChannel.open(wav, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < 12 || header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) {
+                return null;
+            }
+            boolean analysisFormat = false;
+            long pos = 12;
+            ByteBuffer chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            while (pos + 8 <= fileSize) {
+                chunk.clear();
+                channel.read(chunk, pos);
+                int id = chunk.getInt(0);
+                long size = Integer.toUnsignedLong(chunk.getInt(4));
+                if (id == 0x20746d66) { // "fmt "
+                    analysisFormat = chunk.getShort(8) == 1
+                            && chunk.getShort(10) == 1
+                            && chunk.getInt(12) == 16000
+                            && chunk.getShort(22) == 16;
+                } else if (id == 0x61746164) { // "data"
+                    long length = Math.min(size, fileSize - pos - 8) & ~1L;
+                    return analysisFormat ? new long[] { pos + 8, length } : null;
+                }
+                pos += 8 + size + (size & 1);
+            }
+            return null;
+        }
+    }
+
+    private static ByteBuffer wavHeader(long dataBytes) {
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952); // "RIFF"
+        header.putInt((int) (36 + dataBytes));
+        header.putInt(0x45564157); // "WAVE"
+        header.putInt(0x20746d66); // "fmt "
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) 1); // mono
+        header.putInt(16000);
+        header.putInt(BYTES_PER_SECOND);
+        header.putShort((short) 2);
+        header.putShort((short) 16);
+        header.putInt(0x61746164); // "data"
+        header.putInt((int) dataBytes);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Where each clip of a batch sits in the combined WAV. Every clip starts
+     * on a frame boundary and is followed by silence up to the next boundary
+     * plus {@link #GAP_BYTES}, so its frames and contours come out as they
+     * would from a file of its own.
+     */
+    static final class BatchLayout {
+        final long[] starts;
+        final long[] lengths;
+        final long totalBytes;
+
+        BatchLayout(long[] lengths) {
+            this.lengths = lengths;
+            this.starts = new long[lengths.length];
+            long position = 0;
+            for (int i = 0; i < lengths.length; i++) {
+                starts[i] = position;
+                position += (lengths[i] + STEP_BYTES - 1) / STEP_BYTES * STEP_BYTES + GAP_BYTES;
+            }
+            this.totalBytes = position;
+        }
+
+        /**
+         * Where the silence after clip {@code i} ends.
+         */
+        long end(int i) {
+            return i + 1 < starts.length ? starts[i + 1] : totalBytes;
+        }
+
+        /**
+         * The {@code -frameList} argument: each clip's own span, in seconds.
+         */
+        String frameList() {
+            StringBuilder frameList = new StringBuilder();
+            for (int i = 0; i < starts.length; i++) {
+                if (i > 0) {
+                    frameList.append(',');
+                }
+                frameList.append(String.format(Locale.ROOT, "%.4fs-%.4fs",
+                        starts[i] / (double) BYTES_PER_SECOND,
+                        (starts[i] + lengths[i]) / (double) BYTES_PER_SECOND));
+            }
+            return frameList.toString();
+        }
+    }
+
+    private static final class BatchRequest {
+        final Path wav;
+        final CompletableFuture<ProsodyFeatures> result = new CompletableFuture<>();
+
+        BatchRequest(Path wav) {
+            this.wav = wav;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.vprofile.analysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.example.vprofile.videofolder.Video;
+import com.example.vprofile.videofolder.VideoRepository;
+
+/**
+ * Runs every {@link ProsodyExtractor} over the same prepared WAVs and
+ * reports how long each took and how far its features are from openSMILE's.
+ * Nothing is cached or scored.
+ */
+@Service
+public class ProsodyBenchmark {
+
+    private static final String REFERENCE = "opensmile";
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private List<ProsodyExtractor> prosodyExtractors;
+
+    private final String audioDir = System.getProperty("user.dir") + "/audio_analysis_temp";
+
+    /**
+     * Uses the analysis WAVs of up to {@code videos} of the most recent
+     * uploads. Each extractor gets the whole set at once through
+     * {@link ProsodyExtractor#extractAsync}, as the speech stage would hand
+     * it over, so openSMILE's time includes its batch window.
+     */
+    public Map<String, Object> run(int videos) throws IOException, InterruptedException {
+        List<Path> wavs = new ArrayList<>();
+        for (Video video : videoRepository.findAll(PageRequest.of(0, videos * 4, Sort.by(Sort.Direction.DESC, "id")))) {
+            Optional.ofNullable(video.getAnalysisAudioPath())
+                    .map(Paths::get)
+                    .filter(Files::exists)
+                    .filter(p -> wavs.size() < videos)
+                    .ifPresent(wavs::add);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("videos", wavs.size());
+        if (wavs.isEmpty()) {
+            result.put("message", "No prepared analysis WAVs on this node");
+            return result;
+        }
+
+        Map<String, List<ProsodyFeatures>> features = new LinkedHashMap<>();
+        for (ProsodyExtractor extractor : prosodyExtractors) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            try (AnalysisWorkspace workspace = AnalysisWorkspace.create(Paths.get(audioDir), "benchmark-")) {
+                long start = System.nanoTime();
+                List<CompletableFuture<ProsodyFeatures>> pending = new ArrayList<>();
+                for (Path wav : wavs) {
+                    pending.add(extractor.extractAsync(wav, null, workspace));
+                }
+                List<ProsodyFeatures> extracted = new ArrayList<>();
+                for (CompletableFuture<ProsodyFeatures> future : pending) {
+                    extracted.add(future.get());
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                entry.put("totalMillis", millis);
+                entry.put("millisPerVideo", (double) millis / wavs.size());
+                features.put(extractor.getName(), extracted);
+            } catch (ExecutionException e) {
+                entry.put("error", String.valueOf(e.getCause().getMessage()));
+            }
+            result.put(extractor.getName(), entry);
+        }
+
+        List<ProsodyFeatures> reference = features.get(REFERENCE);
+        if (reference != null) {
+            for (Map.Entry<String, List<ProsodyFeatures>> other : features.entrySet()) {
+                if (!other.getKey().equals(REFERENCE)) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> entry = (Map<String, Object>) result.get(other.getKey());
+                    entry.put("meanAbsDiffFromOpenSmile", meanAbsDiff(reference, other.getValue()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Double> meanAbsDiff(List<ProsodyFeatures> expected, List<ProsodyFeatures> actual) {
+        double pitch = 0, energy = 0, tone = 0, voiceProb = 0, zcr = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            pitch += Math.abs(expected.get(i).getPitch() - actual.get(i).getPitch());
+            energy += Math.abs(expected.get(i).getEnergy() - actual.get(i).getEnergy());
+            tone += Math.abs(expected.get(i).getTone() - actual.get(i).getTone());
+            voiceProb += Math.abs(expected.get(i).getVoiceProb() - actual.get(i).getVoiceProb());
+            zcr += Math.abs(expected.get(i).getZcr() - actual.get(i).getZcr());
+        }
+        int n = expected.size();
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put("pitch", pitch / n);
+        result.put("energy", energy / n);
+        result.put("tone", tone / n);
+        result.put("voiceProb", voiceProb / n);
+        result.put("zcr", zcr / n);
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.vprofile.analysis;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Computes the whole-clip {@link ProsodyFeatures} used by speech scoring.
+ * Selected with {@code speech.extractor}.
+ */
+public interface ProsodyExtractor {
+
+    /**
+     * Name matched against {@code speech.extractor}.
+     */
+    String getName();
+
+    /**
+     * @param preparedWav 16 kHz mono WAV written by the transcode, or null if there is none
+     * @param mediaSource path or URL ffmpeg can read, used when there is no prepared WAV
+     * @param workspace   scratch directory owned by this analysis
+     */
+    ProsodyFeatures extract(Path preparedWav, String mediaSource, AnalysisWorkspace workspace)
+            throws IOException, InterruptedException;
+
+    /**
+     * Starts extraction without waiting for it where the extractor can queue
+     * the work elsewhere; by default {@link #extract} runs on the calling
+     * thread. The future may complete on an extractor thread, so slow
+     * follow-up work belongs on the caller's own executor.
+     */
+    default CompletableFuture<ProsodyFeatures> extractAsync(Path preparedWav, String mediaSource,
+            AnalysisWorkspace workspace) {
+        try {
+            return CompletableFuture.completedFuture(extract(preparedWav, mediaSource, workspace));
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * How many {@link #extractAsync} calls are worth having outstanding at
+     * once, or 0 if extraction runs on the caller's thread.
+     */
+    default int getMaxInFlight() {
+        return 0;
+    }
+}
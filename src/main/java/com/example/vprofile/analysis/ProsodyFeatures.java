@@ -0,0 +1,42 @@
+package com.example.vprofile.analysis;
+
+/**
+ * Whole-clip acoustic summary used for speech scoring: mean F0 (Hz), mean RMS
+ * energy, mean MFCC[4], mean voicing probability and mean zero-crossing rate.
+ */
+public class ProsodyFeatures {
+
+    private final double pitch;
+    private final double energy;
+    private final double tone;
+    private final double voiceProb;
+    private final double zcr;
+
+    public ProsodyFeatures(double pitch, double energy, double tone, double voiceProb, double zcr) {
+        this.pitch = pitch;
+        this.energy = energy;
+        this.tone = tone;
+        this.voiceProb = voiceProb;
+        this.zcr = zcr;
+    }
+
+    public double getPitch() {
+        return pitch;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    public double getTone() {
+        return tone;
+    }
+
+    public double getVoiceProb() {
+        return voiceProb;
+    }
+
+    public double getZcr() {
+        return zcr;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.vprofile.analysis;
+
+/**
+ * Per-frame signal kernels for {@link JavaProsodyExtractor}. All of them work
+ * on primitive arrays in place and take their scratch buffers from the
+ * caller, so the per-frame loop does not allocate.
+ *
+ * Parameters follow the IS09 emotion config the scores were calibrated
+ * against: 16 kHz mono, 25 ms frames every 10 ms, 26 mel bands, cepstral
+ * liftering of 22 and a 3-frame moving average before the clip mean.
+ */
+final class ProsodyKernels {
+
+    static final int SAMPLE_RATE = 16000;
+    static final int FRAME_SIZE = 400;
+    static final int FRAME_STEP = 160;
+    static final int FFT_SIZE = 512;
+
+    static final int MEL_BANDS = 26;
+    static final int CEP_LIFTER = 22;
+    static final double PRE_EMPHASIS = 0.97;
+    static final double MEL_FLOOR = 1e-8;
+
+    // F0 search range 52-500 Hz; the YIN integration window is 20 ms
+    static final int TAU_MIN = SAMPLE_RATE / 500;
+    static final int TAU_MAX = SAMPLE_RATE / 52;
+    static final int YIN_WINDOW = 320;
+    static final double YIN_THRESHOLD = 0.15;
+
+    private static final double[] HAMMING = new double[FRAME_SIZE];
+    private static final double[][] MEL_FILTERS = new double[MEL_BANDS][FFT_SIZE / 2 + 1];
+    private static final double[] FFT_COS = new double[FFT_SIZE / 2];
+    private static final double[] FFT_SIN = new double[FFT_SIZE / 2];
+    private static final int[] BIT_REVERSE = new int[FFT_SIZE];
+
+    static {
+        for (int n = 0; n < FRAME_SIZE; n++) {
+            HAMMING[n] = 0.54 - 0.46 * Math.cos(2 * Math.PI * n / (FRAME_SIZE - 1));
+        }
+
+        for (int k = 0; k < FFT_SIZE / 2; k++) {
+            FFT_COS[k] = Math.cos(2 * Math.PI * k / FFT_SIZE);
+            FFT_SIN[k] = -Math.sin(2 * Math.PI * k / FFT_SIZE);
+        }
+        int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+        for (int i = 0; i < FFT_SIZE; i++) {
+            BIT_REVERSE[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        // Triangular filters equally spaced on the HTK mel scale between 0 Hz and Nyquist
+        double melMax = hzToMel(SAMPLE_RATE / 2.0);
+        double[] centers = new double[MEL_BANDS + 2];
+        for (int m = 0; m < centers.length; m++) {
+            centers[m] = melMax * m / (MEL_BANDS + 1);
+        }
+        for (int k = 0; k <= FFT_SIZE / 2; k++) {
+            double mel = hzToMel((double) k * SAMPLE_RATE / FFT_SIZE);
+            for (int m = 0; m < MEL_BANDS; m++) {
+                double lo = centers[m];
+                double mid = centers[m + 1];
+                double hi = centers[m + 2];
+                if (mel > lo && mel < hi) {
+                    MEL_FILTERS[m][k] = mel <= mid ? (mel - lo) / (mid - lo) : (hi - mel) / (hi - mid);
+                }
+            }
+        }
+    }
+
+    private ProsodyKernels() {
+    }
+
+    private static double hzToMel(double hz) {
+        return 1127.0 * Math.log(1.0 + hz / 700.0);
+    }
+
+    static double rms(float[] x, int off, int len) {
+        double sum = 0;
+        for (int i = off; i < off + len; i++) {
+            sum += x[i] * x[i];
+        }
+        return Math.sqrt(sum / len);
+    }
+
+    /**
+     * Zero crossings per sample.
+     */
+    static double zcr(float[] x, int off, int len) {
+        int crossings = 0;
+        for (int i = off + 1; i < off + len; i++) {
+            if ((x[i - 1] >= 0) != (x[i] >= 0)) {
+                crossings++;
+            }
+        }
+        return (double) crossings / len;
+    }
+
+    /**
+     * One cepstral coefficient of the frame: pre-emphasis, Hamming window,
+     * power spectrum, mel filterbank, log, DCT-II and liftering. Only the
+     * requested coefficient is evaluated.
+     *
+     * @param re    scratch of length {@link #FFT_SIZE}
+     * @param im    scratch of length {@link #FFT_SIZE}
+     * @param bands scratch of length {@link #MEL_BANDS}
+     */
+    static double mfcc(float[] x, int off, int coefficient, double[] re, double[] im, double[] bands) {
+        double previous = off > 0 ? x[off - 1] : x[off];
+        for (int n = 0; n < FRAME_SIZE; n++) {
+            double sample = x[off + n];
+            re[n] = (sample - PRE_EMPHASIS * previous) * HAMMING[n];
+            im[n] = 0;
+            previous = sample;
+        }
+        for (int n = FRAME_SIZE; n < FFT_SIZE; n++) {
+            re[n] = 0;
+            im[n] = 0;
+        }
+        fft(re, im);
+
+        // Power spectrum into re[0..N/2]
+        for (int k = 0; k <= FFT_SIZE / 2; k++) {
+            re[k] = re[k] * re[k] + im[k] * im[k];
+        }
+
+        for (int m = 0; m < MEL_BANDS; m++) {
+            double[] filter = MEL_FILTERS[m];
+            double energy = 0;
+            for (int k = 0; k <= FFT_SIZE / 2; k++) {
+                energy += filter[k] * re[k];
+            }
+            bands[m] = Math.log(Math.max(energy, MEL_FLOOR));
+        }
+
+        double sum = 0;
+        for (int m = 0; m < MEL_BANDS; m++) {
+            sum += bands[m] * Math.cos(Math.PI * coefficient / MEL_BANDS * (m + 0.5));
+        }
+        double c = Math.sqrt(2.0 / MEL_BANDS) * sum;
+        return c * (1.0 + CEP_LIFTER / 2.0 * Math.sin(Math.PI * coefficient / CEP_LIFTER));
+    }
+
+    /**
+     * In-place iterative radix-2 FFT of length {@link #FFT_SIZE}.
+     */
+    static void fft(double[] re, double[] im) {
+        for (int i = 0; i < FFT_SIZE; i++) {
+            int j = BIT_REVERSE[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= FFT_SIZE; size <<= 1) {
+            int half = size >> 1;
+            int stride = FFT_SIZE / size;
+            for (int start = 0; start < FFT_SIZE; start += size) {
+                for (int k = 0; k < half; k++) {
+                    double wr = FFT_COS[k * stride];
+                    double wi = FFT_SIN[k * stride];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * YIN pitch estimate for the window starting at {@code off}, which needs
+     * {@code YIN_WINDOW + TAU_MAX} samples. Returns F0 in Hz, or 0 when the
+     * frame is unvoiced. The voicing probability (1 minus the aperiodicity at
+     * the chosen lag) is written to {@code voicing[0]}.
+     *
+     * @param diff scratch of length {@code TAU_MAX + 1}
+     */
+    static double yin(float[] x, int off, double[] diff, double[] voicing) {
+        diff[0] = 1;
+        double running = 0;
+        for (int tau = 1; tau <= TAU_MAX; tau++) {
+            double sum = 0;
+            for (int j = 0; j < YIN_WINDOW; j++) {
+                double delta = x[off + j] - x[off + j + tau];
+                sum += delta * delta;
+            }
+            running += sum;
+            // Cumulative mean normalised difference
+            diff[tau] = running == 0 ? 1 : sum * tau / running;
+        }
+
+        int best = -1;
+        for (int tau = TAU_MIN; tau <= TAU_MAX; tau++) {
+            if (diff[tau] < YIN_THRESHOLD) {
+                while (tau + 1 <= TAU_MAX && diff[tau + 1] < diff[tau]) {
+                    tau++;
+                }
+                best = tau;
+                break;
+            }
+        }
+
+        if (best == -1) {
+            double min = 1;
+            for (int tau = TAU_MIN; tau <= TAU_MAX; tau++) {
+                min = Math.min(min, diff[tau]);
+            }
+            voicing[0] = Math.max(0, 1 - min);
+            return 0;
+        }
+
+        voicing[0] = Math.max(0, 1 - diff[best]);
+
+        double lag = best;
+        if (best > TAU_MIN && best < TAU_MAX) {
+            double a = diff[best - 1];
+            double b = diff[best];
+            double c = diff[best + 1];
+            double denom = a - 2 * b + c;
+            if (denom != 0) {
+                lag += 0.5 * (a - c) / denom;
+            }
+        }
+        return SAMPLE_RATE / lag;
+    }
+
+    /**
+     * Mean of the contour after a 3-frame moving average, i.e. the
+     * {@code _sma_amean} functional.
+     */
+    static double smaMean(double[] contour, int len) {
+        return smaMean(contour, 0, len);
+    }
+
+    /**
+     * As {@link #smaMean(double[], int)} over frames {@code from} to
+     * {@code to}; the moving average still reads the neighbouring frames
+     * outside that range.
+     */
+    static double smaMean(double[] contour, int from, int to) {
+        if (to <= from) {
+            return 0;
+        }
+        int len = contour.length;
+        double total = 0;
+        for (int i = from; i < to; i++) {
+            int first = Math.max(0, i - 1);
+            int last = Math.min(len - 1, i + 1);
+            double sum = 0;
+            for (int j = first; j <= last; j++) {
+                sum += contour[j];
+            }
+            total += sum / (last - first + 1);
+        }
+        return total / (to - from);
+    }
+}
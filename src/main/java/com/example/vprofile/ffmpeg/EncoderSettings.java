@@ -0,0 +1,49 @@
+package com.example.vprofile.ffmpeg;
+
+/**
+ * libx264 speed/quality knobs for one transcode, chosen by
+ * {@link TranscodePolicy}.
+ */
+public class EncoderSettings {
+
+    public static final EncoderSettings DEFAULT = new EncoderSettings("fast", 0);
+
+    private final String preset;
+    private final int threads;
+    private final int segments;
+
+    public EncoderSettings(String preset, int threads) {
+        this(preset, threads, 1);
+    }
+
+    public EncoderSettings(String preset, int threads, int segments) {
+        this.preset = preset;
+        this.threads = threads;
+        this.segments = Math.max(1, segments);
+    }
+
+    public String getPreset() {
+        return preset;
+    }
+
+    /**
+     * Encoder threads, or 0 to let libx264 decide.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of parts the video is split into and encoded concurrently;
+     * 1 for a single encoder process. {@link #getThreads()} applies per part.
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        String s = threads > 0 ? preset + " (" + threads + " threads)" : preset;
+        return segments > 1 ? s + " x " + segments + " segments" : s;
+    }
+}
@@ -4,34 +4,427 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class FFmpegService {
 
+    private static final String FFMPEG_PATH = "/usr/bin/ffmpeg";
+    private static final String FFPROBE_PATH = "/usr/bin/ffprobe";
+
+    // Shorter parts are not worth the extra process start-up and concat pass
+    private static final double MIN_SEGMENT_SECONDS = 8;
+
+    // Use pre-resized watermark PNGs (already the exact target size) so FFmpeg loads
+    // them at native resolution — no runtime downscale, maximum sharpness.
+    // watermark_100.png = 100px wide for portrait 270x480 output (visible in thumbnails)
+    // watermark_200.png = 200px wide for landscape 854x480 output
+    // All videos are portrait only.
+    private static final String WATERMARK_PATH = "/home/wezume/htdocs/wezume.in/img/watermark_100.png";
+
+    private static final String WATERMARK_FILTER =
+            "[0:v]scale=270:480:force_original_aspect_ratio=decrease[scaled];" +
+            "[1:v]format=rgba[wm];" +
+            "[scaled][wm]overlay=x=W-w-15:y=15[watermarked];" +
+            "[watermarked]pad=270:480:(ow-iw)/2:(oh-ih)/2,format=yuv420p";
+
+    private final TranscodeExecutor transcodeExecutor;
+
+    // Segment encodes of every segmented transcode. Each one runs under a
+    // TranscodeExecutor slot, so no more than its workers are ever busy here.
+    private final ExecutorService segmentPool;
+
+    public FFmpegService(TranscodeExecutor transcodeExecutor) {
+        this.transcodeExecutor = transcodeExecutor;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.segmentPool = Executors.newFixedThreadPool(transcodeExecutor.getWorkers(), r -> {
+            Thread t = new Thread(r, "transcode-segment-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        segmentPool.shutdownNow();
+    }
+
     public void compressVideo(File inputFile, File outputFile) throws IOException, InterruptedException {
-        String ffmpegPath = "/usr/bin/ffmpeg";
-        // Use pre-resized watermark PNGs (already the exact target size) so FFmpeg loads
-        // them at native resolution — no runtime downscale, maximum sharpness.
-        // watermark_100.png = 100px wide for portrait 270x480 output (visible in thumbnails)
-        // watermark_200.png = 200px wide for landscape 854x480 output
-        // All videos are portrait only.
-        String watermarkPath = "/home/wezume/htdocs/wezume.in/img/watermark_100.png";
-
-        String[] command = {
-            ffmpegPath,
+        compressVideo(inputFile, outputFile, EncoderSettings.DEFAULT);
+    }
+
+    public void compressVideo(File inputFile, File outputFile, EncoderSettings encoder)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+            FFMPEG_PATH,
+            "-i", inputFile.getAbsolutePath(),
+            "-i", WATERMARK_PATH,
+            "-filter_complex", WATERMARK_FILTER + "[out]"));
+        addVideoOutput(command, "[out]", outputFile, encoder);
+
+        runFfmpeg(command);
+    }
+
+    /**
+     * Decodes the upload once and fans the frames out through a split filter
+     * graph, producing every artifact the pipeline needs in a single pass: the
+     * watermarked 270x480 MP4, the served MP3, a 16 kHz mono WAV for speech
+     * analysis and the poster thumbnail (1s in). The thumbnail is taken from the
+     * watermarked output so it matches what the separate pass used to read from
+     * the compressed file. Facial analysis decodes the compressed MP4 in-process
+     * (see {@link GrayscaleFrameSource}), so no frame images are written here.
+     *
+     * @return true if the source had an audio track and the audio outputs were written
+     */
+    public boolean transcodeAll(File inputFile, MediaArtifacts outputs) throws IOException, InterruptedException {
+        return transcodeAll(inputFile, outputs, hasAudioStream(inputFile), EncoderSettings.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #transcodeAll(File, MediaArtifacts)} for callers that have
+     * already probed the input for an audio stream and chose the encoder
+     * settings.
+     */
+    public boolean transcodeAll(File inputFile, MediaArtifacts outputs, boolean hasAudio, EncoderSettings encoder)
+            throws IOException, InterruptedException {
+        if (encoder.getSegments() > 1) {
+            try {
+                if (transcodeSegmented(inputFile, outputs, hasAudio, encoder)) {
+                    return hasAudio;
+                }
+            } catch (IOException e) {
+                System.err.println("Segmented transcode failed, retrying as one pass: " + e.getMessage());
+            }
+        }
+        if (hasAudio) {
+            Files.createDirectories(outputs.getMp3Audio().getAbsoluteFile().getParentFile().toPath());
+            Files.createDirectories(outputs.getAnalysisWav().getAbsoluteFile().getParentFile().toPath());
+        }
+
+        List<String> command = new ArrayList<>(List.of(
+            FFMPEG_PATH,
             "-i", inputFile.getAbsolutePath(),
-            "-i", watermarkPath,
+            "-i", WATERMARK_PATH,
+            "-filter_complex",
+                WATERMARK_FILTER + ",split=2[out][thumbsrc];" +
+                "[thumbsrc]trim=start=1,setpts=PTS-STARTPTS[thumb]"));
+
+        addVideoOutput(command, "[out]", outputs.getCompressedVideo(), encoder);
+
+        command.addAll(List.of(
+            "-map", "[thumb]",
+            "-frames:v", "1",
+            "-y", outputs.getThumbnail().getAbsolutePath()));
+
+        if (hasAudio) {
+            command.addAll(List.of(
+                "-map", "0:a:0",
+                "-vn",
+                "-q:a", "0",
+                "-y", outputs.getMp3Audio().getAbsolutePath(),
+                "-map", "0:a:0",
+                "-vn",
+                "-ar", "16000",
+                "-ac", "1",
+                "-c:a", "pcm_s16le",
+                "-y", outputs.getAnalysisWav().getAbsolutePath()));
+        }
+
+        runFfmpeg(command);
+        return hasAudio;
+    }
+
+    /**
+     * Starts an FFmpeg that reads the upload from its stdin and writes the
+     * watermarked MP4 and the thumbnail as the bytes arrive, so the encode
+     * overlaps the network transfer. The caller writes the upload to
+     * {@link Process#getOutputStream()}, closes it, and waits for the exit
+     * code. FFmpeg's console output goes to {@code logFile}.
+     *
+     * Only inputs that can be decoded front to back work this way: fragmented
+     * MP4, WebM, Matroska, or MP4 with the index at the start. For an MP4
+     * with the index at the end FFmpeg fails once the stream is complete and
+     * the file has to go through {@link #transcodeAll} instead.
+     */
+    public Process startStreamingTranscode(File compressedFile, File thumbnail, File logFile,
+            EncoderSettings encoder) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+            FFMPEG_PATH,
+            "-i", "pipe:0",
+            "-i", WATERMARK_PATH,
             "-filter_complex",
-                "[0:v]scale=270:480:force_original_aspect_ratio=decrease[scaled];" +
-                "[1:v]format=rgba[wm];" +
-                "[scaled][wm]overlay=x=W-w-15:y=15[watermarked];" +
-                "[watermarked]pad=270:480:(ow-iw)/2:(oh-ih)/2,format=yuv420p[out]",
-            "-map", "[out]",
+                WATERMARK_FILTER + ",split=2[out][thumbsrc];" +
+                "[thumbsrc]trim=start=1,setpts=PTS-STARTPTS[thumb]"));
+
+        addVideoOutput(command, "[out]", compressedFile, encoder);
+
+        command.addAll(List.of(
+            "-map", "[thumb]",
+            "-frames:v", "1",
+            "-y", thumbnail.getAbsolutePath()));
+
+        System.out.println("Starting streaming FFmpeg command: " + String.join(" ", command));
+        return new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logFile)
+            .start();
+    }
+
+    /**
+     * Writes the served MP3 and the 16 kHz mono analysis WAV from a source
+     * whose video has already been transcoded.
+     */
+    public void extractAudio(File inputFile, MediaArtifacts outputs) throws IOException, InterruptedException {
+        Files.createDirectories(outputs.getMp3Audio().getAbsoluteFile().getParentFile().toPath());
+        Files.createDirectories(outputs.getAnalysisWav().getAbsoluteFile().getParentFile().toPath());
+        runFfmpeg(new ArrayList<>(List.of(
+            FFMPEG_PATH,
+            "-i", inputFile.getAbsolutePath(),
+            "-map", "0:a:0",
+            "-vn",
+            "-q:a", "0",
+            "-y", outputs.getMp3Audio().getAbsolutePath(),
+            "-map", "0:a:0",
+            "-vn",
+            "-ar", "16000",
+            "-ac", "1",
+            "-c:a", "pcm_s16le",
+            "-y", outputs.getAnalysisWav().getAbsolutePath())));
+    }
+
+    /**
+     * Segment-parallel variant of {@link #transcodeAll}: the video stream is
+     * cut at keyframes into about {@code encoder.getSegments()} parts without
+     * re-encoding, the parts are watermarked and encoded concurrently, and
+     * the concat demuxer joins them back together with the audio encoded once
+     * from the source, so there are no gaps at segment boundaries. The audio
+     * outputs and the thumbnail are produced on the calling thread while the
+     * parts encode.
+     *
+     * The caller's transcode slot covers the first part; every further part
+     * takes a slot of its own with {@link TranscodeExecutor#reserve()}, so
+     * admission and the transcode metrics count each encode. The clip is cut
+     * into as many parts as there are slots.
+     *
+     * @return false if the clip is too short to be worth splitting or no
+     *         extra slot is free; nothing has been written in that case
+     */
+    private boolean transcodeSegmented(File inputFile, MediaArtifacts outputs, boolean hasAudio,
+            EncoderSettings encoder) throws IOException, InterruptedException {
+        double duration = probeDurationSeconds(inputFile);
+        if (duration < MIN_SEGMENT_SECONDS * 2) {
+            return false;
+        }
+        int wanted = (int) Math.min(encoder.getSegments(), Math.floor(duration / MIN_SEGMENT_SECONDS));
+        int reserved = 0;
+        while (reserved < wanted - 1 && transcodeExecutor.reserve()) {
+            reserved++;
+        }
+        if (reserved == 0) {
+            return false;
+        }
+        int segments = reserved + 1;
+        double segmentSeconds = Math.ceil(duration / segments);
+        // Fewer parts than planned each get a bigger share of the cores
+        int threads = encoder.getThreads() > 0 && segments < encoder.getSegments()
+                ? Math.max(1, Runtime.getRuntime().availableProcessors() / segments)
+                : encoder.getThreads();
+
+        File compressed = outputs.getCompressedVideo().getAbsoluteFile();
+        Path workDir = null;
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            workDir = Files.createTempDirectory(compressed.getParentFile().toPath(), "segments-");
+            // Stream copy can only cut on keyframes, so parts run slightly long
+            runFfmpeg(List.of(
+                FFMPEG_PATH, "-v", "error",
+                "-i", inputFile.getAbsolutePath(),
+                "-map", "0:v:0",
+                "-c", "copy",
+                "-f", "segment",
+                "-segment_time", String.valueOf(segmentSeconds),
+                "-reset_timestamps", "1",
+                "-y", workDir.resolve("src_%03d.mp4").toString()));
+
+            List<Path> parts;
+            try (Stream<Path> files = Files.list(workDir)) {
+                parts = files.filter(p -> p.getFileName().toString().startsWith("src_")).sorted().toList();
+            }
+
+            // A keyframe-aligned cut can leave one part more than planned; it waits for a slot
+            Semaphore partSlots = new Semaphore(segments);
+            List<Path> encoded = new ArrayList<>();
+            for (Path part : parts) {
+                Path out = workDir.resolve(part.getFileName().toString().replace("src_", "enc_"));
+                encoded.add(out);
+                List<String> command = new ArrayList<>(List.of(
+                    FFMPEG_PATH, "-v", "error",
+                    "-i", part.toString(),
+                    "-i", WATERMARK_PATH,
+                    "-filter_complex", WATERMARK_FILTER + "[out]",
+                    "-map", "[out]",
+                    "-an",
+                    "-vcodec", "libx264",
+                    "-preset", encoder.getPreset()));
+                if (threads > 0) {
+                    command.addAll(List.of("-threads", String.valueOf(threads)));
+                }
+                command.addAll(List.of("-crf", "23", "-r", "24", "-y", out.toString()));
+                tasks.add(segmentPool.submit(() -> {
+                    partSlots.acquire();
+                    try {
+                        runFfmpeg(command);
+                    } finally {
+                        partSlots.release();
+                    }
+                    return null;
+                }));
+            }
+
+            runFfmpeg(List.of(
+                FFMPEG_PATH, "-v", "error",
+                "-ss", "1",
+                "-i", inputFile.getAbsolutePath(),
+                "-i", WATERMARK_PATH,
+                "-filter_complex", WATERMARK_FILTER + "[thumb]",
+                "-map", "[thumb]",
+                "-frames:v", "1",
+                "-y", outputs.getThumbnail().getAbsolutePath()));
+            if (hasAudio) {
+                extractAudio(inputFile, outputs);
+            }
+            awaitAll(tasks);
+
+            StringBuilder list = new StringBuilder();
+            for (Path part : encoded) {
+                list.append("file '").append(part.toAbsolutePath()).append("'\n");
+            }
+            Path listFile = workDir.resolve("parts.txt");
+            Files.writeString(listFile, list.toString());
+
+            runFfmpeg(List.of(
+                FFMPEG_PATH, "-v", "error",
+                "-f", "concat",
+                "-safe", "0",
+                "-i", listFile.toString(),
+                "-i", inputFile.getAbsolutePath(),
+                "-map", "0:v:0",
+                "-map", "1:a:0?",
+                "-c:v", "copy",
+                "-acodec", "aac",
+                "-b:a", "96k",
+                "-movflags", "+faststart",
+                "-f", "mp4",
+                "-y", compressed.getAbsolutePath()));
+            return true;
+        } finally {
+            // The ffmpeg processes outlive an interrupted task, so hold the slots until they exit
+            awaitQuietly(tasks);
+            for (int i = 0; i < reserved; i++) {
+                transcodeExecutor.release();
+            }
+            if (workDir != null) {
+                FileSystemUtils.deleteRecursively(workDir);
+            }
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> tasks) throws IOException, InterruptedException {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Segment transcode failed", e.getCause());
+            }
+        }
+    }
+
+    private static void awaitQuietly(List<Future<?>> tasks) {
+        boolean interrupted = false;
+        for (Future<?> task : tasks) {
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (ExecutionException e) {
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double probeDurationSeconds(File inputFile) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(
+            FFPROBE_PATH, "-v", "quiet",
+            "-show_entries", "format=duration",
+            "-of", "csv=p=0",
+            inputFile.getAbsolutePath())
+            .redirectErrorStream(true)
+            .start();
+        String line;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = reader.readLine();
+        }
+        process.waitFor();
+        try {
+            return line == null ? 0 : Double.parseDouble(line.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public boolean hasAudioStream(File inputFile) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(
+            FFPROBE_PATH, "-v", "quiet",
+            "-select_streams", "a",
+            "-show_entries", "stream=index",
+            "-of", "csv=p=0",
+            inputFile.getAbsolutePath());
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        boolean found = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    found = true;
+                }
+            }
+        }
+        process.waitFor();
+        return found;
+    }
+
+    private void addVideoOutput(List<String> command, String label, File outputFile, EncoderSettings encoder) {
+        command.addAll(List.of(
+            "-map", label,
             "-map", "0:a?",
             "-vcodec", "libx264",
-            "-preset", "fast",
+            "-preset", encoder.getPreset()));
+        if (encoder.getThreads() > 0) {
+            command.addAll(List.of("-threads", String.valueOf(encoder.getThreads())));
+        }
+        command.addAll(List.of(
             "-crf", "23",
             "-acodec", "aac",
             "-b:a", "96k",
@@ -39,9 +432,10 @@ public class FFmpegService {
             "-movflags", "+faststart",
             "-f", "mp4",
             "-y",
-            outputFile.getAbsolutePath()
-        };
+            outputFile.getAbsolutePath()));
+    }
 
+    private void runFfmpeg(List<String> command) throws IOException, InterruptedException {
         System.out.println("Running FFmpeg command: " + String.join(" ", command));
 
         ProcessBuilder processBuilder = new ProcessBuilder(command);
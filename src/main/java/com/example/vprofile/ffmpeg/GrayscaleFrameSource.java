@@ -0,0 +1,85 @@
+package com.example.vprofile.ffmpeg;
+
+import java.io.IOException;
+
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * Decodes a video in-process and hands out grayscale frames at a fixed
+ * sampling rate, the same frames an {@code ffmpeg -vf fps=N} dump would
+ * produce but without encoding them to image files and reading them back.
+ *
+ * The decoder converts straight to GRAY8, so no colour conversion is needed
+ * downstream. Each returned {@link Mat} is an independent copy owned by the
+ * caller, which must release it.
+ */
+public class GrayscaleFrameSource implements AutoCloseable {
+
+    private final FFmpegFrameGrabber grabber;
+    private final OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+    private final long sampleIntervalMicros;
+    private long nextSampleMicros = 0;
+    private int sampledFrames = 0;
+
+    public GrayscaleFrameSource(String source, double samplesPerSecond) throws IOException {
+        if (samplesPerSecond <= 0) {
+            throw new IllegalArgumentException("samplesPerSecond must be positive");
+        }
+        this.sampleIntervalMicros = Math.round(1_000_000 / samplesPerSecond);
+        this.grabber = new FFmpegFrameGrabber(source);
+        grabber.setPixelFormat(avutil.AV_PIX_FMT_GRAY8);
+        try {
+            grabber.start();
+        } catch (FrameGrabber.Exception e) {
+            close();
+            throw new IOException("Failed to open video for decoding: " + source, e);
+        }
+    }
+
+    /**
+     * Returns the next sampled frame, or null once the stream is exhausted.
+     */
+    public Mat next() throws IOException {
+        try {
+            Frame frame;
+            while ((frame = grabber.grabImage()) != null) {
+                if (frame.timestamp < nextSampleMicros) {
+                    continue;
+                }
+                nextSampleMicros += sampleIntervalMicros;
+                // Skip ahead if the stream jumped past several sample points
+                while (nextSampleMicros <= frame.timestamp) {
+                    nextSampleMicros += sampleIntervalMicros;
+                }
+                Mat mat = converter.convert(frame);
+                if (mat == null || mat.empty()) {
+                    continue;
+                }
+                sampledFrames++;
+                // The grabber reuses its frame buffer, so hand out a copy
+                return mat.clone();
+            }
+            return null;
+        } catch (FrameGrabber.Exception e) {
+            throw new IOException("Failed to decode video frame", e);
+        }
+    }
+
+    public int getSampledFrames() {
+        return sampledFrames;
+    }
+
+    @Override
+    public void close() {
+        try {
+            grabber.close();
+        } catch (FrameGrabber.Exception ignored) {
+        }
+        converter.close();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.vprofile.ffmpeg;
+
+import java.io.File;
+
+/**
+ * Output locations for a single-decode {@link FFmpegService#transcodeAll} run.
+ * The audio outputs are only written when the source has an audio track.
+ */
+public class MediaArtifacts {
+
+    private final File compressedVideo;
+    private final File mp3Audio;
+    private final File analysisWav;
+    private final File thumbnail;
+
+    public MediaArtifacts(File compressedVideo, File mp3Audio, File analysisWav, File thumbnail) {
+        this.compressedVideo = compressedVideo;
+        this.mp3Audio = mp3Audio;
+        this.analysisWav = analysisWav;
+        this.thumbnail = thumbnail;
+    }
+
+    public File getCompressedVideo() {
+        return compressedVideo;
+    }
+
+    public File getMp3Audio() {
+        return mp3Audio;
+    }
+
+    public File getAnalysisWav() {
+        return analysisWav;
+    }
+
+    public File getThumbnail() {
+        return thumbnail;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.vprofile.ffmpeg;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Dedicated worker pool for libx264 transcodes. Each transcode already uses
+ * several cores, so the pool is sized to a fraction of the machine and
+ * uploads beyond {@link #getMaxBacklog()} are turned away at the door instead
+ * of piling up ffmpeg processes.
+ *
+ * Tasks wait in a bounded priority queue with two lanes: first uploads run
+ * before re-uploads, so a user re-recording over and over cannot starve new
+ * candidates.
+ *
+ * Live transcodes started outside the pool, and the extra parts of a
+ * segmented transcode, take run slots with {@link #reserve()}. They share the
+ * same {@code workers} slots as queued tasks, so no more than that many
+ * encodes run at once.
+ */
+@Component
+public class TranscodeExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(TranscodeExecutor.class);
+
+    public enum Lane {
+        FIRST_UPLOAD,
+        REUPLOAD,
+        BACKGROUND // quality re-encodes, only started when the pool is idle
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int workers;
+    private final int queueCapacity;
+    private final int maxBacklog;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+    // Submitted and not yet finished (queued + running)
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // One permit per worker, held by every running transcode, pooled or live
+    private final Semaphore runSlots;
+
+    private final Timer waitTimer;
+    private final Timer runTimer;
+
+    // Exponentially weighted average of transcode time, seeded with a typical 60s clip
+    private volatile double averageRunSeconds = 30.0;
+    private volatile long lastBacklog;
+
+    public TranscodeExecutor(MeterRegistry meterRegistry,
+            @Value("${transcode.workers:0}") int configuredWorkers,
+            @Value("${transcode.queue-capacity:0}") int configuredQueueCapacity,
+            @Value("${transcode.max-backlog:50}") int maxBacklog) {
+        this.workers = configuredWorkers > 0
+                ? configuredWorkers
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.queueCapacity = configuredQueueCapacity > 0 ? configuredQueueCapacity : workers;
+        this.maxBacklog = maxBacklog;
+        this.runSlots = new Semaphore(workers);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "transcode-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        this.waitTimer = Timer.builder("transcode.wait")
+                .description("Time from upload until its transcode starts")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("transcode.run")
+                .description("Wall-clock time of a single transcode")
+                .register(meterRegistry);
+        Gauge.builder("transcode.queue.depth", executor, e -> e.getQueue().size())
+                .description("Transcodes waiting for a worker on this node")
+                .register(meterRegistry);
+        Gauge.builder("transcode.active", active, AtomicInteger::get)
+                .description("Transcodes currently running on this node")
+                .register(meterRegistry);
+        Gauge.builder("transcode.backlog", this, e -> e.lastBacklog)
+                .description("Uploads waiting for or undergoing transcode across all nodes")
+                .register(meterRegistry);
+
+        logger.info("Transcode pool started with {} workers, queue capacity {}, max backlog {}",
+                workers, queueCapacity, maxBacklog);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Number of tasks this node can accept right now without exceeding its queue.
+     */
+    public int freeSlots() {
+        return Math.max(0, workers + queueCapacity - outstanding.get());
+    }
+
+    /**
+     * Queues a transcode. Returns false if the local queue is full; the caller
+     * should hand the work back to the shared queue.
+     */
+    public synchronized boolean submit(Lane lane, LocalDateTime enqueuedAt, Runnable task) {
+        if (outstanding.get() >= workers + queueCapacity) {
+            return false;
+        }
+        outstanding.incrementAndGet();
+        executor.execute(new LaneTask(lane, sequence.incrementAndGet(), enqueuedAt, task));
+        return true;
+    }
+
+    /**
+     * Takes a worker slot for a transcode that runs outside the pool, such as
+     * one fed from an upload still in progress. Returns false if every worker
+     * is busy or the queue is full; otherwise {@link #release()} must be
+     * called when it finishes. While the slot is held, one pool thread waits
+     * instead of starting a queued task.
+     */
+    public synchronized boolean reserve() {
+        if (outstanding.get() >= workers + queueCapacity || !runSlots.tryAcquire()) {
+            return false;
+        }
+        outstanding.incrementAndGet();
+        active.incrementAndGet();
+        return true;
+    }
+
+    public void release() {
+        active.decrementAndGet();
+        outstanding.decrementAndGet();
+        runSlots.release();
+    }
+
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Cluster-wide backlog as last recorded by {@link #recordBacklog}.
+     */
+    public long getBacklog() {
+        return lastBacklog;
+    }
+
+    /**
+     * True when nothing is queued or running here and the shared queue is empty.
+     */
+    public boolean isIdle() {
+        return outstanding.get() == 0 && lastBacklog == 0;
+    }
+
+    /**
+     * Records the cluster-wide backlog (exported as a gauge) and reports whether a
+     * new upload may be admitted.
+     */
+    public boolean admit(long backlog) {
+        recordBacklog(backlog);
+        return backlog < maxBacklog;
+    }
+
+    public void recordBacklog(long backlog) {
+        lastBacklog = backlog;
+    }
+
+    /**
+     * Rough number of seconds until a transcode at the given queue position would
+     * start on this node, based on recent transcode times.
+     */
+    public long estimateWaitSeconds(long queuePosition) {
+        double rounds = Math.ceil((double) queuePosition / workers);
+        return Math.max(1, Math.round(rounds * averageRunSeconds));
+    }
+
+    private final class LaneTask implements Runnable, Comparable<LaneTask> {
+        private final Lane lane;
+        private final long seq;
+        private final LocalDateTime enqueuedAt;
+        private final Runnable delegate;
+
+        LaneTask(Lane lane, long seq, LocalDateTime enqueuedAt, Runnable delegate) {
+            this.lane = lane;
+            this.seq = seq;
+            this.enqueuedAt = enqueuedAt != null ? enqueuedAt : LocalDateTime.now();
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runSlots.acquire();
+            } catch (InterruptedException e) {
+                // Pool shutting down
+                outstanding.decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Duration waited = Duration.between(enqueuedAt, LocalDateTime.now());
+            waitTimer.record(waited.isNegative() ? Duration.ZERO : waited);
+            active.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                delegate.run();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                averageRunSeconds = 0.8 * averageRunSeconds + 0.2 * (elapsed / 1e9);
+                active.decrementAndGet();
+                outstanding.decrementAndGet();
+                runSlots.release();
+            }
+        }
+
+        @Override
+        public int compareTo(LaneTask other) {
+            int byLane = lane.compareTo(other.lane);
+            return byLane != 0 ? byLane : Long.compare(seq, other.seq);
+        }
+    }
+}
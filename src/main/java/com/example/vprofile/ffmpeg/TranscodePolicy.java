@@ -0,0 +1,100 @@
+package com.example.vprofile.ffmpeg;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the libx264 preset for the next transcode from the current backlog.
+ * When the upload is the only one in the queue it is split into segments
+ * that are encoded side by side (see {@link FFmpegService}), since a single
+ * libx264 process leaves cores idle.
+ * With a short queue every upload gets the quality preset; when a placement
+ * drive floods the queue, faster presets trade some bitrate efficiency for
+ * throughput, and each process is limited to its share of the cores so
+ * concurrent encodes do not fight over them. Videos encoded below the quality
+ * preset are re-encoded at the quality preset later, once the pool is idle
+ * (see {@code AnalysisScheduler#pollReencode}).
+ */
+@Component
+public class TranscodePolicy {
+    private static final Logger logger = LoggerFactory.getLogger(TranscodePolicy.class);
+
+    private final TranscodeExecutor transcodeExecutor;
+
+    @Value("${transcode.policy.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transcode.preset:fast}")
+    private String qualityPreset;
+
+    // Backlog (uploads waiting or transcoding cluster-wide) or expected wait that switches preset
+    @Value("${transcode.policy.veryfast-backlog:10}")
+    private long veryfastBacklog;
+
+    @Value("${transcode.policy.veryfast-wait-seconds:120}")
+    private long veryfastWaitSeconds;
+
+    @Value("${transcode.policy.ultrafast-backlog:30}")
+    private long ultrafastBacklog;
+
+    @Value("${transcode.policy.ultrafast-wait-seconds:300}")
+    private long ultrafastWaitSeconds;
+
+    // Split a lone upload across cores when the backlog is at most this (it counts the upload itself)
+    @Value("${transcode.segmented.enabled:true}")
+    private boolean segmentedEnabled;
+
+    @Value("${transcode.segmented.max-backlog:1}")
+    private long segmentedMaxBacklog;
+
+    @Value("${transcode.segmented.max-segments:4}")
+    private int maxSegments;
+
+    private volatile String lastPreset;
+
+    public TranscodePolicy(TranscodeExecutor transcodeExecutor) {
+        this.transcodeExecutor = transcodeExecutor;
+    }
+
+    public String getQualityPreset() {
+        return qualityPreset;
+    }
+
+    public EncoderSettings select() {
+        long backlog = transcodeExecutor.getBacklog();
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        // One candidate waiting on the status screen: use every core for their video
+        if (segmentedEnabled && backlog <= segmentedMaxBacklog && cores >= 4) {
+            int segments = Math.min(maxSegments, cores / 2);
+            return new EncoderSettings(qualityPreset, Math.max(1, cores / segments), segments);
+        }
+        if (!enabled) {
+            return new EncoderSettings(qualityPreset, 0);
+        }
+        long waitSeconds = transcodeExecutor.estimateWaitSeconds(backlog);
+
+        String preset;
+        if (backlog >= ultrafastBacklog || waitSeconds >= ultrafastWaitSeconds) {
+            preset = "ultrafast";
+        } else if (backlog >= veryfastBacklog || waitSeconds >= veryfastWaitSeconds) {
+            preset = "veryfast";
+        } else {
+            preset = qualityPreset;
+        }
+
+        // Under load every worker is busy, so give each encode an even share of the cores
+        int threads = 0;
+        if (!preset.equals(qualityPreset)) {
+            threads = Math.max(1, cores / transcodeExecutor.getWorkers());
+        }
+
+        if (!preset.equals(lastPreset)) {
+            logger.info("🎛 Transcode preset now {} (backlog {}, est. wait {}s)", preset, backlog, waitSeconds);
+            lastPreset = preset;
+        }
+        return new EncoderSettings(preset, threads);
+    }
+}
@@ -70,7 +70,8 @@ public class SecurityConfig {
             "/api/videos/video/**",
             "/api/auth/linkedin",
             "/api/culture-fit-scores",
-            "/api/culture-fit-score/**"
+            "/api/culture-fit-score/**",
+            "/api/transcription/webhook"
         };
         
         http
@@ -22,6 +22,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.vprofile.voicesearch.VoiceSearchIndex;
+
 @RestController
 @RequestMapping("/api/users") // Base URL for this controller
 public class UserController {
@@ -36,6 +38,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private VoiceSearchIndex voiceSearchIndex;
+
     @PostMapping("/signup/user")
     public ResponseEntity<?> signupUser(@RequestParam("firstName") String firstName,
             @RequestParam("email") String email,
@@ -344,6 +349,9 @@ public class UserController {
             }
 
             User updatedUser = userService.saveUser(existingUser);
+            if (keySkills != null) {
+                voiceSearchIndex.reindexUser(userId);
+            }
             return ResponseEntity.ok(updatedUser);
 
         } catch (Exception e) {
@@ -0,0 +1,87 @@
+package com.example.vprofile.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.vprofile.videofolder.VideoService;
+
+/**
+ * Operator view of the dead-letter queue: lists quarantined pipeline jobs and
+ * puts them back in the queue once the cause has been dealt with. Requires
+ * the {@code pipeline.admin-token} in the X-Admin-Token header; with no token
+ * configured the endpoints are disabled.
+ */
+@RestController
+@RequestMapping("/api/admin/pipeline")
+public class PipelineAdminController {
+
+    static final String TOKEN_HEADER = "X-Admin-Token";
+
+    @Autowired
+    private PipelineJobService pipelineJobService;
+
+    @Autowired
+    private VideoService videoService;
+
+    @Value("${pipeline.admin-token:}")
+    private String adminToken;
+
+    @GetMapping("/quarantine")
+    public ResponseEntity<?> listQuarantined(
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (!isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        for (PipelineJob job : pipelineJobService.getQuarantined(limit)) {
+            jobs.add(describe(job));
+        }
+        return ResponseEntity.ok(jobs);
+    }
+
+    @PostMapping("/quarantine/{jobId}/requeue")
+    public ResponseEntity<?> requeue(
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @PathVariable Long jobId) {
+        if (!isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return pipelineJobService.requeue(jobId)
+                .<ResponseEntity<?>>map(job -> {
+                    videoService.resumeProcessing(job.getVideoId());
+                    return ResponseEntity.ok(describe(job));
+                })
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body("No quarantined job with id " + jobId));
+    }
+
+    private boolean isAuthorized(String token) {
+        return !adminToken.isBlank() && adminToken.equals(token);
+    }
+
+    private static Map<String, Object> describe(PipelineJob job) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("jobId", job.getId());
+        result.put("videoId", job.getVideoId());
+        result.put("stage", job.getStage());
+        result.put("status", job.getStatus());
+        result.put("attempts", job.getAttempts());
+        result.put("lastError", job.getLastError());
+        result.put("updatedAt", job.getUpdatedAt());
+        return result;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.vprofile.pipeline;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * One unit of work for the video analysis pipeline. Rows are claimed with a
+ * time-limited lease so several app nodes can drain the same queue; a lease
+ * that is not renewed (node crash, restart) simply expires and the job becomes
+ * claimable again.
+ */
+@Entity
+@Table(name = "pipeline_job", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"video_id", "stage"})
+}, indexes = {
+    @Index(name = "idx_pipeline_job_claim", columnList = "stage, status, priority, next_attempt_at")
+})
+public class PipelineJob {
+
+    /**
+     * The pipeline as a dependency graph: each stage names the stages that
+     * must be DONE for a video before it may run. The single-pass transcode
+     * in COMPRESS also produces the audio tracks and thumbnail, so facial
+     * analysis and transcription both start straight after it and run side
+     * by side; speech scoring needs the transcript. Facial and speech scoring
+     * each try the total score when they finish. EMBED stores the transcript
+     * embedding for semantic search and is not part of scoring.
+     */
+    public enum Stage {
+        COMPRESS,
+        TRANSCRIBE(COMPRESS),
+        FACIAL(COMPRESS),
+        SPEECH(TRANSCRIBE),
+        EMBED(TRANSCRIBE);
+
+        private final Stage[] prerequisites;
+
+        Stage(Stage... prerequisites) {
+            this.prerequisites = prerequisites;
+        }
+
+        public List<Stage> getPrerequisites() {
+            return List.of(prerequisites);
+        }
+
+        /**
+         * Stages that list this one as a prerequisite.
+         */
+        public List<Stage> getSuccessors() {
+            List<Stage> successors = new ArrayList<>();
+            for (Stage stage : values()) {
+                if (stage.getPrerequisites().contains(this)) {
+                    successors.add(stage);
+                }
+            }
+            return successors;
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Stage stage;
+
+    @Column(nullable = false, length = 20)
+    private String status; // PENDING | RUNNING | DONE | QUARANTINED (FAILED on older rows)
+
+    private String payload;
+
+    private int priority; // lower runs first; 0 = normal
+
+    private int attempts;
+
+    private String leaseOwner;
+    private LocalDateTime leaseExpiresAt;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public PipelineJob() {
+    }
+
+    public PipelineJob(Long videoId, Stage stage, String payload) {
+        this(videoId, stage, payload, 0);
+    }
+
+    public PipelineJob(Long videoId, Stage stage, String payload, int priority) {
+        this.videoId = videoId;
+        this.stage = stage;
+        this.payload = payload;
+        this.priority = priority;
+        this.status = "PENDING";
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getVideoId() {
+        return videoId;
+    }
+
+    public void setVideoId(Long videoId) {
+        this.videoId = videoId;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public void setStage(Stage stage) {
+        this.stage = stage;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.vprofile.pipeline;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface PipelineJobRepository extends JpaRepository<PipelineJob, Long> {
+
+        Optional<PipelineJob> findByVideoIdAndStage(Long videoId, PipelineJob.Stage stage);
+
+        boolean existsByVideoIdAndStage(Long videoId, PipelineJob.Stage stage);
+
+        List<PipelineJob> findAllByVideoId(Long videoId);
+
+        List<PipelineJob> findByStatusInOrderByUpdatedAtDesc(Collection<String> statuses, Pageable pageable);
+
+        // Rows locked here stay invisible to other nodes until the claiming
+        // transaction commits; SKIP LOCKED lets them move on to the next rows.
+        @Query(value = "SELECT * FROM pipeline_job WHERE stage = :stage AND ("
+                        + "(status = 'PENDING' AND next_attempt_at <= :now) OR "
+                        + "(status = 'RUNNING' AND lease_expires_at < :now)) "
+                        + "ORDER BY priority, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+        List<PipelineJob> lockClaimable(@Param("stage") String stage,
+                        @Param("now") LocalDateTime now,
+                        @Param("limit") int limit);
+
+        @Query("SELECT COUNT(j) FROM PipelineJob j WHERE j.stage = :stage AND j.status IN ('PENDING', 'RUNNING')")
+        long countBacklog(@Param("stage") PipelineJob.Stage stage);
+
+        @Modifying
+        @Query("UPDATE PipelineJob j SET j.leaseExpiresAt = :leaseExpiresAt, j.heartbeatAt = :now "
+                        + "WHERE j.id IN :ids AND j.leaseOwner = :owner AND j.status = 'RUNNING'")
+        int renewLeases(@Param("ids") Collection<Long> ids,
+                        @Param("owner") String owner,
+                        @Param("now") LocalDateTime now,
+                        @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+
+        // The transitions below only apply while this node still holds the lease. A worker
+        // whose lease expired and was reclaimed elsewhere updates nothing and gets 0 back.
+        @Transactional
+        @Modifying
+        @Query("UPDATE PipelineJob j SET j.status = 'DONE', j.leaseOwner = NULL, j.leaseExpiresAt = NULL, "
+                        + "j.lastError = NULL, j.updatedAt = :now "
+                        + "WHERE j.id = :id AND j.leaseOwner = :owner AND j.status = 'RUNNING'")
+        int markDone(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+        @Transactional
+        @Modifying
+        @Query("UPDATE PipelineJob j SET j.status = 'PENDING', "
+                        + "j.attempts = CASE WHEN j.attempts > 0 THEN j.attempts - 1 ELSE 0 END, "
+                        + "j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.updatedAt = :now "
+                        + "WHERE j.id = :id AND j.leaseOwner = :owner AND j.status = 'RUNNING'")
+        int release(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+        @Transactional
+        @Modifying
+        @Query("UPDATE PipelineJob j SET j.status = :status, j.nextAttemptAt = :nextAttemptAt, "
+                        + "j.lastError = :lastError, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.updatedAt = :now "
+                        + "WHERE j.id = :id AND j.leaseOwner = :owner AND j.status = 'RUNNING'")
+        int markFailed(@Param("id") Long id, @Param("owner") String owner,
+                        @Param("status") String status,
+                        @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                        @Param("lastError") String lastError,
+                        @Param("now") LocalDateTime now);
+
+        @Modifying
+        @Query("DELETE FROM PipelineJob j WHERE j.videoId = :videoId")
+        int deleteAllByVideoId(@Param("videoId") Long videoId);
+}
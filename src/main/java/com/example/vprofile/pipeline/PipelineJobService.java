@@ -0,0 +1,324 @@
+package com.example.vprofile.pipeline;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Durable, lease-based work queue backing the video analysis pipeline.
+ *
+ * Jobs are claimed in batches with {@code SELECT ... FOR UPDATE SKIP LOCKED}
+ * so any number of nodes and worker threads can poll concurrently without
+ * picking the same row. A claimed job carries a lease that the owner renews
+ * via {@link #renewLeases}; if the owner dies the lease runs out and the job is
+ * handed to the next poller, which is how work interrupted by a restart is
+ * resumed.
+ *
+ * Completing, failing or releasing a job only takes effect while this node
+ * still holds its lease: once a lease has expired and another node has
+ * reclaimed the job, the late result of the first worker is dropped.
+ *
+ * A failing job is retried with exponential backoff and, once it has used up
+ * {@code pipeline.max-attempts}, parked as QUARANTINED where it stays until
+ * requeued by hand, so one bad video cannot keep a stage busy.
+ */
+@Service
+public class PipelineJobService {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineJobService.class);
+
+    private final PipelineJobRepository jobRepository;
+
+    private final String nodeId;
+
+    @Value("${pipeline.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${pipeline.max-attempts:5}")
+    private int maxAttempts;
+
+    // First retry delay; doubles with every further attempt
+    @Value("${pipeline.retry-delay-seconds:60}")
+    private long retryDelaySeconds;
+
+    @Value("${pipeline.max-retry-delay-seconds:3600}")
+    private long maxRetryDelaySeconds;
+
+    private final Set<PipelineJob.Stage> disabledStages = EnumSet.noneOf(PipelineJob.Stage.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public PipelineJobService(PipelineJobRepository jobRepository, MeterRegistry meterRegistry) {
+        this.jobRepository = jobRepository;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+                + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * Adds a job for the given stage unless one already exists for the video.
+     * Returns true when a new row was inserted.
+     */
+    public boolean enqueue(Long videoId, PipelineJob.Stage stage, String payload) {
+        return enqueue(videoId, stage, payload, 0);
+    }
+
+    public boolean enqueue(Long videoId, PipelineJob.Stage stage, String payload, int priority) {
+        if (jobRepository.existsByVideoIdAndStage(videoId, stage)) {
+            return false;
+        }
+        try {
+            jobRepository.save(new PipelineJob(videoId, stage, payload, priority));
+            logger.info("📥 Enqueued {} job for video ID: {}", stage, videoId);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Another node enqueued the same (video, stage) pair first
+            return false;
+        }
+    }
+
+    /**
+     * Claims up to {@code limit} runnable jobs for this node. PENDING jobs whose
+     * retry time has come and RUNNING jobs whose lease expired are both eligible.
+     */
+    @Transactional
+    public List<PipelineJob> claim(PipelineJob.Stage stage, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<PipelineJob> jobs = jobRepository.lockClaimable(stage.name(), now, limit);
+        for (PipelineJob job : jobs) {
+            if ("RUNNING".equals(job.getStatus())) {
+                logger.warn("♻️ Reclaiming {} job {} for video ID {} (lease held by {} expired)",
+                        stage, job.getId(), job.getVideoId(), job.getLeaseOwner());
+            }
+            job.setStatus("RUNNING");
+            job.setLeaseOwner(nodeId);
+            job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+            job.setHeartbeatAt(now);
+            job.setAttempts(job.getAttempts() + 1);
+        }
+        return jobRepository.saveAll(jobs);
+    }
+
+    /**
+     * Number of jobs for the stage that are waiting or running on any node.
+     */
+    public long countBacklog(PipelineJob.Stage stage) {
+        return jobRepository.countBacklog(stage);
+    }
+
+    /**
+     * Hands a claimed job back to the queue without counting it as an attempt,
+     * e.g. when the local executor could not accept it.
+     */
+    public void release(Long jobId) {
+        if (jobRepository.release(jobId, nodeId, LocalDateTime.now()) == 0) {
+            logger.warn("Job {} was not released: this node no longer holds its lease", jobId);
+        }
+    }
+
+    @Transactional
+    public int renewLeases(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return jobRepository.renewLeases(jobIds, nodeId, now, now.plusSeconds(leaseSeconds));
+    }
+
+    /**
+     * Stops successors of the stage from being enqueued on this node, for
+     * stages whose worker is not available here.
+     */
+    public void disableStage(PipelineJob.Stage stage) {
+        disabledStages.add(stage);
+    }
+
+    public boolean isStageEnabled(PipelineJob.Stage stage) {
+        return !disabledStages.contains(stage);
+    }
+
+    public List<PipelineJob> getJobs(Long videoId) {
+        return jobRepository.findAllByVideoId(videoId);
+    }
+
+    /**
+     * Marks the job DONE and enqueues every successor stage whose
+     * prerequisites are now all DONE for the video. Returns the stages that
+     * were enqueued so the caller can start them without waiting for a poll.
+     * Not one transaction: a successor that another node enqueued first must
+     * not roll back the DONE mark.
+     */
+    public List<PipelineJob.Stage> complete(Long jobId) {
+        Optional<PipelineJob> job = jobRepository.findById(jobId);
+        if (job.isEmpty() || !markDone(job.get())) {
+            return List.of();
+        }
+        return enqueueReadySuccessors(job.get());
+    }
+
+    /**
+     * Records a stage that already ran outside the queue, e.g. a transcode
+     * done while the upload was streaming in, and enqueues its successors.
+     */
+    public List<PipelineJob.Stage> recordCompleted(Long videoId, PipelineJob.Stage stage, String payload,
+            int priority) {
+        PipelineJob job = new PipelineJob(videoId, stage, payload, priority);
+        job.setStatus("DONE");
+        job.setAttempts(1);
+        try {
+            job = jobRepository.save(job);
+        } catch (DataIntegrityViolationException e) {
+            return List.of();
+        }
+        logger.info("✅ Recorded {} for video ID {} as done outside the queue", stage, videoId);
+        return enqueueReadySuccessors(job);
+    }
+
+    /**
+     * Marks the job DONE without starting anything after it, for jobs whose
+     * video has been deleted or replaced.
+     */
+    public void discard(Long jobId) {
+        jobRepository.findById(jobId).ifPresent(this::markDone);
+    }
+
+    /**
+     * Marks the job DONE if this node still holds its lease.
+     */
+    private boolean markDone(PipelineJob job) {
+        if (jobRepository.markDone(job.getId(), nodeId, LocalDateTime.now()) == 0) {
+            logger.warn("⚠️ Dropping result of {} job {} for video ID {}: lease lost to {}",
+                    job.getStage(), job.getId(), job.getVideoId(), job.getLeaseOwner());
+            return false;
+        }
+        return true;
+    }
+
+    private List<PipelineJob.Stage> enqueueReadySuccessors(PipelineJob job) {
+        List<PipelineJob.Stage> successors = job.getStage().getSuccessors();
+        if (successors.isEmpty()) {
+            return List.of();
+        }
+        Set<PipelineJob.Stage> done = EnumSet.noneOf(PipelineJob.Stage.class);
+        for (PipelineJob other : jobRepository.findAllByVideoId(job.getVideoId())) {
+            if ("DONE".equals(other.getStatus())) {
+                done.add(other.getStage());
+            }
+        }
+        done.add(job.getStage());
+
+        List<PipelineJob.Stage> enqueued = new ArrayList<>();
+        for (PipelineJob.Stage next : successors) {
+            if (!disabledStages.contains(next) && done.containsAll(next.getPrerequisites())
+                    && enqueue(job.getVideoId(), next, null, job.getPriority())) {
+                enqueued.add(next);
+            }
+        }
+        return enqueued;
+    }
+
+    /**
+     * Records a failed attempt. The job goes back to PENDING after a delay that
+     * doubles with each attempt until it has used up its attempts, then it is
+     * quarantined. Returns true when the job will not be retried. A failure
+     * reported after this node lost the lease is dropped and returns false:
+     * the job's new owner decides its fate.
+     */
+    public boolean fail(Long jobId, Throwable error) {
+        return jobRepository.findById(jobId).map(job -> {
+            String message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+            String lastError = message.length() > 1000 ? message.substring(0, 1000) : message;
+            LocalDateTime now = LocalDateTime.now();
+            boolean quarantine = job.getAttempts() >= maxAttempts;
+            long delay = quarantine ? 0 : retryDelaySeconds(job.getAttempts());
+            String status = quarantine ? "QUARANTINED" : "PENDING";
+            LocalDateTime nextAttemptAt = quarantine ? job.getNextAttemptAt() : now.plusSeconds(delay);
+            if (jobRepository.markFailed(jobId, nodeId, status, nextAttemptAt, lastError, now) == 0) {
+                logger.warn("⚠️ Dropping failure of {} job {} for video ID {}: lease lost to {}",
+                        job.getStage(), job.getId(), job.getVideoId(), job.getLeaseOwner());
+                return false;
+            }
+
+            String stage = job.getStage().name().toLowerCase();
+            meterRegistry.counter("pipeline.job.failures", "stage", stage).increment();
+            if (quarantine) {
+                meterRegistry.counter("pipeline.job.quarantined", "stage", stage).increment();
+                logger.error("🛑 {} job {} for video ID {} quarantined after {} attempts",
+                        job.getStage(), job.getId(), job.getVideoId(), job.getAttempts());
+            } else {
+                logger.warn("⏳ {} job {} for video ID {} will retry in {}s (attempt {} of {})",
+                        job.getStage(), job.getId(), job.getVideoId(), delay, job.getAttempts(), maxAttempts);
+            }
+            return quarantine;
+        }).orElse(false);
+    }
+
+    /**
+     * Delay before retry number {@code attempts}: the base delay doubled per
+     * earlier attempt, capped, with up to 20% jitter so jobs that failed
+     * together (e.g. during a provider outage) do not all retry at once.
+     */
+    private long retryDelaySeconds(int attempts) {
+        int doublings = Math.min(Math.max(0, attempts - 1), 20);
+        long delay = Math.min(maxRetryDelaySeconds, retryDelaySeconds << doublings);
+        long jitter = (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return delay + jitter;
+    }
+
+    public static boolean isQuarantined(PipelineJob job) {
+        // FAILED is what parked jobs were called before quarantine existed
+        return "QUARANTINED".equals(job.getStatus()) || "FAILED".equals(job.getStatus());
+    }
+
+    public List<PipelineJob> getQuarantined(int limit) {
+        return jobRepository.findByStatusInOrderByUpdatedAtDesc(List.of("QUARANTINED", "FAILED"),
+                PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    /**
+     * Gives a quarantined job a fresh set of attempts, runnable immediately.
+     * Returns the job, or empty if it does not exist or is not quarantined.
+     */
+    @Transactional
+    public Optional<PipelineJob> requeue(Long jobId) {
+        return jobRepository.findById(jobId).filter(PipelineJobService::isQuarantined).map(job -> {
+            job.setStatus("PENDING");
+            job.setAttempts(0);
+            job.setNextAttemptAt(LocalDateTime.now());
+            logger.info("🔁 Requeued {} job {} for video ID {}", job.getStage(), job.getId(), job.getVideoId());
+            return jobRepository.save(job);
+        });
+    }
+
+    @Transactional
+    public void deleteJobsForVideo(Long videoId) {
+        jobRepository.deleteAllByVideoId(videoId);
+    }
+}
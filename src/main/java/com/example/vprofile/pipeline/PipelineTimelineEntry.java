@@ -0,0 +1,133 @@
+package com.example.vprofile.pipeline;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * One attempt at one processing step for a video. A row is written when the
+ * step starts (outcome RUNNING) and completed when it ends, so the rows for a
+ * video read as its timeline.
+ */
+@Entity
+@Table(name = "pipeline_timeline", indexes = {
+    @Index(name = "idx_pipeline_timeline_video", columnList = "video_id"),
+    @Index(name = "idx_pipeline_timeline_step_end", columnList = "step, ended_at")
+})
+public class PipelineTimelineEntry {
+
+    public enum Step {
+        UPLOAD,
+        PROBE,
+        COMPRESS,
+        AUDIO_EXTRACT,
+        THUMBNAIL,
+        TRANSCRIBE,
+        FACIAL,
+        SPEECH,
+        EMBED,
+        TOTAL;
+
+        public static Step of(PipelineJob.Stage stage) {
+            return valueOf(stage.name());
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Step step;
+
+    private int attempt;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "ended_at")
+    private LocalDateTime endedAt;
+
+    private Long durationMs;
+
+    @Column(nullable = false, length = 10)
+    private String outcome; // RUNNING | OK | FAILED
+
+    @Column(length = 255)
+    private String error;
+
+    public PipelineTimelineEntry() {
+    }
+
+    public PipelineTimelineEntry(Long videoId, Step step, int attempt, LocalDateTime startedAt) {
+        this.videoId = videoId;
+        this.step = step;
+        this.attempt = attempt;
+        this.startedAt = startedAt;
+        this.outcome = "RUNNING";
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVideoId() {
+        return videoId;
+    }
+
+    public Step getStep() {
+        return step;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getEndedAt() {
+        return endedAt;
+    }
+
+    public void setEndedAt(LocalDateTime endedAt) {
+        this.endedAt = endedAt;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
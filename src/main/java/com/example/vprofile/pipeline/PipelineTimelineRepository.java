@@ -0,0 +1,23 @@
+package com.example.vprofile.pipeline;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface PipelineTimelineRepository extends JpaRepository<PipelineTimelineEntry, Long> {
+
+        List<PipelineTimelineEntry> findAllByVideoIdOrderByStartedAtAscIdAsc(Long videoId);
+
+        // Per step: completions and mean duration since the given time, as [step, count, avgMs]
+        @Query("SELECT e.step, COUNT(e), AVG(e.durationMs) FROM PipelineTimelineEntry e "
+                        + "WHERE e.outcome = 'OK' AND e.endedAt >= :since GROUP BY e.step")
+        List<Object[]> summarizeCompletedSince(@Param("since") LocalDateTime since);
+
+        @Modifying
+        @Query("DELETE FROM PipelineTimelineEntry e WHERE e.videoId = :videoId")
+        int deleteAllByVideoId(@Param("videoId") Long videoId);
+}
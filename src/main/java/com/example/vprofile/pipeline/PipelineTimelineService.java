@@ -0,0 +1,245 @@
+package com.example.vprofile.pipeline;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.vprofile.pipeline.PipelineTimelineEntry.Step;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records where each video spends its time. Every processing step writes a
+ * {@link PipelineTimelineEntry} when it starts and closes it when it ends,
+ * and the same duration goes to the {@code pipeline.stage.duration} timer,
+ * tagged by step and outcome. Queue depth per stage is exported as
+ * {@code pipeline.queue.depth}.
+ *
+ * Timeline writes are best effort: a failure to record never fails the step
+ * being recorded.
+ */
+@Service
+public class PipelineTimelineService {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineTimelineService.class);
+
+    // Used for the ETA until the window below has completions for a step
+    private static final Map<Step, Double> DEFAULT_SECONDS = new EnumMap<>(Map.of(
+            Step.COMPRESS, 30.0,
+            Step.TRANSCRIBE, 45.0,
+            Step.FACIAL, 20.0,
+            Step.SPEECH, 15.0));
+
+    private final PipelineTimelineRepository timelineRepository;
+    private final PipelineJobService pipelineJobService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<PipelineJob.Stage, AtomicLong> queueDepths = new EnumMap<>(PipelineJob.Stage.class);
+
+    // Cluster-wide completions and mean duration per step over the recent window
+    private volatile Map<Step, StepRate> rates = Map.of();
+
+    @Value("${pipeline.eta-window-minutes:15}")
+    private long etaWindowMinutes;
+
+    public PipelineTimelineService(PipelineTimelineRepository timelineRepository,
+            PipelineJobService pipelineJobService, MeterRegistry meterRegistry) {
+        this.timelineRepository = timelineRepository;
+        this.pipelineJobService = pipelineJobService;
+        this.meterRegistry = meterRegistry;
+        for (PipelineJob.Stage stage : PipelineJob.Stage.values()) {
+            AtomicLong depth = new AtomicLong();
+            queueDepths.put(stage, depth);
+            Gauge.builder("pipeline.queue.depth", depth, AtomicLong::get)
+                    .description("Jobs waiting for or running in the stage across all nodes")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Opens a timeline entry for a step that is starting now.
+     */
+    public Span start(Long videoId, Step step, int attempt) {
+        LocalDateTime now = LocalDateTime.now();
+        PipelineTimelineEntry entry = new PipelineTimelineEntry(videoId, step, attempt, now);
+        try {
+            entry = timelineRepository.save(entry);
+        } catch (RuntimeException e) {
+            logger.warn("Could not record start of {} for video {}: {}", step, videoId, e.getMessage());
+        }
+        return new Span(entry, System.nanoTime());
+    }
+
+    /**
+     * Records a step that has already finished, e.g. one timed before the
+     * video row existed.
+     */
+    public void record(Long videoId, Step step, LocalDateTime startedAt, Duration duration) {
+        PipelineTimelineEntry entry = new PipelineTimelineEntry(videoId, step, 1, startedAt);
+        finish(entry, duration.toNanos(), null);
+    }
+
+    public List<PipelineTimelineEntry> getTimeline(Long videoId) {
+        return timelineRepository.findAllByVideoIdOrderByStartedAtAscIdAsc(videoId);
+    }
+
+    @Transactional
+    public void deleteTimeline(Long videoId) {
+        timelineRepository.deleteAllByVideoId(videoId);
+    }
+
+    @Scheduled(initialDelay = 5000, fixedDelay = 15000)
+    public void refreshStats() {
+        try {
+            for (PipelineJob.Stage stage : PipelineJob.Stage.values()) {
+                queueDepths.get(stage).set(pipelineJobService.countBacklog(stage));
+            }
+            Map<Step, StepRate> fresh = new EnumMap<>(Step.class);
+            LocalDateTime since = LocalDateTime.now().minusMinutes(etaWindowMinutes);
+            for (Object[] row : timelineRepository.summarizeCompletedSince(since)) {
+                long count = ((Number) row[1]).longValue();
+                double avgMs = row[2] != null ? ((Number) row[2]).doubleValue() : 0;
+                fresh.put((Step) row[0], new StepRate(count, avgMs / 1000.0));
+            }
+            rates = fresh;
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh pipeline stats: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Seconds until the video is likely to be fully scored, or null if it has
+     * failed. Walks the stage graph in order: a stage can finish no earlier
+     * than its latest prerequisite, plus the time to clear the jobs queued
+     * ahead of it at the current completion rate, plus its mean run time.
+     */
+    public Long estimateSecondsRemaining(Long videoId) {
+        Map<PipelineJob.Stage, PipelineJob> jobs = new EnumMap<>(PipelineJob.Stage.class);
+        for (PipelineJob job : pipelineJobService.getJobs(videoId)) {
+            jobs.put(job.getStage(), job);
+        }
+        Map<Step, LocalDateTime> runningSince = new EnumMap<>(Step.class);
+        for (PipelineTimelineEntry entry : getTimeline(videoId)) {
+            if ("RUNNING".equals(entry.getOutcome())) {
+                runningSince.put(entry.getStep(), entry.getStartedAt());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<PipelineJob.Stage, Double> finish = new EnumMap<>(PipelineJob.Stage.class);
+        double eta = 0;
+        // Stage constants are declared after their prerequisites
+        for (PipelineJob.Stage stage : PipelineJob.Stage.values()) {
+            if (stage == PipelineJob.Stage.EMBED) {
+                // Only feeds semantic search; the video is scored without it
+                continue;
+            }
+            double ready = 0;
+            for (PipelineJob.Stage prerequisite : stage.getPrerequisites()) {
+                ready = Math.max(ready, finish.getOrDefault(prerequisite, 0.0));
+            }
+            PipelineJob job = jobs.get(stage);
+            double remaining;
+            if (!pipelineJobService.isStageEnabled(stage) || (job != null && "DONE".equals(job.getStatus()))) {
+                remaining = 0;
+            } else if (job != null && PipelineJobService.isQuarantined(job)) {
+                return null;
+            } else if (job != null && "RUNNING".equals(job.getStatus())) {
+                LocalDateTime since = runningSince.get(Step.of(stage));
+                double elapsed = since != null ? Duration.between(since, now).toMillis() / 1000.0 : 0;
+                remaining = Math.max(1, meanSeconds(Step.of(stage)) - elapsed);
+            } else {
+                remaining = queueWaitSeconds(stage) + meanSeconds(Step.of(stage));
+            }
+            finish.put(stage, ready + remaining);
+            eta = Math.max(eta, ready + remaining);
+        }
+        return Math.round(eta);
+    }
+
+    private double meanSeconds(Step step) {
+        StepRate rate = rates.get(step);
+        return rate != null && rate.meanSeconds > 0 ? rate.meanSeconds : DEFAULT_SECONDS.getOrDefault(step, 5.0);
+    }
+
+    private double queueWaitSeconds(PipelineJob.Stage stage) {
+        long depth = queueDepths.get(stage).get();
+        if (depth == 0) {
+            return 0;
+        }
+        StepRate rate = rates.get(Step.of(stage));
+        if (rate != null && rate.completed > 0) {
+            double perSecond = rate.completed / (etaWindowMinutes * 60.0);
+            return depth / perSecond;
+        }
+        return depth * meanSeconds(Step.of(stage));
+    }
+
+    private void finish(PipelineTimelineEntry entry, long elapsedNanos, Throwable error) {
+        String outcome = error == null ? "OK" : "FAILED";
+        Timer.builder("pipeline.stage.duration")
+                .description("Wall-clock time of a pipeline step")
+                .tag("stage", entry.getStep().name().toLowerCase())
+                .tag("outcome", outcome.toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        entry.setDurationMs(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        entry.setEndedAt(entry.getStartedAt().plusNanos(elapsedNanos));
+        entry.setOutcome(outcome);
+        if (error != null) {
+            String message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+            entry.setError(message.length() > 255 ? message.substring(0, 255) : message);
+        }
+        try {
+            timelineRepository.save(entry);
+        } catch (RuntimeException e) {
+            logger.warn("Could not record end of {} for video {}: {}", entry.getStep(), entry.getVideoId(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * A step in progress. Call {@link #end} exactly once.
+     */
+    public final class Span {
+        private final PipelineTimelineEntry entry;
+        private final long startNanos;
+
+        private Span(PipelineTimelineEntry entry, long startNanos) {
+            this.entry = entry;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Closes the entry; pass the error if the step failed, else null.
+         */
+        public void end(Throwable error) {
+            finish(entry, System.nanoTime() - startNanos, error);
+        }
+    }
+
+    private static final class StepRate {
+        final long completed;
+        final double meanSeconds;
+
+        StepRate(long completed, double meanSeconds) {
+            this.completed = completed;
+            this.meanSeconds = meanSeconds;
+        }
+    }
+}
@@ -9,11 +9,14 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -33,6 +36,9 @@ public class FacialScoreController {
     private final FacialScoringService facialScoringService;
     private final VideoRepository videoRepository;
 
+    @Value("${pipeline.admin-token:}")
+    private String adminToken;
+
     public FacialScoreController(@Nullable FacialScoringService facialScoringService,
             VideoRepository videoRepository,
             FacialScoringRepository facialScoringRepository) {
@@ -89,6 +95,24 @@ public class FacialScoreController {
     }
 
 
+    /**
+     * Detection time on the calling thread against the detection pool for
+     * one clip, with the frames found to contain a face. Requires the admin
+     * token.
+     */
+    @GetMapping("/benchmark")
+    public ResponseEntity<?> benchmark(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam("url") String videoUrl) throws IOException {
+        if (adminToken.isBlank() || !adminToken.equals(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (facialScoringService == null) {
+            return ResponseEntity.status(503).build();
+        }
+        return ResponseEntity.ok(facialScoringService.benchmarkDetection(videoUrl));
+    }
+
      @GetMapping("/video/{videoId}")
     public ResponseEntity<?> getFacialScoreByVideoId(@PathVariable Long videoId) {
 
@@ -5,10 +5,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import org.bytedeco.opencv.global.opencv_imgcodecs;
 import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.Rect;
@@ -22,46 +27,108 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import com.example.vprofile.analysis.AnalysisCacheEntry;
+import com.example.vprofile.analysis.AnalysisCacheService;
+import com.example.vprofile.ffmpeg.GrayscaleFrameSource;
+import com.example.vprofile.videofolder.Video;
+import com.example.vprofile.videofolder.VideoRepository;
+
+import jakarta.annotation.PreDestroy;
+
 @Service
 @Lazy
 public class FacialScoringService {
     private static final Logger logger = LoggerFactory.getLogger(FacialScoringService.class);
 
-    @Value("${ffmpeg.path:/usr/bin/ffmpeg}")
-    private String ffmpegPath;
+    private static final String FACE_CASCADE = "haarcascade_frontalface_default.xml";
+    private static final String SMILE_CASCADE = "haarcascade_smile.xml";
+    private static final String EYE_CASCADE = "haarcascade_eye.xml";
+
+    @Value("${facial.sample-fps:1}")
+    private double sampleFps;
+
+    // false runs detection on the calling thread, e.g. to compare against the parallel path
+    @Value("${facial.parallel:true}")
+    private boolean parallel;
+
+    // Search a padded window around the last face instead of the whole frame
+    @Value("${facial.tracking:true}")
+    private boolean tracking;
+
+    // Window margin on each side, as a fraction of the tracked face size
+    @Value("${facial.track-padding:0.5}")
+    private double trackPadding;
+
+    // The window is downscaled by this factor before detection
+    @Value("${facial.track-scale:0.5}")
+    private double trackScale;
+
+    // Consecutive frames tracked by one worker; each chunk opens with a full detection
+    @Value("${facial.track-chunk:8}")
+    private int trackChunk;
 
     @Autowired
     private FacialScoringRepository facialScoringRepository;
     @Autowired
     private TotalScoreService totalScoreService;
-    private CascadeClassifier faceCascade;
-    private CascadeClassifier smileCascade;
-    private CascadeClassifier eyeCascade;
-    private boolean cascadesLoaded = false;
+    @Autowired
+    private VideoRepository videoRepository;
+    @Autowired
+    private AnalysisCacheService analysisCacheService;
+
+    // CascadeClassifier is not thread-safe, so every detection thread gets its own
+    // trio, loaded from cascade files resolved once per JVM
+    private volatile String[] cascadePaths;
+    private final ThreadLocal<Detectors> detectors = ThreadLocal.withInitial(() -> new Detectors(cascadePaths));
+
+    private final ForkJoinPool detectionPool;
+
+    public FacialScoringService(@Value("${facial.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.detectionPool = new ForkJoinPool(threads);
+        logger.info("FacialScoringService initialized with {} detection threads (cascades will be loaded on first use)",
+                threads);
+    }
 
-    public FacialScoringService() {
-        logger.info("FacialScoringService initialized (cascades will be loaded on first use)");
+    @PreDestroy
+    void shutdown() {
+        detectionPool.shutdownNow();
     }
 
     private void ensureCascadesLoaded() throws IOException {
-        if (cascadesLoaded) {
+        if (cascadePaths != null) {
             return;
         }
+        synchronized (this) {
+            if (cascadePaths != null) {
+                return;
+            }
 
-        logger.info("Loading Haar cascades for face, smile, and eyes...");
-        faceCascade = loadCascade("haarcascade_frontalface_default.xml");
-        smileCascade = loadCascade("haarcascade_smile.xml");
-        eyeCascade = loadCascade("haarcascade_eye.xml");
+            logger.info("Loading Haar cascades for face, smile, and eyes...");
+            String[] paths = {
+                resolveCascade(FACE_CASCADE),
+                resolveCascade(SMILE_CASCADE),
+                resolveCascade(EYE_CASCADE)
+            };
 
-        if (faceCascade == null || faceCascade.empty() || smileCascade == null || smileCascade.empty() || eyeCascade == null || eyeCascade.empty()) {
-            throw new RuntimeException("Failed to load one or more Haar cascade classifiers.");
-        }
+            // Load one trio up front so a broken cascade fails here rather than in a worker
+            Detectors probe = new Detectors(paths);
+            boolean valid = !probe.face.empty() && !probe.smile.empty() && !probe.eye.empty();
+            probe.close();
+            if (!valid) {
+                throw new RuntimeException("Failed to load one or more Haar cascade classifiers.");
+            }
 
-        logger.info("Successfully loaded all Haar cascades.");
-        cascadesLoaded = true;
+            logger.info("Successfully loaded all Haar cascades.");
+            cascadePaths = paths;
+        }
     }
 
-    private CascadeClassifier loadCascade(String cascadeName) throws IOException {
+    /**
+     * Returns a filesystem path for the cascade XML, copying it out of the
+     * classpath when necessary (CascadeClassifier only loads from files).
+     */
+    private String resolveCascade(String cascadeName) throws IOException {
         // 1. Try classpath (src/main/resources/haarcascades/)
         InputStream stream = getClass().getClassLoader().getResourceAsStream("haarcascades/" + cascadeName);
 
@@ -83,7 +150,7 @@ public class FacialScoringService {
                 File f = new File(path);
                 if (f.exists()) {
                     logger.info("Loading cascade from system path: {}", path);
-                    return new CascadeClassifier(path);
+                    return path;
                 }
             }
         }
@@ -95,13 +162,40 @@ public class FacialScoringService {
 
         File tempFile = File.createTempFile("cascade-", ".xml");
         tempFile.deleteOnExit();
-        Files.copy(stream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream in = stream) {
+            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
         logger.debug("Cascade {} written to temp file: {}", cascadeName, tempFile.getAbsolutePath());
-        return new CascadeClassifier(tempFile.getAbsolutePath());
+        return tempFile.getAbsolutePath();
     }
 
-    @SuppressWarnings("CallToPrintStackTrace")
-    public double analyzeVideoAndScore(String videoFilePath, Long videoId) {
+    /**
+     * Decodes the video in-process and scores frames sampled at
+     * {@code facial.sample-fps} (1 per second by default). Frames arrive as
+     * grayscale {@link Mat}s straight from the decoder, so nothing is written to
+     * disk.
+     *
+     * Scoring runs in two phases. Decoded frames are grouped into runs of
+     * {@code facial.track-chunk} consecutive frames and each run is handed to
+     * the detection pool; within a run the face is tracked from frame to frame
+     * (see {@link #detectRun}) so most frames only search a small window.
+     * Smile and eyes are checked for every detected face because the face that
+     * counts is only known later. The second phase walks the results in frame
+     * order to pick the tracked face and measure stillness, which depends on
+     * the previous frame.
+     */
+    public double analyzeVideoAndScore(String videoSource, Long videoId) {
+        // A byte-identical upload was scored before
+        String contentHash = videoRepository.findById(videoId).map(Video::getContentHash).orElse(null);
+        Optional<AnalysisCacheEntry> cached = analysisCacheService.findFacialScores(contentHash);
+        if (cached.isPresent()) {
+            AnalysisCacheEntry entry = cached.get();
+            logger.info("♻️ Reusing cached facial scores for video ID: {}", videoId);
+            saveScores(videoId, entry.getSmileScore(), entry.getEyeContactScore(), entry.getStraightFaceScore(),
+                    entry.getFacialTotalScore());
+            return entry.getFacialTotalScore();
+        }
+
         try {
             ensureCascadesLoaded();
         } catch (IOException e) {
@@ -109,155 +203,77 @@ public class FacialScoringService {
             throw new RuntimeException("Facial analysis not available", e);
         }
 
-        logger.info("🎥 Starting facial analysis for video ID: {} (Path: {})", videoId, videoFilePath);
+        logger.info("🎥 Starting facial analysis for video ID: {} (Source: {})", videoId, videoSource);
 
-        File tempDir;
+        // Phase 1: detection over runs of consecutive frames, fanned out as frames are decoded
+        List<FrameDetection> detections;
         try {
-            tempDir = Files.createTempDirectory("frames").toFile();
-            tempDir.deleteOnExit();
+            detections = detectFrames(videoSource, videoId, parallel);
         } catch (IOException e) {
-            logger.error("❌ Failed to create temp frame directory", e);
-            throw new RuntimeException("❌ Failed to create temp frame directory", e);
-        }
-
-        String outputPattern = new File(tempDir, "frame_%03d.png").getAbsolutePath();
-        ProcessBuilder pb = new ProcessBuilder(
-                ffmpegPath, "-i", videoFilePath,
-                "-vf", "fps=1",
-                outputPattern);
-        pb.redirectErrorStream(true);
-
-        try {
-            Process process = pb.start();
-            process.waitFor();
-            logger.info("✅ Frames extracted to: {}", tempDir.getAbsolutePath());
-        } catch (IOException | InterruptedException e) {
-            logger.error("❌ FFmpeg execution failed for video: {}", videoFilePath, e);
+            logger.error("❌ Frame decoding failed for video: {}", videoSource, e);
             return -1;
         }
 
-        File[] frameFiles = tempDir.listFiles((dir, name) -> name.endsWith(".png"));
-        if (frameFiles == null || frameFiles.length == 0) {
-            logger.warn("❌ No frames extracted by FFmpeg (Path: {}). Analysis aborted.", videoFilePath);
+        int frameCount = detections.size();
+        if (frameCount == 0) {
+            logger.warn("❌ No frames decoded (Source: {}). Analysis aborted.", videoSource);
             return -1;
         }
 
-        Arrays.sort(frameFiles, Comparator.comparing(File::getName));
-        logger.info("📂 Processing {} frames in chronological order...", frameFiles.length);
+        long trackedFrames = detections.stream().filter(d -> d.tracked).count();
+        logger.info("🔎 Face search for ID {}: {}/{} frames resolved by tracking", videoId, trackedFrames, frameCount);
 
-        int frameCount = 0;
+        // Phase 2: sequential tracking over the detections in frame order
         int smileCount = 0;
         int eyeContactCount = 0;
         int straightFaceCount = 0;
         double prevX = -1;
         double prevY = -1;
+        FrameDetection previous = null;
+        int previousBest = -1;
 
-        Size minFaceSize = new Size(100, 100);
-        Size minSmileSize = new Size(30, 30);
-        Size minEyeSize = new Size(20, 20);
-        Size emptySize = new Size();
-
-        for (File frameFile : frameFiles) {
-            Mat frame = opencv_imgcodecs.imread(frameFile.getAbsolutePath());
-            if (frame == null || frame.empty()) {
-                if (frame != null)
-                    frame.release();
-                continue;
-            }
-
-            frameCount++;
-            logger.debug("📽️ Frame #{} ({}): Processing...", frameCount, frameFile.getName());
+        for (int frameIndex = 0; frameIndex < frameCount; frameIndex++) {
+            FrameDetection detection = detections.get(frameIndex);
+            logger.debug("📽️ Frame #{}: {} faces detected", frameIndex + 1, detection.faceCount());
 
-            Mat gray = new Mat();
-            Mat faceROI = null;
-            RectVector faces = new RectVector();
-            RectVector smiles = new RectVector();
-            RectVector eyes = new RectVector();
-
-            try {
-                opencv_imgproc.cvtColor(frame, gray, opencv_imgproc.COLOR_BGR2GRAY);
-                opencv_imgproc.equalizeHist(gray, gray);
-
-                faceCascade.detectMultiScale(gray, faces, 1.1, 6, 0, minFaceSize, emptySize);
-                logger.debug("🧍 Faces detected: {}", faces.size());
-
-                if (faces.size() > 0) {
-                    Rect bestFace = faces.get(0);
-
-                    if (prevX != -1) {
-                        double minDistance = Double.MAX_VALUE;
-                        for (int i = 0; i < faces.size(); i++) {
-                            Rect current = faces.get(i);
-                            double cx = current.x() + current.width() / 2.0;
-                            double cy = current.y() + current.height() / 2.0;
-                            double dist = Math.sqrt(Math.pow(cx - prevX, 2) + Math.pow(cy - prevY, 2));
-                            if (dist < minDistance) {
-                                minDistance = dist;
-                                bestFace = current;
-                            }
-                        }
-                    } else {
-                        long maxArea = (long) bestFace.width() * bestFace.height();
-                        for (int i = 1; i < faces.size(); i++) {
-                            Rect current = faces.get(i);
-                            long area = (long) current.width() * current.height();
-                            if (area > maxArea) {
-                                maxArea = area;
-                                bestFace = current;
-                            }
-                        }
-                    }
+            if (detection.faceCount() > 0) {
+                int best = detection.select(previous, previousBest);
 
-                    faceROI = new Mat(gray, bestFace);
+                if (detection.smiling[best]) {
+                    smileCount++;
+                    logger.debug("😊 Smile detected");
+                }
 
-                    smileCascade.detectMultiScale(faceROI, smiles, 1.7, 20, 0, minSmileSize, emptySize);
-                    if (smiles.size() > 0) {
-                        smileCount++;
-                        logger.debug("😊 Smile detected");
-                    }
+                if (detection.eyeCounts[best] >= 2) {
+                    eyeContactCount++;
+                    logger.debug("👀 Eye contact detected ({} eyes)", detection.eyeCounts[best]);
+                }
 
-                    eyeCascade.detectMultiScale(faceROI, eyes, 1.1, 10, 0, minEyeSize, emptySize);
-                    if (eyes.size() >= 2) {
-                        eyeContactCount++;
-                        logger.debug("👀 Eye contact detected ({} eyes)", eyes.size());
-                    }
+                double currentX = detection.centerX(best);
+                double currentY = detection.centerY(best);
 
-                    double currentX = bestFace.x() + bestFace.width() / 2.0;
-                    double currentY = bestFace.y() + bestFace.height() / 2.0;
-
-                    if (prevX != -1) {
-                        double dx = Math.abs(currentX - prevX);
-                        double dy = Math.abs(currentY - prevY);
-                        if (dx < 15 && dy < 15) {
-                            straightFaceCount++;
-                            logger.debug("✅ Stillness: dx={}/dy={}", String.format("%.2f", dx),
-                                    String.format("%.2f", dy));
-                        } else {
-                            logger.debug("⚠️ Movement: dx={}/dy={}", String.format("%.2f", dx),
-                                    String.format("%.2f", dy));
-                        }
+                if (prevX != -1) {
+                    double dx = Math.abs(currentX - prevX);
+                    double dy = Math.abs(currentY - prevY);
+                    if (dx < 15 && dy < 15) {
+                        straightFaceCount++;
+                        logger.debug("✅ Stillness: dx={}/dy={}", String.format("%.2f", dx),
+                                String.format("%.2f", dy));
+                    } else {
+                        logger.debug("⚠️ Movement: dx={}/dy={}", String.format("%.2f", dx),
+                                String.format("%.2f", dy));
                     }
-                    prevX = currentX;
-                    prevY = currentY;
-                } else {
-                    logger.debug("❌ No face in frame - skipping stillness.");
-                    prevX = -1;
-                    prevY = -1;
                 }
-            } finally {
-                if (frame != null)
-                    frame.release();
-                if (gray != null)
-                    gray.release();
-                if (faceROI != null)
-                    faceROI.release();
-                if (faces != null)
-                    faces.close();
-                if (smiles != null)
-                    smiles.close();
-                if (eyes != null)
-                    eyes.close();
+                prevX = currentX;
+                prevY = currentY;
+                previousBest = best;
+            } else {
+                logger.debug("❌ No face in frame - skipping stillness.");
+                prevX = -1;
+                prevY = -1;
+                previousBest = -1;
             }
+            previous = detection;
         }
 
         double smileScore = 0.0;
@@ -300,6 +316,86 @@ public class FacialScoringService {
         double finalScore = smileScore + eyeScore + straightFaceScore;
         logger.info("🏁 Final Facial Score for ID {}: {}/6.0", videoId, String.format("%.2f", finalScore));
 
+        analysisCacheService.storeFacialScores(contentHash, smileScore, eyeScore, straightFaceScore, finalScore);
+        saveScores(videoId, smileScore, eyeScore, straightFaceScore, finalScore);
+
+        return finalScore;
+    }
+
+    /**
+     * Face, smile and eye detection for every sampled frame, in frame order.
+     * With {@code parallel} the frames are split into runs handed to the
+     * detection pool as they are decoded; otherwise everything runs on the
+     * calling thread as one run. Cascades must already be loaded.
+     */
+    List<FrameDetection> detectFrames(String videoSource, Long videoId, boolean parallel) throws IOException {
+        int chunkSize = parallel ? Math.max(1, trackChunk) : Integer.MAX_VALUE;
+        List<Future<List<FrameDetection>>> pending = new ArrayList<>();
+        List<FrameDetection> detections = new ArrayList<>();
+        try (GrayscaleFrameSource frames = new GrayscaleFrameSource(videoSource, sampleFps)) {
+            List<Mat> chunk = new ArrayList<>();
+            Mat gray;
+            while ((gray = frames.next()) != null) {
+                chunk.add(gray);
+                if (chunk.size() >= chunkSize) {
+                    List<Mat> run = chunk;
+                    pending.add(detectionPool.submit(() -> detectRun(run)));
+                    chunk = new ArrayList<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                if (parallel) {
+                    List<Mat> run = chunk;
+                    pending.add(detectionPool.submit(() -> detectRun(run)));
+                } else {
+                    detections.addAll(detectRun(chunk));
+                }
+            }
+            for (Future<List<FrameDetection>> future : pending) {
+                detections.addAll(future.get());
+            }
+        } catch (IOException e) {
+            pending.forEach(f -> f.cancel(true));
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(f -> f.cancel(true));
+            throw new RuntimeException("Facial analysis interrupted for video " + videoId, e);
+        } catch (ExecutionException e) {
+            pending.forEach(f -> f.cancel(true));
+            throw new RuntimeException("Face detection failed for video " + videoId, e.getCause());
+        }
+        return detections;
+    }
+
+    /**
+     * Times detection over the clip on the calling thread and on the
+     * detection pool, with the current tracking settings, and counts the
+     * frames with a face in each run. Nothing is scored or saved.
+     */
+    public Map<String, Object> benchmarkDetection(String videoSource) throws IOException {
+        ensureCascadesLoaded();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("threads", detectionPool.getParallelism());
+        result.put("tracking", tracking);
+        for (boolean parallelRun : new boolean[] { false, true }) {
+            long start = System.nanoTime();
+            List<FrameDetection> detections = detectFrames(videoSource, null, parallelRun);
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("millis", (System.nanoTime() - start) / 1_000_000);
+            run.put("frames", detections.size());
+            run.put("framesWithFaces", framesWithFaces(detections));
+            result.put(parallelRun ? "parallel" : "sequential", run);
+        }
+        return result;
+    }
+
+    static long framesWithFaces(List<FrameDetection> detections) {
+        return detections.stream().filter(d -> d.faceCount() > 0).count();
+    }
+
+    private void saveScores(Long videoId, double smileScore, double eyeScore, double straightFaceScore,
+            double finalScore) {
         FacialScoring facialScoring = new FacialScoring();
         facialScoring.setVideoId(videoId);
         facialScoring.setSmileScore(smileScore);
@@ -309,7 +405,236 @@ public class FacialScoringService {
         facialScoringRepository.save(facialScoring);
 
         totalScoreService.computeTotalScoreIfReady(videoId);
+    }
 
-        return finalScore;
+    /**
+     * Detects faces in a run of consecutive frames. The first frame gets a full
+     * search; after that, while a face is being tracked, only a padded window
+     * around it is searched at reduced resolution, with a full search whenever
+     * the window comes up empty. Every frame is released before returning.
+     */
+    private List<FrameDetection> detectRun(List<Mat> frames) {
+        List<FrameDetection> results = new ArrayList<>(frames.size());
+        int track = -1;
+        FrameDetection previous = null;
+        try {
+            for (Mat gray : frames) {
+                FrameDetection detection = detect(gray, previous, track);
+                results.add(detection);
+                track = detection.faceCount() > 0 ? detection.select(previous, track) : -1;
+                previous = detection;
+            }
+        } finally {
+            for (Mat gray : frames) {
+                gray.release();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs face detection on one frame, plus smile and eye detection inside
+     * every face found. When {@code previous} has a tracked face (index
+     * {@code track}) the search starts in a window around it. Uses the calling
+     * thread's own classifiers.
+     */
+    private FrameDetection detect(Mat gray, FrameDetection previous, int track) {
+        Detectors d = detectors.get();
+        opencv_imgproc.equalizeHist(gray, gray);
+
+        RectVector faces = null;
+        boolean tracked = false;
+        if (tracking && previous != null && track >= 0) {
+            faces = searchNear(gray, previous, track, d);
+            tracked = faces != null;
+        }
+        if (faces == null) {
+            faces = new RectVector();
+            d.face.detectMultiScale(gray, faces, 1.1, 6, 0, d.minFaceSize, d.emptySize);
+        }
+
+        try {
+            int count = (int) faces.size();
+            FrameDetection detection = new FrameDetection(count, tracked);
+            for (int i = 0; i < count; i++) {
+                Rect face = faces.get(i);
+                detection.rects[i * 4] = face.x();
+                detection.rects[i * 4 + 1] = face.y();
+                detection.rects[i * 4 + 2] = face.width();
+                detection.rects[i * 4 + 3] = face.height();
+
+                Mat faceROI = new Mat(gray, face);
+                RectVector smiles = new RectVector();
+                RectVector eyes = new RectVector();
+                try {
+                    d.smile.detectMultiScale(faceROI, smiles, 1.7, 20, 0, d.minSmileSize, d.emptySize);
+                    detection.smiling[i] = smiles.size() > 0;
+
+                    d.eye.detectMultiScale(faceROI, eyes, 1.1, 10, 0, d.minEyeSize, d.emptySize);
+                    detection.eyeCounts[i] = (int) eyes.size();
+                } finally {
+                    faceROI.release();
+                    smiles.close();
+                    eyes.close();
+                }
+            }
+            return detection;
+        } finally {
+            faces.close();
+        }
+    }
+
+    /**
+     * Looks for the tracked face inside a window padded by
+     * {@code facial.track-padding} on each side, downscaled by
+     * {@code facial.track-scale}. Returns the faces found, mapped back to
+     * full-frame coordinates, or null if the track was lost.
+     */
+    private RectVector searchNear(Mat gray, FrameDetection previous, int track, Detectors d) {
+        int fx = previous.rects[track * 4];
+        int fy = previous.rects[track * 4 + 1];
+        int fw = previous.rects[track * 4 + 2];
+        int fh = previous.rects[track * 4 + 3];
+        int padX = (int) Math.round(fw * trackPadding);
+        int padY = (int) Math.round(fh * trackPadding);
+
+        int x0 = Math.max(0, fx - padX);
+        int y0 = Math.max(0, fy - padY);
+        int x1 = Math.min(gray.cols(), fx + fw + padX);
+        int y1 = Math.min(gray.rows(), fy + fh + padY);
+        if (x1 - x0 < 100 || y1 - y0 < 100) {
+            return null;
+        }
+
+        double scale = trackScale > 0 && trackScale <= 1 ? trackScale : 1.0;
+        int minSide = (int) Math.round(100 * scale);
+
+        Rect windowRect = new Rect(x0, y0, x1 - x0, y1 - y0);
+        Mat window = new Mat(gray, windowRect);
+        Mat small = new Mat();
+        Size smallSize = new Size((int) Math.round(windowRect.width() * scale),
+                (int) Math.round(windowRect.height() * scale));
+        Size minSize = new Size(minSide, minSide);
+        RectVector found = new RectVector();
+        try {
+            opencv_imgproc.resize(window, small, smallSize, 0, 0, opencv_imgproc.INTER_AREA);
+            d.face.detectMultiScale(small, found, 1.1, 6, 0, minSize, d.emptySize);
+            if (found.size() == 0) {
+                found.close();
+                return null;
+            }
+
+            RectVector faces = new RectVector();
+            for (long i = 0; i < found.size(); i++) {
+                Rect r = found.get(i);
+                int x = x0 + (int) Math.round(r.x() / scale);
+                int y = y0 + (int) Math.round(r.y() / scale);
+                int w = Math.min((int) Math.round(r.width() / scale), gray.cols() - x);
+                int h = Math.min((int) Math.round(r.height() / scale), gray.rows() - y);
+                faces.push_back(new Rect(x, y, w, h));
+            }
+            found.close();
+            return faces;
+        } finally {
+            window.release();
+            small.release();
+            smallSize.close();
+            minSize.close();
+            windowRect.close();
+        }
+    }
+
+    /**
+     * Detection results for one frame; faces are stored as x, y, width, height
+     * quadruples in detector order.
+     */
+    static final class FrameDetection {
+        final int[] rects;
+        final boolean[] smiling;
+        final int[] eyeCounts;
+        // True if the faces came from the tracking window rather than a full search
+        final boolean tracked;
+
+        FrameDetection(int faceCount, boolean tracked) {
+            this.rects = new int[faceCount * 4];
+            this.smiling = new boolean[faceCount];
+            this.eyeCounts = new int[faceCount];
+            this.tracked = tracked;
+        }
+
+        /**
+         * Index of the face to follow: the one nearest the previously tracked
+         * face, or the largest one when nothing was tracked. Mirrors the
+         * selection used for scoring.
+         */
+        int select(FrameDetection previous, int previousTrack) {
+            int best = 0;
+            if (previous != null && previousTrack >= 0) {
+                double px = previous.centerX(previousTrack);
+                double py = previous.centerY(previousTrack);
+                double minDistance = Double.MAX_VALUE;
+                for (int i = 0; i < faceCount(); i++) {
+                    double dist = Math.sqrt(Math.pow(centerX(i) - px, 2) + Math.pow(centerY(i) - py, 2));
+                    if (dist < minDistance) {
+                        minDistance = dist;
+                        best = i;
+                    }
+                }
+            } else {
+                long maxArea = area(0);
+                for (int i = 1; i < faceCount(); i++) {
+                    if (area(i) > maxArea) {
+                        maxArea = area(i);
+                        best = i;
+                    }
+                }
+            }
+            return best;
+        }
+
+        int faceCount() {
+            return smiling.length;
+        }
+
+        double centerX(int i) {
+            return rects[i * 4] + rects[i * 4 + 2] / 2.0;
+        }
+
+        double centerY(int i) {
+            return rects[i * 4 + 1] + rects[i * 4 + 3] / 2.0;
+        }
+
+        long area(int i) {
+            return (long) rects[i * 4 + 2] * rects[i * 4 + 3];
+        }
+    }
+
+    /**
+     * One thread's set of classifiers and detection sizes.
+     */
+    private static final class Detectors {
+        final CascadeClassifier face;
+        final CascadeClassifier smile;
+        final CascadeClassifier eye;
+        final Size minFaceSize = new Size(100, 100);
+        final Size minSmileSize = new Size(30, 30);
+        final Size minEyeSize = new Size(20, 20);
+        final Size emptySize = new Size();
+
+        Detectors(String[] paths) {
+            this.face = new CascadeClassifier(paths[0]);
+            this.smile = new CascadeClassifier(paths[1]);
+            this.eye = new CascadeClassifier(paths[2]);
+        }
+
+        void close() {
+            face.close();
+            smile.close();
+            eye.close();
+            minFaceSize.close();
+            minSmileSize.close();
+            minEyeSize.close();
+            emptySize.close();
+        }
     }
 }
@@ -2,18 +2,27 @@ package com.example.vprofile.score;
 
 import java.time.LocalDateTime;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
+// One total per video: facial and speech scoring may finish on different nodes
+// at the same time, and only the first insert may win
 @Entity
+@Table(name = "total_score", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"video_id"})
+})
 public class TotalScore {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    @Column(name = "video_id")
     private Long videoId;
 
     private double ClarityScore;
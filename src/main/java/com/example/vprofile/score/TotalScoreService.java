@@ -3,8 +3,11 @@ package com.example.vprofile.score;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import com.example.vprofile.pipeline.PipelineTimelineEntry;
+import com.example.vprofile.pipeline.PipelineTimelineService;
 import com.example.vprofile.videofolder.VideoRepository;
 
 @Service
@@ -22,7 +25,13 @@ public class TotalScoreService {
     @Autowired
     private VideoRepository videoRepository;
 
-    public void computeTotalScoreIfReady(Long videoId) {
+    @Autowired
+    private PipelineTimelineService timelineService;
+
+    // Facial and speech scoring finish concurrently, possibly on different nodes,
+    // and both call this. The unique video_id on total_score settles the race
+    // between nodes; synchronized only saves a wasted insert within one.
+    public synchronized void computeTotalScoreIfReady(Long videoId) {
         // Skip if already scored
         if (totalScoreRepository.findByVideoId(videoId).isPresent()) {
             return;
@@ -34,9 +43,19 @@ public class TotalScoreService {
         if (facialOpt.isEmpty() || audioOpt.isEmpty())
             return;
 
-        FacialScoring facial = facialOpt.get();
-        SpeechScore audio = audioOpt.get();
+        PipelineTimelineService.Span span = timelineService.start(videoId, PipelineTimelineEntry.Step.TOTAL, 1);
+        Throwable failure = null;
+        try {
+            saveTotalScore(videoId, facialOpt.get(), audioOpt.get());
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            span.end(failure);
+        }
+    }
 
+    private void saveTotalScore(Long videoId, FacialScoring facial, SpeechScore audio) {
         // Clarity Score — keep raw value, floor to 1 decimal
         double clarityRaw = audio.getFillerWordScore() + audio.getSpeechRateScore() +
                 audio.getToneScore() + audio.getArticulationScore();
@@ -71,7 +90,12 @@ public class TotalScoreService {
         score.setEmotionalScore(emotional);
         score.setTotalScore(total);
 
-        totalScoreRepository.save(score);
+        try {
+            totalScoreRepository.save(score);
+        } catch (DataIntegrityViolationException e) {
+            // Another node saved the total first and marks the video READY itself
+            return;
+        }
 
         videoRepository.findById(videoId).ifPresent(video -> {
             video.setProcessingStatus("READY");
@@ -0,0 +1,262 @@
+package com.example.vprofile.transcription;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.assemblyai.api.AssemblyAI;
+import com.assemblyai.api.core.Environment;
+import com.assemblyai.api.resources.transcripts.types.TranscriptOptionalParams;
+import com.assemblyai.api.resources.transcripts.types.TranscriptStatus;
+import com.assemblyai.api.resources.transcripts.types.TranscriptWord;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Submits audio to AssemblyAI without holding a thread for the length of the
+ * remote job. Uploads and submissions run on a small pool, at most
+ * {@code transcription.max-in-flight} jobs are outstanding at once, and
+ * finished jobs are picked up by polling with exponential backoff or, when a
+ * webhook URL is configured, as soon as AssemblyAI calls back. The webhook
+ * endpoint is public, so a webhook URL is only accepted together with
+ * {@code assemblyai.webhook-secret}.
+ *
+ * One client is shared by all jobs so its HTTP connections are reused.
+ * Pointing {@code assemblyai.base-url} at a stub server is enough for load
+ * tests.
+ */
+@Component
+public class AssemblyAiTranscriber implements TranscriptionEngine {
+    private static final Logger logger = LoggerFactory.getLogger(AssemblyAiTranscriber.class);
+
+    private static final long INITIAL_POLL_MS = 3000;
+    private static final long MAX_POLL_MS = 30000;
+
+    private final AssemblyAI client;
+    private final int maxInFlight;
+    private final Semaphore slots;
+    private final ExecutorService submitter;
+    private final ScheduledExecutorService poller;
+
+    // Submitted transcripts awaiting completion, by AssemblyAI transcript id
+    private final Map<String, PendingTranscript> pending = new ConcurrentHashMap<>();
+
+    @Value("${assemblyai.webhook-url:}")
+    private String webhookUrl;
+
+    @Value("${assemblyai.webhook-secret:}")
+    private String webhookSecret;
+
+    // A transcript still not finished after this long is failed, freeing its slot
+    @Value("${transcription.assemblyai.max-wait-minutes:60}")
+    private long maxWaitMinutes;
+
+    public AssemblyAiTranscriber(@Value("${assemblyai.api.key}") String apiKey,
+            @Value("${assemblyai.base-url:}") String baseUrl,
+            @Value("${transcription.max-in-flight:8}") int maxInFlight) {
+        AssemblyAI.Builder builder = AssemblyAI.builder().apiKey(apiKey);
+        if (!baseUrl.isBlank()) {
+            builder.environment(Environment.custom(baseUrl));
+        }
+        this.client = builder.build();
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.slots = new Semaphore(this.maxInFlight);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.submitter = Executors.newFixedThreadPool(Math.min(4, this.maxInFlight), r -> {
+            Thread t = new Thread(r, "transcription-submit-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "transcription-poll");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void checkWebhookConfig() {
+        if (!webhookUrl.isBlank() && webhookSecret.isBlank()) {
+            throw new IllegalStateException(
+                    "assemblyai.webhook-secret must be set when assemblyai.webhook-url is configured");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        submitter.shutdownNow();
+    }
+
+    @Override
+    public String getName() {
+        return "assemblyai";
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Jobs that can still be started without exceeding the in-flight limit.
+     */
+    public int availableSlots() {
+        return slots.availablePermits();
+    }
+
+    /**
+     * Uploads and submits the audio file and returns immediately. The future
+     * completes with the transcript text and word timings, or exceptionally if AssemblyAI
+     * reports an error. Fails fast with {@link IllegalStateException} when
+     * the in-flight limit is reached.
+     */
+    @Override
+    public CompletableFuture<Transcript> transcribe(Path audioFile) {
+        if (!slots.tryAcquire()) {
+            throw new IllegalStateException("Transcription in-flight limit reached");
+        }
+
+        CompletableFuture<Transcript> result = new CompletableFuture<>();
+        result.whenComplete((transcript, error) -> slots.release());
+
+        submitter.execute(() -> {
+            try {
+                TranscriptOptionalParams.Builder params = TranscriptOptionalParams.builder()
+                        .speakerLabels(true);
+                if (!webhookUrl.isBlank()) {
+                    params.webhookUrl(webhookUrl)
+                            .webhookAuthHeaderName(TranscriptionWebhookController.SECRET_HEADER)
+                            .webhookAuthHeaderValue(webhookSecret);
+                }
+
+                // Fully qualified: Transcript in this package is our own result type
+                com.assemblyai.api.resources.transcripts.types.Transcript submitted =
+                        client.transcripts().submit(new File(audioFile.toString()), params.build());
+                logger.info("Submitted {} for transcription as {}", audioFile.getFileName(), submitted.getId());
+
+                PendingTranscript job = new PendingTranscript(submitted.getId(), result);
+                pending.put(job.id, job);
+                schedulePoll(job, INITIAL_POLL_MS);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Called when AssemblyAI reports a transcript as finished; moves the job's
+     * next poll forward to now instead of adding a second one, so repeated
+     * callbacks cannot multiply the polling.
+     */
+    public void onWebhook(String transcriptId) {
+        PendingTranscript job = pending.get(transcriptId);
+        if (job != null) {
+            replacePoll(job, 0);
+        }
+    }
+
+    /**
+     * False when no secret is configured: callbacks are then never expected.
+     */
+    public boolean isWebhookSecretValid(String secret) {
+        if (webhookSecret.isBlank() || secret == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(webhookSecret.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void schedulePoll(PendingTranscript job, long delayMs) {
+        job.delayMs = delayMs;
+        replacePoll(job, delayMs);
+    }
+
+    // Each job has at most one scheduled poll; scheduling cancels the previous one
+    private void replacePoll(PendingTranscript job, long delayMs) {
+        synchronized (job) {
+            if (job.nextPoll != null) {
+                job.nextPoll.cancel(false);
+            }
+            job.nextPoll = poller.schedule(() -> poll(job), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void poll(PendingTranscript job) {
+        if (job.result.isDone()) {
+            return;
+        }
+        if (System.nanoTime() - job.submittedAt > TimeUnit.MINUTES.toNanos(maxWaitMinutes)) {
+            // Stuck on AssemblyAI's side or deleted there; fail it so the pipeline backs off
+            pending.remove(job.id);
+            TimeoutException timeout = new TimeoutException(
+                    "Transcript " + job.id + " not finished after " + maxWaitMinutes + " minutes");
+            submitter.execute(() -> job.result.completeExceptionally(timeout));
+            return;
+        }
+        try {
+            com.assemblyai.api.resources.transcripts.types.Transcript transcript =
+                    client.transcripts().get(job.id);
+            TranscriptStatus status = transcript.getStatus();
+            if (status.equals(TranscriptStatus.COMPLETED)) {
+                pending.remove(job.id);
+                String text = transcript.getText().orElse("No transcription text available");
+                byte[] timings = transcript.getWords().map(AssemblyAiTranscriber::encodeWords).orElse(null);
+                submitter.execute(() -> job.result.complete(new Transcript(text, timings)));
+            } else if (status.equals(TranscriptStatus.ERROR)) {
+                pending.remove(job.id);
+                IOException error = new IOException(
+                        "Transcription error: " + transcript.getError().orElse("Unknown error"));
+                submitter.execute(() -> job.result.completeExceptionally(error));
+            } else {
+                schedulePoll(job, Math.min(MAX_POLL_MS, job.delayMs * 2));
+            }
+        } catch (Exception e) {
+            // Transient API failure; keep the job and back off
+            logger.warn("Polling transcript {} failed: {}", job.id, e.getMessage());
+            schedulePoll(job, Math.min(MAX_POLL_MS, job.delayMs * 2));
+        }
+    }
+
+    private static byte[] encodeWords(List<TranscriptWord> words) {
+        return WordTimings.encode(words.stream()
+                .map(w -> new WordTimings.Word(w.getText(), w.getStart(), w.getEnd()))
+                .toList());
+    }
+
+    private static final class PendingTranscript {
+        final String id;
+        final CompletableFuture<Transcript> result;
+        final long submittedAt = System.nanoTime();
+        volatile long delayMs;
+        // Guarded by this
+        ScheduledFuture<?> nextPoll;
+
+        PendingTranscript(String id, CompletableFuture<Transcript> result) {
+            this.id = id;
+            this.result = result;
+        }
+    }
+}
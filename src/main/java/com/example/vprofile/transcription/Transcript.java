@@ -0,0 +1,38 @@
+package com.example.vprofile.transcription;
+
+/**
+ * Result of a transcription: the text and, when the engine reports them,
+ * per-word timings in the compact {@link WordTimings} encoding.
+ */
+public class Transcript {
+
+    private final String text;
+    private final byte[] wordTimings;
+
+    public Transcript(String text, byte[] wordTimings) {
+        this.text = text;
+        this.wordTimings = wordTimings;
+    }
+
+    /**
+     * A transcript without timing information.
+     */
+    public static Transcript of(String text) {
+        return new Transcript(text, null);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Encoded word timings, or null if the engine did not provide any.
+     */
+    public byte[] getWordTimings() {
+        return wordTimings;
+    }
+
+    public boolean hasWordTimings() {
+        return wordTimings != null && wordTimings.length > 0;
+    }
+}
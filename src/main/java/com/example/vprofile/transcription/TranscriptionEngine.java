@@ -0,0 +1,28 @@
+package com.example.vprofile.transcription;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A speech-to-text backend. Implementations are Spring beans picked by name
+ * through {@link TranscriptionService}.
+ */
+public interface TranscriptionEngine {
+
+    /**
+     * Name used in {@code transcription.engine} and related properties.
+     */
+    String getName();
+
+    /**
+     * How many transcriptions this engine should be given at once.
+     */
+    int getMaxInFlight();
+
+    /**
+     * Starts transcribing the audio file. The future completes with the
+     * transcript, including word timings when the engine provides them; the
+     * file must exist until it does.
+     */
+    CompletableFuture<Transcript> transcribe(Path audioFile);
+}
@@ -0,0 +1,79 @@
+package com.example.vprofile.transcription;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Routes transcription to the configured {@link TranscriptionEngine}:
+ * {@code transcription.engine} for uploaded videos and
+ * {@code transcription.voice-search-engine} for voice-search queries. If a
+ * fallback engine is configured it is tried when the primary one fails, so an
+ * outage at one provider does not stall the pipeline.
+ */
+@Service
+public class TranscriptionService {
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptionService.class);
+
+    private final List<TranscriptionEngine> engines;
+    private final TranscriptionEngine videoEngine;
+    private final TranscriptionEngine voiceSearchEngine;
+    private final TranscriptionEngine fallbackEngine;
+
+    public TranscriptionService(List<TranscriptionEngine> engines,
+            @Value("${transcription.engine:assemblyai}") String videoEngine,
+            @Value("${transcription.voice-search-engine:whisper-http}") String voiceSearchEngine,
+            @Value("${transcription.fallback-engine:}") String fallbackEngine) {
+        this.engines = engines;
+        this.videoEngine = engine(videoEngine);
+        this.voiceSearchEngine = engine(voiceSearchEngine);
+        this.fallbackEngine = fallbackEngine.isBlank() ? null : engine(fallbackEngine);
+    }
+
+    /**
+     * Number of video transcriptions the pipeline may keep outstanding.
+     */
+    public int getVideoMaxInFlight() {
+        return videoEngine.getMaxInFlight();
+    }
+
+    public CompletableFuture<Transcript> transcribeVideoAudio(Path audioFile) {
+        return withFallback(videoEngine, audioFile);
+    }
+
+    /**
+     * Voice-search queries only need the text.
+     */
+    public CompletableFuture<String> transcribeVoiceQuery(Path audioFile) {
+        return withFallback(voiceSearchEngine, audioFile).thenApply(Transcript::getText);
+    }
+
+    private CompletableFuture<Transcript> withFallback(TranscriptionEngine primary, Path audioFile) {
+        CompletableFuture<Transcript> attempt;
+        try {
+            attempt = primary.transcribe(audioFile);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        if (fallbackEngine == null || fallbackEngine == primary) {
+            return attempt;
+        }
+        return attempt.exceptionallyCompose(error -> {
+            logger.warn("{} transcription failed ({}), retrying with {}", primary.getName(), error.getMessage(),
+                    fallbackEngine.getName());
+            return fallbackEngine.transcribe(audioFile);
+        });
+    }
+
+    private TranscriptionEngine engine(String name) {
+        return engines.stream()
+                .filter(e -> e.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown transcription engine: " + name));
+    }
+}
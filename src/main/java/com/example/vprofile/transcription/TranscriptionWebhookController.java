@@ -0,0 +1,42 @@
+package com.example.vprofile.transcription;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Receives AssemblyAI's completion callbacks. The payload only carries the
+ * transcript id and status; the transcript itself is fetched by
+ * {@link AssemblyAiTranscriber}.
+ */
+@RestController
+@RequestMapping("/api/transcription")
+public class TranscriptionWebhookController {
+
+    static final String SECRET_HEADER = "X-Webhook-Secret";
+
+    @Autowired
+    private AssemblyAiTranscriber transcriber;
+
+    @PostMapping("/webhook")
+    public ResponseEntity<?> onTranscriptReady(
+            @RequestHeader(value = SECRET_HEADER, required = false) String secret,
+            @RequestBody Map<String, Object> payload) {
+        if (!transcriber.isWebhookSecretValid(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Object transcriptId = payload.get("transcript_id");
+        if (transcriptId == null) {
+            return ResponseEntity.badRequest().body("transcript_id is required");
+        }
+        transcriber.onWebhook(transcriptId.toString());
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.vprofile.transcription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Transcribes on this machine with a whisper.cpp build, so short clips such
+ * as voice-search queries need no network round-trip and keep working when
+ * the remote services are down. Input is resampled to the 16 kHz mono WAV
+ * whisper.cpp expects.
+ */
+@Component
+public class WhisperCppEngine implements TranscriptionEngine {
+
+    private final ExecutorService executor;
+    private final int workers;
+
+    @Value("${transcription.whisper-cpp.binary:/usr/local/bin/whisper-cli}")
+    private String binary;
+
+    @Value("${transcription.whisper-cpp.model:/opt/whisper.cpp/models/ggml-base.en.bin}")
+    private String model;
+
+    @Value("${transcription.whisper-cpp.threads:4}")
+    private int threads;
+
+    public WhisperCppEngine(@Value("${transcription.whisper-cpp.workers:2}") int workers) {
+        this.workers = Math.max(1, workers);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "whisper-cpp-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String getName() {
+        return "whisper-cpp";
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return workers;
+    }
+
+    @Override
+    public CompletableFuture<Transcript> transcribe(Path audioFile) {
+        CompletableFuture<Transcript> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(Transcript.of(run(audioFile)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private String run(Path audioFile) throws IOException, InterruptedException {
+        Path wav = Files.createTempFile("whisper-", ".wav");
+        try {
+            Process ffmpeg = new ProcessBuilder("/usr/bin/ffmpeg", "-v", "error", "-y",
+                    "-i", audioFile.toString(),
+                    "-ar", "16000",
+                    "-ac", "1",
+                    "-c:a", "pcm_s16le",
+                    wav.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (ffmpeg.waitFor() != 0) {
+                throw new IOException("FFmpeg conversion failed.");
+            }
+
+            // -nt: plain text without timestamps, -np: no progress/system output
+            Process whisper = new ProcessBuilder(binary,
+                    "-m", model,
+                    "-t", String.valueOf(threads),
+                    "-nt", "-np",
+                    "-f", wav.toString())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String text;
+            try (InputStream in = whisper.getInputStream()) {
+                text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            int exitCode = whisper.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("whisper.cpp failed with exit code " + exitCode);
+            }
+            return text.replaceAll("\\s+", " ").trim();
+        } finally {
+            Files.deleteIfExists(wav);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.vprofile.transcription;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The self-hosted Whisper service that voice search has always used.
+ */
+@Component
+public class WhisperHttpEngine implements TranscriptionEngine {
+
+    private final WebClient webClient = WebClient.builder().build();
+
+    @Value("${transcription.whisper-http.url:http://app.wezume.in:8001/transcribe}")
+    private String url;
+
+    @Value("${transcription.whisper-http.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${transcription.whisper-http.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Override
+    public String getName() {
+        return "whisper-http";
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public CompletableFuture<Transcript> transcribe(Path audioFile) {
+        return webClient.post()
+                .uri(url)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData("file", new FileSystemResource(audioFile)))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .toFuture()
+                .thenApply(response -> {
+                    if (response == null) {
+                        throw new IllegalStateException("Transcription service returned no response");
+                    }
+                    // Handle both "transcription" (custom) and "text" (standard Whisper) field names
+                    if (response.has("transcription")) {
+                        return Transcript.of(response.get("transcription").asText());
+                    } else if (response.has("text")) {
+                        return Transcript.of(response.get("text").asText());
+                    }
+                    throw new IllegalStateException("Transcription service returned no text");
+                });
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.vprofile.transcription;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of word-level timestamps, small enough to keep on the
+ * video row. Each word is three unsigned varints followed by its UTF-8 bytes:
+ * the gap in milliseconds since the previous word ended, the word's duration,
+ * and the byte length of its text. Typical speech encodes in about two bytes
+ * of timing per word.
+ */
+public final class WordTimings {
+
+    private WordTimings() {
+    }
+
+    public static final class Word {
+        private final String text;
+        private final int startMs;
+        private final int endMs;
+
+        public Word(String text, int startMs, int endMs) {
+            this.text = text;
+            this.startMs = startMs;
+            this.endMs = Math.max(startMs, endMs);
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getStartMs() {
+            return startMs;
+        }
+
+        public int getEndMs() {
+            return endMs;
+        }
+    }
+
+    public static byte[] encode(List<Word> words) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(words.size() * 8);
+        int previousEnd = 0;
+        for (Word word : words) {
+            // Engines occasionally report overlapping words; clamp so gaps stay unsigned
+            int start = Math.max(word.startMs, previousEnd);
+            int end = Math.max(word.endMs, start);
+            byte[] text = word.text.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, start - previousEnd);
+            writeVarint(out, end - start);
+            writeVarint(out, text.length);
+            out.write(text, 0, text.length);
+            previousEnd = end;
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Word> decode(byte[] data) {
+        List<Word> words = new ArrayList<>();
+        if (data == null) {
+            return words;
+        }
+        int[] pos = {0};
+        int previousEnd = 0;
+        while (pos[0] < data.length) {
+            int start = previousEnd + readVarint(data, pos);
+            int end = start + readVarint(data, pos);
+            int length = readVarint(data, pos);
+            words.add(new Word(new String(data, pos[0], length, StandardCharsets.UTF_8), start, end));
+            pos[0] += length;
+            previousEnd = end;
+        }
+        return words;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.vprofile.videofolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps our own public media URLs (https://wezume.in/uploads/...) back to the
+ * files under the local uploads directory, so analysis and moderation read
+ * from disk instead of downloading what this server itself serves. Anything
+ * that is not on this node is fetched remotely as before.
+ *
+ * Sources can come from clients, so only files under the uploads directory
+ * are ever read locally and only http(s) URLs are fetched.
+ */
+@Component
+public class MediaLocator {
+    private static final Logger logger = LoggerFactory.getLogger(MediaLocator.class);
+
+    private final String publicBaseUrl;
+    private final Path localRoot;
+
+    public MediaLocator(@Value("${media.public-base-url:https://wezume.in/uploads/}") String publicBaseUrl,
+            @Value("${media.local-root:uploads/}") String localRoot) {
+        this.publicBaseUrl = publicBaseUrl.endsWith("/") ? publicBaseUrl : publicBaseUrl + "/";
+        this.localRoot = Paths.get(localRoot).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Local file for a public URL or plain path, if this node has it under
+     * the uploads directory.
+     */
+    public Optional<Path> findLocal(String source) {
+        if (source == null || source.isBlank()) {
+            return Optional.empty();
+        }
+
+        Path candidate;
+        if (source.startsWith(publicBaseUrl)) {
+            String relative = source.substring(publicBaseUrl.length());
+            int query = relative.indexOf('?');
+            if (query >= 0) {
+                relative = relative.substring(0, query);
+            }
+            relative = URLDecoder.decode(relative, StandardCharsets.UTF_8);
+            try {
+                candidate = localRoot.resolve(relative).normalize();
+            } catch (InvalidPathException e) {
+                return Optional.empty();
+            }
+        } else if (source.contains(":/")) {
+            return Optional.empty();
+        } else {
+            try {
+                candidate = Paths.get(source).toAbsolutePath().normalize();
+            } catch (InvalidPathException e) {
+                return Optional.empty();
+            }
+        }
+
+        // Never let a crafted URL or path escape the uploads tree
+        if (!candidate.startsWith(localRoot)) {
+            return Optional.empty();
+        }
+        return Files.isRegularFile(candidate) ? Optional.of(candidate) : Optional.empty();
+    }
+
+    /**
+     * Path or URL to hand to a decoder (ffmpeg accepts either): the local file
+     * when present, otherwise the source unchanged.
+     */
+    public String resolve(String source) {
+        return findLocal(source).map(Path::toString).orElse(source);
+    }
+
+    /**
+     * Makes the media available as a file. Local media is used in place;
+     * remote media is fetched into a temp file that is deleted when the
+     * returned handle is closed.
+     */
+    public LocalMedia open(String source, String suffix) throws IOException {
+        Optional<Path> local = findLocal(source);
+        if (local.isPresent()) {
+            return new LocalMedia(local.get(), false);
+        }
+
+        logger.info("Media not on this node, fetching {}", source);
+        Path temp = Files.createTempFile("media-", suffix);
+        try {
+            fetch(source, temp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new LocalMedia(temp, true);
+    }
+
+    private void fetch(String source, Path target) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(source);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid media URL: " + source, e);
+        }
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+            throw new IOException("Refusing to fetch media that is not an http(s) URL: " + source);
+        }
+        try (InputStream in = uri.toURL().openStream();
+                ReadableByteChannel channel = Channels.newChannel(in);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(channel, position, 1 << 20)) > 0) {
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * A media file on local disk; closing it removes the file only if it was
+     * fetched for this use.
+     */
+    public static final class LocalMedia implements AutoCloseable {
+        private final Path path;
+        private final boolean temporary;
+
+        LocalMedia(Path path, boolean temporary) {
+            this.path = path;
+            this.temporary = temporary;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            if (temporary) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.warn("Could not delete temp media {}", path, e);
+                }
+            }
+        }
+    }
+}
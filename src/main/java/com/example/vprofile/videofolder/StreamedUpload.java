@@ -0,0 +1,102 @@
+package com.example.vprofile.videofolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.springframework.util.FileSystemUtils;
+
+import com.example.vprofile.ffmpeg.EncoderSettings;
+
+/**
+ * An upload received as a raw request body, staged in its own directory
+ * until the video row is created. If a live transcode ran while the body
+ * arrived, its MP4 and thumbnail are staged alongside the raw file.
+ */
+public class StreamedUpload {
+
+    private final Path directory;
+    private final String fileName;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+
+    private String contentHash;
+    private Duration receiveTime;
+    private Duration transcodeTime;
+    private EncoderSettings encoder;
+
+    StreamedUpload(Path directory, String fileName) {
+        this.directory = directory;
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Path getRawFile() {
+        return directory.resolve("raw");
+    }
+
+    Path getCompressedFile() {
+        return directory.resolve("compressed.mp4");
+    }
+
+    Path getThumbnailFile() {
+        return directory.resolve("thumbnail.jpg");
+    }
+
+    Path getLogFile() {
+        return directory.resolve("ffmpeg.log");
+    }
+
+    LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    String getContentHash() {
+        return contentHash;
+    }
+
+    Duration getReceiveTime() {
+        return receiveTime;
+    }
+
+    void received(String contentHash) {
+        this.contentHash = contentHash;
+        this.receiveTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Time from the first byte until the live transcode finished, or null if
+     * there is no usable live transcode.
+     */
+    Duration getTranscodeTime() {
+        return transcodeTime;
+    }
+
+    EncoderSettings getEncoder() {
+        return encoder;
+    }
+
+    public boolean isTranscoded() {
+        return transcodeTime != null;
+    }
+
+    void transcoded(EncoderSettings encoder) {
+        this.encoder = encoder;
+        this.transcodeTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Deletes whatever is still staged. Safe to call more than once.
+     */
+    public void discard() {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            System.err.println("Could not remove upload staging directory " + directory + ": " + e.getMessage());
+        }
+    }
+}
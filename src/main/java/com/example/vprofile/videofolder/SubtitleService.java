@@ -0,0 +1,246 @@
+package com.example.vprofile.videofolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.vprofile.transcription.WordTimings;
+
+/**
+ * Writes SRT and WebVTT files for a video's transcript once per transcript
+ * version and hands out the stored file afterwards. Cue timing comes from the
+ * word timestamps saved with the transcript; transcripts without them (manual
+ * edits, text-only engines) fall back to an estimated speaking rate.
+ */
+@Service
+public class SubtitleService {
+    private static final Logger logger = LoggerFactory.getLogger(SubtitleService.class);
+
+    // Used only when no word timings are stored
+    private static final double WORDS_PER_SECOND = 3;
+
+    private static final int MAX_CUE_WORDS = 10;
+    private static final int MAX_CUE_MS = 4000;
+    // A pause this long starts a new cue
+    private static final int CUE_BREAK_GAP_MS = 700;
+
+    public enum Format {
+        SRT("srt", "application/x-subrip"),
+        VTT("vtt", "text/vtt");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    @Value("${subtitles.dir:uploads/subtitles/}")
+    private String subtitleDir;
+
+    /**
+     * Path of the subtitle file for the video's current transcript, written
+     * first if this version has not been rendered yet. Returns null when the
+     * video has no transcript.
+     */
+    public Path getSubtitles(Video video, Format format) throws IOException {
+        if (video.getTranscription() == null || video.getTranscription().isBlank()) {
+            return null;
+        }
+        Path file = artifactPath(video, format);
+        if (!Files.exists(file)) {
+            write(video, format, file);
+        }
+        return file;
+    }
+
+    /**
+     * Renders every format for the current transcript version, so the first
+     * request is already a file read.
+     */
+    public void prepare(Video video) {
+        for (Format format : Format.values()) {
+            try {
+                getSubtitles(video, format);
+            } catch (IOException e) {
+                logger.warn("Could not write {} subtitles for video {}: {}", format, video.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Identifies the rendered file; changes whenever the transcript does.
+     */
+    public String etag(Video video, Format format) {
+        return "\"" + video.getId() + "-" + video.getTranscriptVersion() + "-" + format.getExtension() + "\"";
+    }
+
+    private Path artifactPath(Video video, Format format) {
+        return Paths.get(subtitleDir).resolve(
+                video.getId() + "-v" + video.getTranscriptVersion() + "." + format.getExtension());
+    }
+
+    private void write(Video video, Format format, Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        String content = render(buildCues(video), format);
+
+        // Write under a temporary name so a concurrent reader never sees a partial file
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        removeOlderVersions(video, format, file);
+        logger.info("Wrote {} subtitles for video {} (transcript v{})", format, video.getId(),
+                video.getTranscriptVersion());
+    }
+
+    private void removeOlderVersions(Video video, Format format, Path current) {
+        String glob = video.getId() + "-v*." + format.getExtension();
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(current.getParent(), glob)) {
+            for (Path path : old) {
+                if (!path.equals(current)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Could not clean old subtitles for video {}: {}", video.getId(), e.getMessage());
+        }
+    }
+
+    private List<WordTimings.Word> words(Video video) {
+        if (video.getWordTimings() != null && video.getWordTimings().length > 0) {
+            return WordTimings.decode(video.getWordTimings());
+        }
+        // No timestamps: spread the words evenly at an average speaking rate
+        List<WordTimings.Word> words = new ArrayList<>();
+        int msPerWord = (int) (1000 / WORDS_PER_SECOND);
+        int start = 0;
+        for (String token : video.getTranscription().trim().split("\\s+")) {
+            words.add(new WordTimings.Word(token, start, start + msPerWord));
+            start += msPerWord;
+        }
+        return words;
+    }
+
+    private List<Cue> buildCues(Video video) {
+        List<Cue> cues = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int cueStart = 0;
+        int cueEnd = 0;
+        int count = 0;
+
+        for (WordTimings.Word word : words(video)) {
+            boolean breakBefore = count > 0 && (count >= MAX_CUE_WORDS
+                    || word.getEndMs() - cueStart > MAX_CUE_MS
+                    || word.getStartMs() - cueEnd > CUE_BREAK_GAP_MS);
+            if (breakBefore) {
+                cues.add(new Cue(cueStart, cueEnd, text.toString()));
+                text.setLength(0);
+                count = 0;
+            }
+            if (count == 0) {
+                cueStart = word.getStartMs();
+            } else {
+                text.append(' ');
+            }
+            text.append(word.getText());
+            cueEnd = word.getEndMs();
+            count++;
+
+            if (endsSentence(word.getText())) {
+                cues.add(new Cue(cueStart, cueEnd, text.toString()));
+                text.setLength(0);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            cues.add(new Cue(cueStart, cueEnd, text.toString()));
+        }
+        return cues;
+    }
+
+    private static boolean endsSentence(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        char last = word.charAt(word.length() - 1);
+        return last == '.' || last == '?' || last == '!';
+    }
+
+    private static String render(List<Cue> cues, Format format) {
+        StringBuilder out = new StringBuilder(cues.size() * 64);
+        if (format == Format.VTT) {
+            out.append("WEBVTT\n\n");
+        }
+        char millisSeparator = format == Format.VTT ? '.' : ',';
+        for (int i = 0; i < cues.size(); i++) {
+            Cue cue = cues.get(i);
+            out.append(i + 1).append('\n');
+            appendTime(out, cue.startMs, millisSeparator);
+            out.append(" --> ");
+            appendTime(out, cue.endMs, millisSeparator);
+            out.append('\n').append(cue.text).append("\n\n");
+        }
+        return out.toString();
+    }
+
+    private static void appendTime(StringBuilder out, int ms, char millisSeparator) {
+        int hours = ms / 3_600_000;
+        int minutes = (ms / 60_000) % 60;
+        int seconds = (ms / 1000) % 60;
+        int millis = ms % 1000;
+        pad(out, hours, 2).append(':');
+        pad(out, minutes, 2).append(':');
+        pad(out, seconds, 2).append(millisSeparator);
+        pad(out, millis, 3);
+    }
+
+    private static StringBuilder pad(StringBuilder out, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            out.append('0');
+        }
+        return out.append(digits);
+    }
+
+    private static final class Cue {
+        final int startMs;
+        final int endMs;
+        final String text;
+
+        Cue(int startMs, int endMs, String text) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.text = text;
+        }
+    }
+}
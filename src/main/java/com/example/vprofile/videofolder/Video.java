@@ -23,8 +23,20 @@ public class Video {
     private String college;
     private String roleCode;
     private String audioFilePath;
+    private String analysisAudioPath; // local 16 kHz mono WAV for speech analysis
+    @Column(length = 64)
+    private String contentHash; // SHA-256 of the uploaded file
+    @Column(length = 64)
+    private String audioHash; // SHA-256 of the analysis WAV
+    @Column(length = 16)
+    private String encoderPreset; // libx264 preset of the served file
+    private LocalDateTime reencodeClaimedAt; // set once a quality re-encode has been started
+    private Integer reencodeAttempts; // quality re-encodes started, capped by transcode.reencode.max-attempts
     @Column(columnDefinition = "LONGTEXT")
-    private String embeddingVector;
+    private String embeddingVector; // legacy JSON form, migrated into embedding
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] embedding; // little-endian float32, see EmbeddingCodec
+    private Integer embeddingVersion; // bumped whenever the embedding is regenerated
     private Long userId;
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -39,6 +51,9 @@ public class Video {
     private String url;
     @Column(name = "transcription", columnDefinition = "LONGTEXT")
     private String transcription;
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] wordTimings; // see WordTimings; null when only text is known
+    private Integer transcriptVersion; // bumped whenever the transcript changes
     private String thumbnailurl;
     @Column(name = "processing_status")
     private String processingStatus; // PROCESSING | SCORING | READY | ERROR
@@ -117,6 +132,30 @@ public class Video {
         this.transcription = transcription; // Setter for transcription
     }
 
+    public byte[] getWordTimings() {
+        return wordTimings;
+    }
+
+    public void setWordTimings(byte[] wordTimings) {
+        this.wordTimings = wordTimings;
+    }
+
+    public int getEmbeddingVersion() {
+        return embeddingVersion == null ? 0 : embeddingVersion;
+    }
+
+    public void setEmbeddingVersion(Integer embeddingVersion) {
+        this.embeddingVersion = embeddingVersion;
+    }
+
+    public int getTranscriptVersion() {
+        return transcriptVersion == null ? 0 : transcriptVersion;
+    }
+
+    public void setTranscriptVersion(Integer transcriptVersion) {
+        this.transcriptVersion = transcriptVersion;
+    }
+
     public String getAudioFilePath() {
         return audioFilePath;
     }
@@ -125,6 +164,54 @@ public class Video {
         this.audioFilePath = audioFilePath;
     }
 
+    public String getAnalysisAudioPath() {
+        return analysisAudioPath;
+    }
+
+    public void setAnalysisAudioPath(String analysisAudioPath) {
+        this.analysisAudioPath = analysisAudioPath;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getAudioHash() {
+        return audioHash;
+    }
+
+    public void setAudioHash(String audioHash) {
+        this.audioHash = audioHash;
+    }
+
+    public String getEncoderPreset() {
+        return encoderPreset;
+    }
+
+    public void setEncoderPreset(String encoderPreset) {
+        this.encoderPreset = encoderPreset;
+    }
+
+    public LocalDateTime getReencodeClaimedAt() {
+        return reencodeClaimedAt;
+    }
+
+    public void setReencodeClaimedAt(LocalDateTime reencodeClaimedAt) {
+        this.reencodeClaimedAt = reencodeClaimedAt;
+    }
+
+    public Integer getReencodeAttempts() {
+        return reencodeAttempts;
+    }
+
+    public void setReencodeAttempts(Integer reencodeAttempts) {
+        this.reencodeAttempts = reencodeAttempts;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -161,6 +248,14 @@ public class Video {
         this.embeddingVector = embeddingVector;
     }
 
+    public byte[] getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(byte[] embedding) {
+        this.embedding = embedding;
+    }
+
     public Integer getConfidence() {
         return confidence;
     }
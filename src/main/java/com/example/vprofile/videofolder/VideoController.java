@@ -1,11 +1,7 @@
 package com.example.vprofile.videofolder;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,14 +18,16 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -40,11 +38,13 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.example.vprofile.VideoEmbedding.EmbeddingService;
 import com.example.vprofile.ffmpeg.FrameExtractor;
+import com.example.vprofile.ffmpeg.TranscodeExecutor;
 import com.example.vprofile.ffmpeg.VideoProcessingService;
 import com.example.vprofile.likefolder.Like;
 import com.example.vprofile.likefolder.LikeRepository;
@@ -52,6 +52,12 @@ import com.example.vprofile.logincredentials.User;
 import com.example.vprofile.logincredentials.UserRepository;
 import com.example.vprofile.logincredentials.UserService;
 import com.example.vprofile.notification.NotificationService;
+import com.example.vprofile.pipeline.PipelineJob;
+import com.example.vprofile.pipeline.PipelineJobService;
+import com.example.vprofile.pipeline.PipelineTimelineEntry;
+import com.example.vprofile.pipeline.PipelineTimelineService;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/videos")
@@ -81,6 +87,21 @@ public class VideoController {
     @Autowired
     private EmbeddingService embeddingService;
 
+    @Autowired
+    private PipelineJobService pipelineJobService;
+
+    @Autowired
+    private TranscodeExecutor transcodeExecutor;
+
+    @Autowired
+    private MediaLocator mediaLocator;
+
+    @Autowired
+    private SubtitleService subtitleService;
+
+    @Autowired
+    private PipelineTimelineService timelineService;
+
     @PostMapping("/upload")
     public ResponseEntity<?> uploadVideo(
             @RequestParam("file") MultipartFile file,
@@ -96,22 +117,22 @@ public class VideoController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No file uploaded.");
         }
 
+        ResponseEntity<?> busy = rejectIfBusy();
+        if (busy != null) {
+            return busy;
+        }
+
         try {
-            // Enforce 30–65 second duration limit (65s includes camera flush buffer).
+            // Check the duration on a copy.
             // Use Files.copy (not transferTo) so the multipart stream is not consumed —
             // transferTo moves the underlying temp file, making the second transferTo in
             // saveVideo fail with FileNotFoundException.
             File tempForDuration = File.createTempFile("dur-check", ".mp4");
             try {
                 Files.copy(file.getInputStream(), tempForDuration.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                double duration = getVideoDurationSeconds(tempForDuration);
-                if (duration < 30) {
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                            .body("Video too short (" + Math.round(duration) + "s). Minimum is 30 seconds.");
-                }
-                if (duration > 65) {
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                            .body("Video too long (" + Math.round(duration) + "s). Maximum is 60 seconds.");
+                ResponseEntity<?> invalid = checkDuration(tempForDuration);
+                if (invalid != null) {
+                    return invalid;
                 }
             } finally {
                 tempForDuration.delete();
@@ -125,6 +146,94 @@ public class VideoController {
         }
     }
 
+    /**
+     * Upload for clients that send the video as the raw request body instead
+     * of a multipart form. The body is transcoded while it arrives, so for a
+     * fragmented MP4 or WebM the video is playable moments after the last
+     * byte; other files are queued for compression as usual.
+     */
+    @PostMapping(value = "/upload-stream", consumes = { "video/*", MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<?> uploadVideoStream(
+            HttpServletRequest request,
+            @RequestParam("userId") Long userId,
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "jobId", required = false) String jobId,
+            @RequestParam(value = "roleCode", required = false) String roleCode,
+            @RequestParam(value = "college", required = false) String college) {
+        if (userId == null || userId <= 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid user ID.");
+        }
+        String name = StringUtils.getFilename(StringUtils.cleanPath(fileName));
+        if (name == null || name.isBlank() || name.startsWith(".") || name.indexOf('.') < 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid file name.");
+        }
+        if (request.getContentLengthLong() == 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No file uploaded.");
+        }
+
+        ResponseEntity<?> busy = rejectIfBusy();
+        if (busy != null) {
+            return busy;
+        }
+
+        StreamedUpload upload = null;
+        try {
+            upload = videoService.receiveStream(request.getInputStream(), userId, name);
+            ResponseEntity<?> invalid = checkDuration(upload.getRawFile().toFile());
+            if (invalid != null) {
+                return invalid;
+            }
+            Video video = videoService.saveStreamedVideo(upload, userId, jobId, college, roleCode);
+            return ResponseEntity.status(HttpStatus.CREATED).body(video);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("File upload failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Upload interrupted.");
+        } finally {
+            if (upload != null) {
+                upload.discard();
+            }
+        }
+    }
+
+    /**
+     * Admission control — rejects before touching the file when the transcode
+     * backlog is full. Returns null if the upload may proceed.
+     */
+    private ResponseEntity<?> rejectIfBusy() {
+        long backlog = pipelineJobService.countBacklog(PipelineJob.Stage.COMPRESS);
+        if (!transcodeExecutor.admit(backlog)) {
+            long queuePosition = backlog + 1;
+            long retryAfter = transcodeExecutor.estimateWaitSeconds(backlog - transcodeExecutor.getMaxBacklog() + 1);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body(Map.of(
+                            "message", "Video processing is busy. Please try again shortly.",
+                            "queuePosition", queuePosition,
+                            "retryAfterSeconds", retryAfter));
+        }
+        return null;
+    }
+
+    /**
+     * Enforces the 30–65 second duration limit (65s includes camera flush
+     * buffer). Returns null if the video is within it.
+     */
+    private ResponseEntity<?> checkDuration(File video) {
+        double duration = getVideoDurationSeconds(video);
+        if (duration < 30) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Video too short (" + Math.round(duration) + "s). Minimum is 30 seconds.");
+        }
+        if (duration > 65) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Video too long (" + Math.round(duration) + "s). Maximum is 60 seconds.");
+        }
+        return null;
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
@@ -299,6 +408,9 @@ public class VideoController {
                 Files.deleteIfExists(original);
                 Files.deleteIfExists(thumbnail);
                 Files.deleteIfExists(audio);
+                if (video.getAnalysisAudioPath() != null) {
+                    Files.deleteIfExists(Paths.get(video.getAnalysisAudioPath()));
+                }
             } catch (Exception e) {
                 System.err.println("Failed to delete video files for userId " + userId + ": " + e.getMessage());
             }
@@ -357,50 +469,70 @@ public class VideoController {
     }
 
     @GetMapping("/{userId}/subtitles.srt")
-    @SuppressWarnings("CallToPrintStackTrace")
-    public ResponseEntity<Resource> generateSRTForUser(@PathVariable Long userId) {
-        try {
-            String transcription = videoService.getTranscriptionByUserId(userId);
+    public ResponseEntity<Resource> generateSRTForUser(@PathVariable Long userId, WebRequest request) {
+        return subtitlesForUser(userId, SubtitleService.Format.SRT, request);
+    }
 
-            if (transcription == null || transcription.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(null);
-            }
-            String srtContent = videoService.generateSRT(transcription);
-            ByteArrayResource resource = new ByteArrayResource(srtContent.getBytes());
+    @GetMapping("/{userId}/subtitles.vtt")
+    public ResponseEntity<Resource> generateVTTForUser(@PathVariable Long userId, WebRequest request) {
+        return subtitlesForUser(userId, SubtitleService.Format.VTT, request);
+    }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=subtitles.srt")
-                    .contentType(MediaType.parseMediaType("application/x-subrip"))
-                    .body(resource);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(null);
+    @GetMapping("user/{videoId}/subtitles.srt")
+    public ResponseEntity<Resource> generateSRTForVideo(@PathVariable Long videoId, WebRequest request) {
+        return subtitlesForVideo(videoId, SubtitleService.Format.SRT, request);
+    }
+
+    @GetMapping("user/{videoId}/subtitles.vtt")
+    public ResponseEntity<Resource> generateVTTForVideo(@PathVariable Long videoId, WebRequest request) {
+        return subtitlesForVideo(videoId, SubtitleService.Format.VTT, request);
+    }
+
+    private ResponseEntity<Resource> subtitlesForUser(Long userId, SubtitleService.Format format,
+            WebRequest request) {
+        Optional<Video> video = videoService.findVideoByUserId(userId);
+        if (video.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
+        return subtitles(video.get(), format, request);
     }
 
-    @GetMapping("user/{videoId}/subtitles.srt")
-    @SuppressWarnings("CallToPrintStackTrace")
-    public ResponseEntity<Resource> generateSRTForVideo(@PathVariable Long videoId) {
+    private ResponseEntity<Resource> subtitlesForVideo(Long videoId, SubtitleService.Format format,
+            WebRequest request) {
         if (videoId == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
         }
-        try {
-            String transcription = videoService.getTranscriptionByVideoId(videoId);
+        Optional<Video> video = videoRepository.findById(videoId);
+        if (video.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return subtitles(video.get(), format, request);
+    }
 
-            if (transcription == null || transcription.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(null);
+    /**
+     * Serves the stored subtitle file for the current transcript version,
+     * answering 304 when the client already has it.
+     */
+    @SuppressWarnings("CallToPrintStackTrace")
+    private ResponseEntity<Resource> subtitles(Video video, SubtitleService.Format format, WebRequest request) {
+        String etag = subtitleService.etag(video, format);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        try {
+            Path file = subtitleService.getSubtitles(video, format);
+            if (file == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
             }
-            String srtContent = videoService.generateSRT(transcription);
-            ByteArrayResource resource = new ByteArrayResource(srtContent.getBytes());
-
             return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=subtitles.srt")
-                    .contentType(MediaType.parseMediaType("application/x-subrip"))
-                    .body(resource);
-        } catch (Exception e) {
+                    .eTag(etag)
+                    .lastModified(Files.getLastModifiedTime(file).toMillis())
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=subtitles." + format.getExtension())
+                    .contentType(MediaType.parseMediaType(format.getContentType()))
+                    .body(new FileSystemResource(file));
+        } catch (IOException e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(null);
@@ -769,31 +901,36 @@ public class VideoController {
                             "thumbnailUrl", video.getThumbnailUrl()));
                 }
 
-                // 🔹 Step 4: Download video to a temp file
-                File tempVideo = downloadVideo(videoUri);
-                if (tempVideo == null) {
+                // 🔹 Step 4: Open the video from local disk, downloading only if this node lacks it
+                MediaLocator.LocalMedia media;
+                try {
+                    media = mediaLocator.open(videoUri, ".mp4");
+                } catch (IOException e) {
                     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Failed to download video.");
                 }
-
-                // 🔹 Step 5: Check for profanity
-                boolean hasProfanity = videoProcessingService.checkForVisualProfanity(tempVideo.getAbsolutePath());
-                if (hasProfanity) {
-                    return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Profanity detected in the video.");
-                }
-
-                // 🔹 Step 6: Extract frames & save thumbnail
-                String thumbnailUrl = extractAndSaveThumbnail(tempVideo, videoFileName);
-                if (thumbnailUrl == null) {
-                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                            .body("Failed to generate thumbnail.");
+                try (media) {
+                    File tempVideo = media.getPath().toFile();
+
+                    // 🔹 Step 5: Check for profanity
+                    boolean hasProfanity = videoProcessingService.checkForVisualProfanity(tempVideo.getAbsolutePath());
+                    if (hasProfanity) {
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Profanity detected in the video.");
+                    }
+
+                    // 🔹 Step 6: Extract frames & save thumbnail
+                    String thumbnailUrl = extractAndSaveThumbnail(tempVideo, videoFileName);
+                    if (thumbnailUrl == null) {
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .body("Failed to generate thumbnail.");
+                    }
+
+                    // 🔹 Step 7: Update thumbnail URL in database
+                    video.setThumbnailUrl(thumbnailUrl);
+                    videoRepository.save(video);
+                    return ResponseEntity.ok(Map.of(
+                            "message", "No profanity found.",
+                            "thumbnailUrl", thumbnailUrl));
                 }
-
-                // 🔹 Step 7: Update thumbnail URL in database
-                video.setThumbnailUrl(thumbnailUrl);
-                videoRepository.save(video);
-                return ResponseEntity.ok(Map.of(
-                        "message", "No profanity found.",
-                        "thumbnailUrl", thumbnailUrl));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Video not found in the database.");
             }
@@ -827,31 +964,6 @@ public class VideoController {
         }
     }
 
-    private File downloadVideo(String videoUri) {
-        try {
-            URL url = new URL(videoUri);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            if (connection.getResponseCode() != 200) {
-                return null;
-            }
-
-            File tempVideo = File.createTempFile("downloaded-video", ".mp4");
-            try (InputStream inputStream = connection.getInputStream();
-                    FileOutputStream fileOutputStream = new FileOutputStream(tempVideo)) {
-
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    fileOutputStream.write(buffer, 0, bytesRead);
-                }
-            }
-            return tempVideo;
-        } catch (IOException e) {
-            return null;
-        }
-    }
-
     private String extractAndSaveThumbnail(File tempVideo, String videoFileName) {
         try {
             File thumbnailDir = new File("uploads/videos/thumbnails/");
@@ -901,7 +1013,8 @@ public class VideoController {
     }
 
     @GetMapping("/processing-status/{videoId}")
-    public ResponseEntity<?> getProcessingStatus(@PathVariable Long videoId) {
+    public ResponseEntity<?> getProcessingStatus(@PathVariable Long videoId,
+            @RequestParam(defaultValue = "false") boolean timeline) {
         return videoRepository.findById(videoId).map(video -> {
             Map<String, Object> result = new HashMap<>();
             String status = video.getProcessingStatus();
@@ -912,6 +1025,29 @@ public class VideoController {
             if (video.getTranscription() != null) {
                 result.put("transcription", video.getTranscription());
             }
+            if (!"READY".equals(status) && !"ERROR".equals(status)) {
+                Long eta = timelineService.estimateSecondsRemaining(videoId);
+                if (eta != null) {
+                    result.put("etaSeconds", eta);
+                }
+            }
+            if (timeline) {
+                List<Map<String, Object>> steps = new ArrayList<>();
+                for (PipelineTimelineEntry entry : timelineService.getTimeline(videoId)) {
+                    Map<String, Object> step = new HashMap<>();
+                    step.put("step", entry.getStep());
+                    step.put("attempt", entry.getAttempt());
+                    step.put("startedAt", entry.getStartedAt());
+                    step.put("endedAt", entry.getEndedAt());
+                    step.put("durationMs", entry.getDurationMs());
+                    step.put("outcome", entry.getOutcome());
+                    if (entry.getError() != null) {
+                        step.put("error", entry.getError());
+                    }
+                    steps.add(step);
+                }
+                result.put("timeline", steps);
+            }
             return ResponseEntity.ok(result);
         }).orElse(ResponseEntity.notFound().build());
     }
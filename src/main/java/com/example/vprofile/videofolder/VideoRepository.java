@@ -1,6 +1,7 @@
 package com.example.vprofile.videofolder;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,6 +10,7 @@ import org.springframework.data.domain.Pageable;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -77,14 +79,95 @@ public interface VideoRepository extends JpaRepository<Video, Long>, JpaSpecific
 
         List<Video> findAllByUserIdAndJobId(Long userId, String jobId);
 
-        @Query(value = "SELECT v.* FROM video v WHERE NOT EXISTS (SELECT 1 FROM facial_scoring fs WHERE fs.video_id = v.id) AND v.file_path IS NOT NULL AND v.processing_status = 'SCORING' LIMIT 1", nativeQuery = true)
-        Optional<Video> findFirstMissingFacialScore();
-
-        @Query(value = "SELECT v.* FROM video v WHERE v.processing_status = 'PROCESSING' AND v.transcription IS NULL AND v.file_path IS NOT NULL LIMIT 1", nativeQuery = true)
-        Optional<Video> findFirstNeedingTranscription();
-
-        @Query(value = "SELECT v.* FROM video v WHERE NOT EXISTS (SELECT 1 FROM speech_score ss WHERE ss.video_id = v.id) AND v.transcription IS NOT NULL AND v.processing_status = 'SCORING' LIMIT 1", nativeQuery = true)
-        Optional<Video> findFirstMissingSpeechScore();
+        // Backfill queries for the pipeline_job queue: videos whose next stage has no
+        // job row yet (uploads from before the queue existed, or lost enqueues).
+        @Query(value = "SELECT v.* FROM video v WHERE v.processing_status = 'PROCESSING' AND v.file_path IS NULL "
+                        + "AND NOT EXISTS (SELECT 1 FROM pipeline_job j WHERE j.video_id = v.id AND j.stage = 'COMPRESS') "
+                        + "LIMIT :limit", nativeQuery = true)
+        List<Video> findNeedingCompressJob(@Param("limit") int limit);
+
+        @Query(value = "SELECT v.* FROM video v WHERE v.processing_status = 'PROCESSING' AND v.transcription IS NULL AND v.file_path IS NOT NULL "
+                        + "AND NOT EXISTS (SELECT 1 FROM pipeline_job j WHERE j.video_id = v.id AND j.stage = 'TRANSCRIBE') "
+                        + "LIMIT :limit", nativeQuery = true)
+        List<Video> findNeedingTranscriptionJob(@Param("limit") int limit);
+
+        @Query(value = "SELECT v.* FROM video v WHERE NOT EXISTS (SELECT 1 FROM facial_scoring fs WHERE fs.video_id = v.id) "
+                        + "AND v.file_path IS NOT NULL AND v.processing_status IN ('PROCESSING', 'SCORING') "
+                        + "AND NOT EXISTS (SELECT 1 FROM pipeline_job j WHERE j.video_id = v.id AND j.stage = 'FACIAL') "
+                        + "LIMIT :limit", nativeQuery = true)
+        List<Video> findNeedingFacialJob(@Param("limit") int limit);
+
+        @Query(value = "SELECT v.* FROM video v WHERE NOT EXISTS (SELECT 1 FROM speech_score ss WHERE ss.video_id = v.id) "
+                        + "AND v.transcription IS NOT NULL AND v.processing_status = 'SCORING' "
+                        + "AND NOT EXISTS (SELECT 1 FROM pipeline_job j WHERE j.video_id = v.id AND j.stage = 'SPEECH') "
+                        + "LIMIT :limit", nativeQuery = true)
+        List<Video> findNeedingSpeechJob(@Param("limit") int limit);
+
+        @Query(value = "SELECT v.* FROM video v WHERE v.embedding IS NULL AND v.embedding_vector IS NULL "
+                        + "AND v.transcription IS NOT NULL AND v.transcription <> '' "
+                        + "AND (v.processing_status IS NULL OR v.processing_status IN ('SCORING', 'READY')) "
+                        + "AND NOT EXISTS (SELECT 1 FROM pipeline_job j WHERE j.video_id = v.id AND j.stage = 'EMBED') "
+                        + "LIMIT :limit", nativeQuery = true)
+        List<Video> findNeedingEmbedJob(@Param("limit") int limit);
+
+        // Served files encoded with a faster preset during a backlog and not yet re-encoded.
+        // Claims older than staleBefore belong to re-encodes that failed or died with their node;
+        // videos that have used up maxAttempts are left on the faster preset.
+        @Query(value = "SELECT v.* FROM video v WHERE v.encoder_preset IS NOT NULL AND v.encoder_preset <> :preset "
+                        + "AND v.file_path IS NOT NULL "
+                        + "AND (v.reencode_claimed_at IS NULL OR v.reencode_claimed_at < :staleBefore) "
+                        + "AND COALESCE(v.reencode_attempts, 0) < :maxAttempts "
+                        + "ORDER BY v.id LIMIT :limit", nativeQuery = true)
+        List<Video> findNeedingReencode(@Param("preset") String preset,
+                        @Param("staleBefore") LocalDateTime staleBefore, @Param("maxAttempts") int maxAttempts,
+                        @Param("limit") int limit);
+
+        // Conditional update so only one node re-encodes a given video; each claim counts as an attempt
+        @Modifying
+        @Query("UPDATE Video v SET v.reencodeClaimedAt = :now, "
+                        + "v.reencodeAttempts = COALESCE(v.reencodeAttempts, 0) + 1 WHERE v.id = :id "
+                        + "AND (v.reencodeClaimedAt IS NULL OR v.reencodeClaimedAt < :staleBefore) "
+                        + "AND COALESCE(v.reencodeAttempts, 0) < :maxAttempts")
+        int claimReencode(@Param("id") Long id, @Param("now") LocalDateTime now,
+                        @Param("staleBefore") LocalDateTime staleBefore, @Param("maxAttempts") int maxAttempts);
+
+        // A claim that never ran does not count as an attempt
+        @Modifying
+        @Query("UPDATE Video v SET v.reencodeClaimedAt = NULL, "
+                        + "v.reencodeAttempts = CASE WHEN v.reencodeAttempts > 0 THEN v.reencodeAttempts - 1 ELSE 0 END "
+                        + "WHERE v.id = :id")
+        int releaseReencode(@Param("id") Long id);
+
+        // Voice search index input: id, jobId, transcript and the owner's key skills,
+        // without the other LONGTEXT/BLOB columns. Paged by id.
+        @Query("SELECT v.id, v.jobId, v.transcription, u.keySkills FROM Video v "
+                        + "LEFT JOIN User u ON u.id = v.userId "
+                        + "WHERE v.id > :afterId ORDER BY v.id")
+        List<Object[]> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+        @Query("SELECT v.id, v.jobId, v.transcription, u.keySkills FROM Video v "
+                        + "LEFT JOIN User u ON u.id = v.userId "
+                        + "WHERE v.id IN :ids")
+        List<Object[]> findSearchDocuments(@Param("ids") Collection<Long> ids);
+
+        // Semantic index input: id, jobId, college and embedding version of every embedded
+        // video, then the vectors (float32 BLOB, or legacy JSON until migrated) for a batch of ids
+        @Query("SELECT v.id, v.jobId, v.college, v.embeddingVersion FROM Video v "
+                        + "WHERE v.embedding IS NOT NULL OR v.embeddingVector IS NOT NULL")
+        List<Object[]> findEmbeddedVideos();
+
+        @Query("SELECT v.id, v.embedding, v.embeddingVector, v.embeddingVersion FROM Video v WHERE v.id IN :ids")
+        List<Object[]> findEmbeddings(@Param("ids") Collection<Long> ids);
+
+        // One-off conversion of JSON embeddings to the binary column
+        @Query("SELECT v.id, v.embeddingVector FROM Video v "
+                        + "WHERE v.embeddingVector IS NOT NULL AND v.embedding IS NULL ORDER BY v.id")
+        List<Object[]> findJsonEmbeddings(Pageable pageable);
+
+        @Modifying
+        @Query("UPDATE Video v SET v.embedding = :embedding, v.embeddingVector = NULL "
+                        + "WHERE v.id = :id AND v.embedding IS NULL")
+        int storeMigratedEmbedding(@Param("id") Long id, @Param("embedding") byte[] embedding);
 
         @Query(value = "SELECT v.* FROM video v " +
                        "LEFT JOIN (SELECT video_id, COUNT(*) AS like_count FROM likes WHERE is_like = 1 GROUP BY video_id) lc " +
@@ -3,10 +3,16 @@ package com.example.vprofile.videofolder;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
@@ -15,6 +21,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,24 +33,35 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.assemblyai.api.AssemblyAI;
-import com.assemblyai.api.resources.transcripts.types.Transcript;
-import com.assemblyai.api.resources.transcripts.types.TranscriptOptionalParams;
-import com.assemblyai.api.resources.transcripts.types.TranscriptStatus;
+import com.example.vprofile.analysis.AnalysisCacheService;
+import com.example.vprofile.ffmpeg.EncoderSettings;
 import com.example.vprofile.ffmpeg.FFmpegService;
+import com.example.vprofile.ffmpeg.MediaArtifacts;
+import com.example.vprofile.ffmpeg.TranscodeExecutor;
+import com.example.vprofile.ffmpeg.TranscodePolicy;
 import com.example.vprofile.likefolder.Like;
 import com.example.vprofile.likefolder.LikeRepository;
 import com.example.vprofile.logincredentials.User;
 import com.example.vprofile.logincredentials.UserRepository;
+import com.example.vprofile.pipeline.PipelineJob;
+import com.example.vprofile.pipeline.PipelineJobService;
+import com.example.vprofile.pipeline.PipelineTimelineEntry.Step;
+import com.example.vprofile.pipeline.PipelineTimelineService;
 import com.example.vprofile.placementLogin.PlacementRepository;
+import com.example.vprofile.transcription.Transcript;
+import com.example.vprofile.transcription.TranscriptionService;
+import com.example.vprofile.voicesearch.VoiceSearchIndex;
 
 @Service
 @Lazy
 public class VideoService {
 
     private final String uploadDir = "uploads/videos/";
+    // Intermediate analysis inputs (WAV) are kept outside the public uploads tree
+    private final String analysisDirectory = "media_analysis/";
 
     @Autowired
     private VideoRepository videoRepository;
@@ -56,25 +75,247 @@ public class VideoService {
     private PlacementRepository placementRepository;
     @Autowired
     private FFmpegService ffmpegService;
+    @Autowired
+    private PipelineJobService pipelineJobService;
+
+    @Autowired
+    private TranscriptionService transcriptionService;
+
+    @Autowired
+    private AnalysisCacheService analysisCacheService;
 
-    @Value("${assemblyai.api.key}")
-    private String assemblyAiApiKey;
+    @Autowired
+    private SubtitleService subtitleService;
+
+    @Autowired
+    private PipelineTimelineService pipelineTimelineService;
+
+    @Autowired
+    private TranscodePolicy transcodePolicy;
+
+    @Autowired
+    private TranscodeExecutor transcodeExecutor;
+
+    @Autowired
+    private VoiceSearchIndex voiceSearchIndex;
+
+    // How long to wait for a live transcode to finish once the upload is complete
+    @Value("${transcode.live.finish-timeout-seconds:60}")
+    private long liveTranscodeTimeoutSeconds;
+
+    // A re-encode claim older than this is taken to be abandoned and may be claimed again
+    @Value("${transcode.reencode.claim-timeout-minutes:120}")
+    private long reencodeClaimTimeoutMinutes;
+
+    // Re-encodes that fail this many times are given up; the faster-preset file stays served
+    @Value("${transcode.reencode.max-attempts:3}")
+    private int reencodeMaxAttempts;
 
-    @SuppressWarnings({"UseSpecificCatch", "CallToPrintStackTrace"})
     public Video saveVideo(MultipartFile file, Long userId, String jobId, String college, String roleCode) throws IOException {
         validateUser(userId);
+        LocalDateTime uploadStartedAt = LocalDateTime.now();
+        long uploadStart = System.nanoTime();
 
         String userPrefix = "user" + userId + "_";
-        Path rawFilePath = saveUploadedFile(file, userPrefix + file.getOriginalFilename());
+        MessageDigest uploadDigest = AnalysisCacheService.newDigest();
+        Path rawFilePath = saveUploadedFile(file, userPrefix + file.getOriginalFilename(), uploadDigest);
         Path rawAbs = rawFilePath.toAbsolutePath();
 
         String compressedName = "compressed_" + userPrefix + file.getOriginalFilename();
-        File compressedFile = rawAbs.resolveSibling(compressedName).toFile();
-        String videoUrl = "https://wezume.in/uploads/videos/" + compressedName;
 
-        // Remove any existing video for this user (1-video-per-user constraint)
-        // Also delete the original raw file so we don't accumulate stale sources
-        videoRepository.findAllByUserId(userId).forEach(existing -> {
+        boolean replaced = removeExistingVideos(userId);
+
+        // Keep the original upload as "original_" so we can always re-watermark cleanly in future
+        Path originalFile = rawAbs.resolveSibling("original_" + userPrefix + file.getOriginalFilename());
+        Files.move(rawAbs, originalFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        Video saved = createVideo(compressedName, userId, jobId, college, roleCode,
+                AnalysisCacheService.toHex(uploadDigest));
+        pipelineTimelineService.record(saved.getId(), Step.UPLOAD, uploadStartedAt,
+                Duration.ofNanos(System.nanoTime() - uploadStart));
+
+        // Compression runs from the durable job queue so it survives restarts —
+        // the transcription job is only enqueued once filePath is set.
+        // Re-uploads go in the slower lane so first-time candidates are served first.
+        int priority = replaced ? 1 : 0;
+        pipelineJobService.enqueue(saved.getId(), PipelineJob.Stage.COMPRESS, originalFile.toString(), priority);
+
+        return saved;
+    }
+
+    /**
+     * Receives an upload sent as the raw request body. The bytes go to a
+     * staging file and, when a transcode slot is free on this node, into a
+     * live FFmpeg at the same time, so the watermarked MP4 is ready about
+     * when the last byte arrives instead of after a full encode that starts
+     * only then. Pass the result to {@link #saveStreamedVideo}, or discard it.
+     */
+    public StreamedUpload receiveStream(InputStream body, Long userId, String fileName)
+            throws IOException, InterruptedException {
+        validateUser(userId);
+        Path directory = Paths.get(uploadDir).toAbsolutePath();
+        Files.createDirectories(directory);
+        StreamedUpload upload = new StreamedUpload(Files.createTempDirectory(directory, "ingest-"), fileName);
+        MessageDigest digest = AnalysisCacheService.newDigest();
+
+        Process transcoder = null;
+        EncoderSettings encoder = transcodePolicy.select();
+        if (encoder.getSegments() > 1) {
+            // Segments need the whole file; a single live pass uses every core instead
+            encoder = new EncoderSettings(encoder.getPreset(), 0);
+        }
+        if (transcodeExecutor.reserve()) {
+            try {
+                transcoder = ffmpegService.startStreamingTranscode(upload.getCompressedFile().toFile(),
+                        upload.getThumbnailFile().toFile(), upload.getLogFile().toFile(), encoder);
+            } catch (IOException e) {
+                System.err.println("Could not start live transcode, the upload will be queued: " + e.getMessage());
+                transcodeExecutor.release();
+            }
+        }
+
+        try {
+            OutputStream pipe = transcoder != null ? transcoder.getOutputStream() : null;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = body; OutputStream out = Files.newOutputStream(upload.getRawFile())) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                    if (pipe != null) {
+                        try {
+                            pipe.write(buffer, 0, read);
+                        } catch (IOException e) {
+                            // FFmpeg stopped reading; the file is still saved and goes through the queue
+                            System.err.println("Live transcode stopped reading the upload: " + e.getMessage());
+                            pipe = null;
+                        }
+                    }
+                }
+            }
+            upload.received(AnalysisCacheService.toHex(digest));
+
+            if (pipe != null && finishLiveTranscode(transcoder, pipe, upload)) {
+                upload.transcoded(encoder);
+            }
+            return upload;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            upload.discard();
+            throw e;
+        } finally {
+            if (transcoder != null) {
+                transcoder.destroyForcibly();
+                transcodeExecutor.release();
+            }
+        }
+    }
+
+    private boolean finishLiveTranscode(Process transcoder, OutputStream pipe, StreamedUpload upload)
+            throws InterruptedException {
+        try {
+            pipe.close();
+        } catch (IOException e) {
+            return false;
+        }
+        // Only the tail of the clip is left to encode, plus the faststart rewrite
+        if (!transcoder.waitFor(liveTranscodeTimeoutSeconds, TimeUnit.SECONDS)) {
+            System.err.println("Live transcode did not finish in " + liveTranscodeTimeoutSeconds + "s, queueing");
+            return false;
+        }
+        if (transcoder.exitValue() != 0) {
+            // Usually an MP4 with its index at the end, which cannot be decoded from a pipe
+            String log = "";
+            try {
+                log = Files.readString(upload.getLogFile());
+            } catch (IOException ignored) {}
+            System.err.println("Live transcode exited with " + transcoder.exitValue() + ", queueing. FFmpeg output:\n"
+                    + (log.length() > 2000 ? log.substring(log.length() - 2000) : log));
+            return false;
+        }
+        try {
+            return Files.size(upload.getCompressedFile()) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the video row for a streamed upload, replacing the user's
+     * previous video. If the live transcode succeeded its output is put in
+     * place and COMPRESS is recorded as done, so the video is playable right
+     * away and transcription starts next; otherwise the original is queued
+     * for compression like a multipart upload.
+     */
+    public Video saveStreamedVideo(StreamedUpload upload, Long userId, String jobId, String college,
+            String roleCode) throws IOException {
+        try {
+            String userPrefix = "user" + userId + "_";
+            String compressedName = "compressed_" + userPrefix + upload.getFileName();
+            boolean replaced = removeExistingVideos(userId);
+
+            Path originalFile = Paths.get(uploadDir).toAbsolutePath()
+                    .resolve("original_" + userPrefix + upload.getFileName());
+            Files.move(upload.getRawFile(), originalFile, StandardCopyOption.REPLACE_EXISTING);
+
+            Video saved = createVideo(compressedName, userId, jobId, college, roleCode, upload.getContentHash());
+            pipelineTimelineService.record(saved.getId(), Step.UPLOAD, upload.getStartedAt(),
+                    upload.getReceiveTime());
+
+            int priority = replaced ? 1 : 0;
+            if (upload.isTranscoded()) {
+                try {
+                    installStreamedOutputs(saved.getId(), upload, originalFile);
+                    pipelineTimelineService.record(saved.getId(), Step.COMPRESS, upload.getStartedAt(),
+                            upload.getTranscodeTime());
+                    pipelineJobService.recordCompleted(saved.getId(), PipelineJob.Stage.COMPRESS,
+                            originalFile.toString(), priority);
+                    return videoRepository.findById(saved.getId()).orElse(saved);
+                } catch (IOException e) {
+                    System.err.println("Could not use live transcode for video " + saved.getId()
+                            + ", queueing: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            pipelineJobService.enqueue(saved.getId(), PipelineJob.Stage.COMPRESS, originalFile.toString(), priority);
+            return saved;
+        } finally {
+            upload.discard();
+        }
+    }
+
+    private void installStreamedOutputs(Long videoId, StreamedUpload upload, Path originalFile)
+            throws IOException, InterruptedException {
+        Video video = videoRepository.findById(videoId).orElseThrow();
+        MediaArtifacts artifacts = artifactsFor(video.getFileName(), originalFile);
+        boolean hasAudio = probeAudio(videoId, originalFile);
+        if (hasAudio) {
+            PipelineTimelineService.Span audio = pipelineTimelineService.start(videoId, Step.AUDIO_EXTRACT, 1);
+            try {
+                ffmpegService.extractAudio(originalFile.toFile(), artifacts);
+                audio.end(null);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                audio.end(e);
+                throw e;
+            }
+        }
+        Files.move(upload.getCompressedFile(), artifacts.getCompressedVideo().toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        if (Files.exists(upload.getThumbnailFile())) {
+            Files.move(upload.getThumbnailFile(), artifacts.getThumbnail().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        recordArtifacts(videoId, artifacts, hasAudio, upload.getEncoder());
+    }
+
+    /**
+     * Removes any existing video for this user (1-video-per-user constraint),
+     * together with its original upload and analysis audio so stale sources
+     * do not accumulate. Returns true if there was one.
+     */
+    private boolean removeExistingVideos(Long userId) {
+        List<Video> existingVideos = videoRepository.findAllByUserId(userId);
+        existingVideos.forEach(existing -> {
             if (existing.getFilePath() != null) {
                 try {
                     Path oldCompressed = Paths.get(existing.getFilePath());
@@ -84,10 +325,26 @@ public class VideoService {
                     Files.deleteIfExists(Paths.get(oldOriginal));
                 } catch (Exception ignored) {}
             }
+            try {
+                if (existing.getAnalysisAudioPath() != null) {
+                    Files.deleteIfExists(Paths.get(existing.getAnalysisAudioPath()));
+                }
+            } catch (Exception ignored) {}
+            pipelineJobService.deleteJobsForVideo(existing.getId());
+            pipelineTimelineService.deleteTimeline(existing.getId());
             videoRepository.delete(existing);
+            voiceSearchIndex.removeVideo(existing.getId());
         });
 
-        // Save immediately so the app can navigate to status screen without waiting for FFmpeg
+        return !existingVideos.isEmpty();
+    }
+
+    /**
+     * Saves the row immediately so the app can navigate to the status screen
+     * without waiting for FFmpeg; file path and URL are set once compressed.
+     */
+    private Video createVideo(String compressedName, Long userId, String jobId, String college, String roleCode,
+            String contentHash) {
         Video video = new Video();
         video.setFileName(compressedName);
         video.setUserId(userId);
@@ -97,43 +354,197 @@ public class VideoService {
         video.setCollege(college);
         video.setRoleCode(roleCode);
         video.setProcessingStatus("PROCESSING");
-        Video saved = videoRepository.save(video);
-        final Long videoId = saved.getId();
+        video.setContentHash(contentHash);
+        return videoRepository.save(video);
+    }
 
-        // Compress async — scheduler waits for filePath != null before transcribing
-        CompletableFuture.runAsync(() -> {
-            try {
-                // Keep the original upload as "original_" so we can always re-watermark cleanly in future
-                Path originalFile = rawAbs.resolveSibling("original_" + userPrefix + file.getOriginalFilename());
-                Files.move(rawAbs, originalFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                ffmpegService.compressVideo(originalFile.toFile(), compressedFile);
-                Video v = videoRepository.findById(videoId).orElseThrow();
-                v.setFilePath(compressedFile.getAbsolutePath());
-                v.setUrl(videoUrl);
+    /**
+     * Transcodes and watermarks the original upload and, in the same FFmpeg pass,
+     * extracts the audio tracks and poster thumbnail. All output
+     * locations are recorded on the video row in one update. Safe to re-run after
+     * a crash: FFmpeg overwrites any partial output.
+     */
+    public void compressVideo(Long videoId, Path originalFile) throws IOException, InterruptedException {
+        Video video = videoRepository.findById(videoId)
+                .orElseThrow(() -> new IllegalArgumentException("Video not found: " + videoId));
+        if (video.getFilePath() != null) return;
+
+        MediaArtifacts artifacts = artifactsFor(video.getFileName(), originalFile);
+        boolean hasAudio = probeAudio(videoId, originalFile);
+        EncoderSettings encoder = transcodePolicy.select();
+        ffmpegService.transcodeAll(originalFile.toFile(), artifacts, hasAudio, encoder);
+        recordArtifacts(videoId, artifacts, hasAudio, encoder);
+    }
+
+    private MediaArtifacts artifactsFor(String compressedName, Path originalFile) {
+        String baseName = compressedName.substring(0, compressedName.lastIndexOf('.'));
+        Path analysisDir = Paths.get(analysisDirectory).toAbsolutePath();
+        return new MediaArtifacts(
+                originalFile.toAbsolutePath().resolveSibling(compressedName).toFile(),
+                Paths.get(uploadDir, "audio", baseName + ".mp3").toAbsolutePath().toFile(),
+                analysisDir.resolve(baseName + ".wav").toFile(),
+                Paths.get(uploadDir, "thumbnail_" + baseName + ".jpg").toAbsolutePath().toFile());
+    }
+
+    private boolean probeAudio(Long videoId, Path originalFile) throws IOException, InterruptedException {
+        PipelineTimelineService.Span probe = pipelineTimelineService.start(videoId, Step.PROBE, 1);
+        try {
+            boolean hasAudio = ffmpegService.hasAudioStream(originalFile.toFile());
+            probe.end(null);
+            return hasAudio;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            probe.end(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Records all output locations on the video row in one update.
+     */
+    private void recordArtifacts(Long videoId, MediaArtifacts artifacts, boolean hasAudio, EncoderSettings encoder)
+            throws IOException {
+        File compressedFile = artifacts.getCompressedVideo();
+        Video v = videoRepository.findById(videoId).orElseThrow();
+        v.setFilePath(compressedFile.getAbsolutePath());
+        v.setEncoderPreset(encoder.getPreset());
+        v.setUrl("https://wezume.in/uploads/videos/" + compressedFile.getName());
+        if (artifacts.getThumbnail().exists() && artifacts.getThumbnail().length() > 0) {
+            v.setThumbnailUrl("https://wezume.in/uploads/videos/" + artifacts.getThumbnail().getName());
+        }
+        if (hasAudio) {
+            v.setAudioFilePath("https://wezume.in/uploads/videos/audio/" + artifacts.getMp3Audio().getName());
+            v.setAnalysisAudioPath(artifacts.getAnalysisWav().getAbsolutePath());
+            v.setAudioHash(AnalysisCacheService.hashFile(artifacts.getAnalysisWav().toPath()));
+        }
+        videoRepository.save(v);
+    }
+
+    /**
+     * Videos waiting for a background quality re-encode, including those whose
+     * claim has expired, as long as they have attempts left.
+     */
+    public List<Video> findNeedingReencode(String preset, int limit) {
+        return videoRepository.findNeedingReencode(preset, reencodeClaimCutoff(LocalDateTime.now()),
+                reencodeMaxAttempts, limit);
+    }
+
+    /**
+     * Claims a video for a background quality re-encode and counts the
+     * attempt. Returns false if another node holds a claim that has not
+     * expired yet or the video has used up its attempts.
+     */
+    @Transactional
+    public boolean claimReencode(Long videoId) {
+        LocalDateTime now = LocalDateTime.now();
+        return videoRepository.claimReencode(videoId, now, reencodeClaimCutoff(now), reencodeMaxAttempts) > 0;
+    }
+
+    public int getReencodeMaxAttempts() {
+        return reencodeMaxAttempts;
+    }
+
+    /**
+     * Gives up a re-encode claim that never ran, so the video is picked up on
+     * the next poll rather than after the claim expires, and does not count
+     * the attempt.
+     */
+    @Transactional
+    public void releaseReencode(Long videoId) {
+        videoRepository.releaseReencode(videoId);
+    }
+
+    private LocalDateTime reencodeClaimCutoff(LocalDateTime now) {
+        return now.minusMinutes(reencodeClaimTimeoutMinutes);
+    }
+
+    /**
+     * Re-encodes a video that was transcoded with a faster preset under load,
+     * this time at the quality preset, and swaps the served file in place.
+     * Audio, thumbnail and analysis results are left as they are.
+     */
+    public void reencodeAtQuality(Long videoId) throws IOException, InterruptedException {
+        Video video = videoRepository.findById(videoId).orElse(null);
+        if (video == null || video.getFilePath() == null) {
+            return;
+        }
+        Optional<Path> original = findOriginalUpload(video);
+        if (original.isEmpty()) {
+            System.err.println("Original upload missing, cannot re-encode video " + videoId);
+            return;
+        }
+
+        Path served = Paths.get(video.getFilePath());
+        Path tmp = served.resolveSibling("reencode_" + served.getFileName());
+        EncoderSettings encoder = new EncoderSettings(transcodePolicy.getQualityPreset(), 0);
+        try {
+            ffmpegService.compressVideo(original.get().toFile(), tmp.toFile(), encoder);
+            Files.move(tmp, served, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        videoRepository.findById(videoId).ifPresent(v -> {
+            v.setEncoderPreset(encoder.getPreset());
+            videoRepository.save(v);
+        });
+    }
+
+    /**
+     * Locates the source upload for a video that has not been compressed yet.
+     * Falls back to the raw upload name for rows created before originals were
+     * renamed with the "original_" prefix.
+     */
+    public Optional<Path> findOriginalUpload(Video video) {
+        if (video.getFileName() == null || !video.getFileName().startsWith("compressed_")) {
+            return Optional.empty();
+        }
+        String rawName = video.getFileName().substring("compressed_".length());
+        Path original = Paths.get(uploadDir).resolve("original_" + rawName).toAbsolutePath();
+        if (Files.exists(original)) {
+            return Optional.of(original);
+        }
+        Path raw = Paths.get(uploadDir).resolve(rawName).toAbsolutePath();
+        return Files.exists(raw) ? Optional.of(raw) : Optional.empty();
+    }
+
+    public void markProcessingFailed(Long videoId) {
+        videoRepository.findById(videoId).ifPresent(v -> {
+            v.setProcessingStatus("ERROR");
+            videoRepository.save(v);
+        });
+    }
+
+    /**
+     * Undoes {@link #markProcessingFailed} after a quarantined job has been
+     * requeued, putting the video back in the state matching its progress.
+     */
+    public void resumeProcessing(Long videoId) {
+        videoRepository.findById(videoId).ifPresent(v -> {
+            if ("ERROR".equals(v.getProcessingStatus())) {
+                v.setProcessingStatus(v.getTranscription() == null ? "PROCESSING" : "SCORING");
                 videoRepository.save(v);
-            } catch (Exception e) {
-                System.err.println("Async FFmpeg failed for video " + videoId + ": " + e.getMessage());
-                videoRepository.findById(videoId).ifPresent(v -> {
-                    v.setProcessingStatus("ERROR");
-                    videoRepository.save(v);
-                });
             }
         });
-
-        return saved;
     }
+
     private void validateUser(Long userId) {
         if (!userRepository.existsById(userId)) {
             throw new IllegalArgumentException("User with ID " + userId + " does not exist.");
         }
     }
-    private Path saveUploadedFile(MultipartFile file, String fileName) throws IOException {
+    /**
+     * Writes the upload to disk, feeding every byte through {@code digest} on
+     * the way so the content hash costs no extra read.
+     */
+    private Path saveUploadedFile(MultipartFile file, String fileName, MessageDigest digest) throws IOException {
         File directory = new File(uploadDir);
         if (!directory.exists()) {
             directory.mkdirs();
         }
         Path filePath = Paths.get(uploadDir).resolve(fileName);
-        file.transferTo(filePath.toAbsolutePath().toFile());
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, filePath.toAbsolutePath(), StandardCopyOption.REPLACE_EXISTING);
+        }
 
         return filePath;
     }
@@ -213,58 +624,105 @@ public class VideoService {
         }
     }
 
-    private String convertAudioToText(String audioFilePath) throws IOException {
-        AssemblyAI client = AssemblyAI.builder()
-                .apiKey(assemblyAiApiKey)
-                .build();
-
-        TranscriptOptionalParams params = TranscriptOptionalParams.builder()
-                .speakerLabels(true)
-                .build();
-
-        Transcript transcript = client.transcripts().transcribe(new File(audioFilePath), params);
-
-        if (transcript.getStatus().equals(TranscriptStatus.ERROR)) {
-            throw new IOException("Transcription error: " + transcript.getError().orElse("Unknown error"));
+    /**
+     * Synchronous variant of {@link #transcribeVideoAsync(Long)}.
+     */
+    public void transcribeVideo(Long videoId) throws IOException, InterruptedException {
+        try {
+            transcribeVideoAsync(videoId).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Transcription failed for video " + videoId, cause);
         }
-        return transcript.getText().orElse("No transcription text available");
     }
 
-    public void transcribeVideo(Long videoId) throws IOException, InterruptedException {
+    /**
+     * Prepares the audio track if needed and submits it for transcription. The
+     * returned future completes once the transcript has been stored; no thread
+     * is held while the remote job runs.
+     */
+    public CompletableFuture<Void> transcribeVideoAsync(Long videoId) throws IOException, InterruptedException {
         Video video = videoRepository.findById(videoId)
                 .orElseThrow(() -> new IllegalArgumentException("Video not found: " + videoId));
-        if (video.getTranscription() != null) return;
+        if (video.getTranscription() != null) return CompletableFuture.completedFuture(null);
 
-        // Extract audio from compressed video if not done yet
+        // Videos compressed before the single-pass stage have no audio/thumbnail yet
         if (video.getAudioFilePath() == null) {
             Path compressedPath = Paths.get(video.getFilePath());
-            String extractedAudioPath = extractAudioWithFfmpeg(compressedPath);
+            PipelineTimelineService.Span extract = pipelineTimelineService.start(videoId, Step.AUDIO_EXTRACT, 1);
+            String extractedAudioPath;
+            try {
+                extractedAudioPath = extractAudioWithFfmpeg(compressedPath);
+                extract.end(null);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                extract.end(e);
+                throw e;
+            }
             String audioFileName = Paths.get(extractedAudioPath).getFileName().toString();
             video.setAudioFilePath("https://wezume.in/uploads/videos/audio/" + audioFileName);
             videoRepository.save(video);
         }
 
-        // Generate thumbnail from compressed video if not done yet
         if (video.getThumbnailUrl() == null) {
+            PipelineTimelineService.Span thumbnail = pipelineTimelineService.start(videoId, Step.THUMBNAIL, 1);
             String thumbUrl = generateThumbnailWithFfmpeg(new File(video.getFilePath()));
+            thumbnail.end(thumbUrl == null ? new IOException("Thumbnail generation failed") : null);
             if (thumbUrl != null) {
                 video.setThumbnailUrl(thumbUrl);
                 videoRepository.save(video);
             }
         }
 
+        // Same audio (or the same upload) was transcribed before
+        Optional<Transcript> cached = analysisCacheService.findTranscription(video.getAudioHash(), video.getContentHash());
+        if (cached.isPresent()) {
+            saveTranscription(videoId, cached.get());
+            return CompletableFuture.completedFuture(null);
+        }
+
         String audioFileName = video.getAudioFilePath().substring(video.getAudioFilePath().lastIndexOf('/') + 1);
-        String localAudioPath = uploadDir + "audio/" + audioFileName;
+        Path localAudioPath = Paths.get(uploadDir + "audio/" + audioFileName);
+        String audioHash = video.getAudioHash();
+        String contentHash = video.getContentHash();
+
+        return transcriptionService.transcribeVideoAudio(localAudioPath)
+                .thenAccept(transcript -> {
+                    analysisCacheService.storeTranscription(transcript, audioHash, contentHash);
+                    saveTranscription(videoId, transcript);
+                });
+    }
+
+    private void saveTranscription(Long videoId, Transcript transcript) {
+        // Reload: the row may have changed while the remote job was running
+        videoRepository.findById(videoId).ifPresent(video -> {
+            applyTranscript(video, transcript.getText(), transcript.getWordTimings());
+            video.setProcessingStatus("SCORING");
+            Video saved = videoRepository.save(video);
+            subtitleService.prepare(saved);
+            voiceSearchIndex.reindexVideo(videoId);
+        });
+    }
 
-        String transcription = convertAudioToText(localAudioPath);
-        video.setTranscription(transcription);
-        video.setProcessingStatus("SCORING");
-        videoRepository.save(video);
+    /**
+     * Replaces the transcript and starts a new transcript version, which is
+     * what subtitle files and their ETags are keyed on.
+     */
+    private void applyTranscript(Video video, String text, byte[] wordTimings) {
+        video.setTranscription(text);
+        video.setWordTimings(wordTimings);
+        video.setTranscriptVersion(video.getTranscriptVersion() + 1);
     }
 
     public Optional<Video> getLatestVideoByUserId(Long userId) {
         return videoRepository.findTopByUserIdOrderByIdDesc(userId);
     }
+    public Optional<Video> findVideoByUserId(Long userId) {
+        return videoRepository.findByUserId(userId);
+    }
+
     public String getTranscriptionByUserId(Long userId) {
         Optional<Video> videoOptional = videoRepository.findByUserId(userId);
 
@@ -303,10 +761,13 @@ public class VideoService {
         }
 
         Video video = videoOptional.get();
-        video.setTranscription(transcriptionContent);
+        // Edited text no longer lines up with the recognised words, so drop their timings
+        applyTranscript(video, transcriptionContent, null);
 
         // Save updated video
-        return videoRepository.save(video);
+        Video saved = videoRepository.save(video);
+        voiceSearchIndex.reindexVideo(saved.getId());
+        return saved;
     }
 
     public boolean deleteVideoByUserId(Long userId) {
@@ -319,6 +780,7 @@ public class VideoService {
 
             // Delete the video from the repository
             videoRepository.delete(video);
+            voiceSearchIndex.removeVideo(video.getId());
             return true; // Return true if deletion is successful
         }
 
@@ -329,50 +791,6 @@ public class VideoService {
         return videoRepository.findAll();
     }
 
-    String generateSRT(String transcription) {
-        System.out.println("Starting SRT generation for transcription: " + transcription);
-
-        // Split transcription into lines
-        String[] lines = transcription.split("\\.\\s+");
-        System.out.println("Split transcription into " + lines.length + " lines.");
-
-        StringBuilder srtBuilder = new StringBuilder();
-        int startTime = 0;
-        double wordsPerSecond = 3; // Average speaking rate in words per second
-
-        for (int i = 0; i < lines.length; i++) {
-            int wordCount = lines[i].split("\\s+").length;
-            int duration = (int) Math.ceil(wordCount / wordsPerSecond); // Calculate duration dynamically
-            int endTime = startTime + duration;
-
-            // Append SRT entry
-            srtBuilder.append(i + 1).append("\n")
-                    .append(formatTime(startTime)).append(" --> ").append(formatTime(endTime)).append("\n")
-                    .append(lines[i]).append("\n\n");
-
-            System.out.println("Added SRT entry " + (i + 1) + ":");
-            System.out.println("Start time: " + formatTime(startTime));
-            System.out.println("End time: " + formatTime(endTime));
-            System.out.println("Text: " + lines[i]);
-
-            startTime = endTime; // Move to the next start time
-        }
-
-        String srtContent = srtBuilder.toString();
-        System.out.println("Generated SRT content:\n" + srtContent);
-
-        return srtContent;
-    }
-
-    private String formatTime(int seconds) {
-        int hours = seconds / 3600;
-        int minutes = (seconds % 3600) / 60;
-        int secs = seconds % 60;
-        String formattedTime = String.format("%02d:%02d:%02d,000", hours, minutes, secs);
-        System.out.println("Formatted time for " + seconds + " seconds: " + formattedTime);
-        return formattedTime;
-    }
-
     public Page<Video> filterVideos(
             String keySkills,
             String experience,
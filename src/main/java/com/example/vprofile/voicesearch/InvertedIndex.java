@@ -0,0 +1,234 @@
+package com.example.vprofile.voicesearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Term index over the searchable text of each video. Not thread-safe; see
+ * {@link VoiceSearchIndex} for the locking.
+ *
+ * Text is lower-cased and split into maximal runs of {@code [a-z0-9+-]},
+ * the only characters a search keyword can contain, so a keyword occurs in
+ * the text exactly when it is a substring of one of its terms. Those terms
+ * are found through a 2- and 3-gram index over the vocabulary, which keeps
+ * the old "word or part of a word" matching without touching the text.
+ *
+ * Documents are numbered in insertion order, so posting lists stay sorted by
+ * appending. Re-indexing a video gives it a new document number and marks
+ * the old one dead; {@link VoiceSearchIndex} rebuilds periodically to drop
+ * the dead entries.
+ */
+class InvertedIndex {
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private final List<IntList> postings = new ArrayList<>();
+    // 2- and 3-grams of each term -> ids of the terms containing them
+    private final Map<String, IntList> gramIndex = new HashMap<>();
+
+    private long[] videoIds = new long[1024];
+    private int docCount;
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> docByVideo = new HashMap<>();
+    private final Map<String, BitSet> docsByJob = new HashMap<>();
+
+    /**
+     * Indexes (or re-indexes) a video. A blank text just removes it.
+     */
+    void put(long videoId, String jobId, String text) {
+        remove(videoId);
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        int doc = docCount++;
+        if (doc == videoIds.length) {
+            videoIds = Arrays.copyOf(videoIds, doc * 2);
+        }
+        videoIds[doc] = videoId;
+        live.set(doc);
+        docByVideo.put(videoId, doc);
+        if (jobId != null) {
+            docsByJob.computeIfAbsent(jobId, k -> new BitSet()).set(doc);
+        }
+        for (String term : tokenize(text)) {
+            postings.get(termId(term)).add(doc);
+        }
+    }
+
+    void remove(long videoId) {
+        Integer doc = docByVideo.remove(videoId);
+        if (doc != null) {
+            live.clear(doc);
+        }
+    }
+
+    int size() {
+        return docByVideo.size();
+    }
+
+    /**
+     * Documents no longer reachable, as a share of all document numbers used.
+     */
+    double deadRatio() {
+        return docCount == 0 ? 0 : 1.0 - (double) docByVideo.size() / docCount;
+    }
+
+    /**
+     * Percentage of keywords found for every video that contains at least
+     * {@code minPercentage}, keyed by video id. Rounding matches the original
+     * scan: {@code round(matched * 100 / keywords)}.
+     */
+    Map<Long, Integer> match(List<String> keywords, String jobId, int minPercentage) {
+        BitSet scope;
+        if (jobId != null) {
+            BitSet partition = docsByJob.get(jobId);
+            if (partition == null) {
+                return Map.of();
+            }
+            scope = (BitSet) partition.clone();
+            scope.and(live);
+        } else {
+            scope = live;
+        }
+
+        int[] counts = new int[docCount];
+        BitSet matched = new BitSet(docCount);
+        for (String keyword : keywords) {
+            matched.clear();
+            IntList containing = termsContaining(keyword);
+            for (int t = 0; t < containing.size; t++) {
+                IntList list = postings.get(containing.values[t]);
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.values[i];
+                    if (scope.get(doc)) {
+                        matched.set(doc);
+                    }
+                }
+            }
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                counts[doc]++;
+            }
+        }
+
+        Map<Long, Integer> result = new HashMap<>();
+        for (int doc = 0; doc < docCount; doc++) {
+            if (counts[doc] == 0) {
+                continue;
+            }
+            int percentage = (int) Math.round((counts[doc] * 100.0) / keywords.size());
+            if (percentage >= minPercentage) {
+                result.put(videoIds[doc], percentage);
+            }
+        }
+        return result;
+    }
+
+    private IntList termsContaining(String keyword) {
+        Integer exact = termIds.get(keyword);
+        if (keyword.length() < 2) {
+            // Keywords are at least two characters; a single one can only match itself
+            return exact != null ? IntList.of(exact) : new IntList();
+        }
+        // Narrow to the terms sharing the rarest n-gram, then check the whole keyword
+        IntList smallest = null;
+        for (String gram : grams(keyword)) {
+            IntList candidates = gramIndex.get(gram);
+            if (candidates == null) {
+                return new IntList();
+            }
+            if (smallest == null || candidates.size < smallest.size) {
+                smallest = candidates;
+            }
+        }
+        IntList result = new IntList();
+        for (int i = 0; i < smallest.size; i++) {
+            int term = smallest.values[i];
+            if (terms.get(term).contains(keyword)) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) {
+            return id;
+        }
+        int newId = terms.size();
+        termIds.put(term, newId);
+        terms.add(term);
+        postings.add(new IntList());
+        for (String gram : grams(term)) {
+            gramIndex.computeIfAbsent(gram, k -> new IntList()).add(newId);
+        }
+        return newId;
+    }
+
+    /**
+     * Distinct trigrams of the word, or its distinct bigrams if it is only
+     * two characters long.
+     */
+    private static Set<String> grams(String word) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (word.length() == 2) {
+            grams.add(word);
+            return grams;
+        }
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            grams.add(word.substring(i, i + 3));
+        }
+        // Two-character keywords look up bigrams, so index those as well
+        for (int i = 0; i + 2 <= word.length(); i++) {
+            grams.add(word.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        String lower = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inTerm = i < lower.length() && isTermChar(lower.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isTermChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '-';
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        static IntList of(int value) {
+            IntList list = new IntList();
+            list.add(value);
+            return list;
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
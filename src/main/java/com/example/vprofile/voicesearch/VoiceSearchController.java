@@ -6,25 +6,27 @@ import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import java.time.Duration;
-
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
 
+import com.example.vprofile.VideoEmbedding.SemanticSearchIndex;
 import com.example.vprofile.logincredentials.User;
 import com.example.vprofile.logincredentials.UserService;
+import com.example.vprofile.transcription.TranscriptionService;
 import com.example.vprofile.videofolder.Video;
-import com.fasterxml.jackson.databind.JsonNode;
 
 @RestController
 @RequestMapping("/api/search")
@@ -38,6 +40,15 @@ public class VoiceSearchController {
     @Autowired
     private JDExtractionService jdExtractionService;
 
+    @Autowired
+    private TranscriptionService transcriptionService;
+
+    @Autowired
+    private SemanticSearchIndex semanticSearchIndex;
+
+    @Value("${pipeline.admin-token:}")
+    private String adminToken;
+
     public VoiceSearchController(VoiceSearchService searchService) {
         this.searchService = searchService;
     }
@@ -46,10 +57,15 @@ public class VoiceSearchController {
     public ResponseEntity<?> voiceSearch(
             @RequestParam Long userId,
             @RequestParam String transcription,
-            @RequestParam(required = false) String jobId) {
+            @RequestParam(required = false) String jobId,
+            @RequestParam(defaultValue = "keyword") String mode,
+            @RequestParam(required = false) String college,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            // 🔍 Call search with optional jobId filter
-            List<Video> results = searchService.search(userId, transcription, jobId);
+            // 🔍 Call search with optional jobId filter; semantic mode ranks by embedding similarity
+            List<Video> results = "semantic".equalsIgnoreCase(mode)
+                    ? searchService.semanticSearch(userId, transcription, jobId, college, Math.min(limit, 500))
+                    : searchService.search(userId, transcription, jobId);
 
             List<Map<String, Object>> responseList = results.stream().map(video -> {
 
@@ -69,7 +85,7 @@ public class VoiceSearchController {
                 videoMap.put("links", user != null ? user.getLinks() : null);
                 videoMap.put("profilePic", user != null ? user.getProfilePic() : null);
 
-                // ⭐ confidence from keyword matching
+                // ⭐ confidence from keyword matching or embedding similarity
                 videoMap.put("confidence", video.getConfidence());
 
                 return videoMap;
@@ -84,6 +100,21 @@ public class VoiceSearchController {
         }
     }
 
+    /**
+     * Recall and latency of the semantic index against an exact scan, for
+     * tuning its parameters. Requires the admin token.
+     */
+    @GetMapping("/semantic/benchmark")
+    public ResponseEntity<?> semanticBenchmark(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(defaultValue = "100") int queries,
+            @RequestParam(defaultValue = "10") int k) {
+        if (adminToken.isBlank() || !adminToken.equals(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(semanticSearchIndex.benchmark(Math.max(1, Math.min(queries, 10000)), Math.max(1, k)));
+    }
+
     @PostMapping("/jd")
     public ResponseEntity<?> extractJD(@RequestParam("file") MultipartFile jdFile) {
 
@@ -114,27 +145,8 @@ public class VoiceSearchController {
             temp = Files.createTempFile("voice", ".wav");
             Files.write(temp, file.getBytes());
 
-            WebClient webClient = WebClient.builder().build();
-            JsonNode response = webClient.post()
-                    .uri("http://app.wezume.in:8001/transcribe")
-                    .contentType(MediaType.MULTIPART_FORM_DATA)
-                    .body(BodyInserters.fromMultipartData("file", new FileSystemResource(temp)))
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .timeout(Duration.ofSeconds(60))
-                    .block();
-
-            if (response == null) {
-                return ResponseEntity.internalServerError().body("Transcription service returned no response");
-            }
-
-            // Handle both "transcription" (custom) and "text" (standard Whisper) field names
-            String transcription = null;
-            if (response.has("transcription")) {
-                transcription = response.get("transcription").asText();
-            } else if (response.has("text")) {
-                transcription = response.get("text").asText();
-            }
+            String transcription = transcriptionService.transcribeVoiceQuery(temp)
+                    .get(60, TimeUnit.SECONDS);
 
             if (transcription == null || transcription.isBlank()) {
                 return ResponseEntity.internalServerError().body("Failed to transcribe audio");
@@ -142,9 +154,12 @@ public class VoiceSearchController {
 
             return ResponseEntity.ok(transcription);
 
-        } catch (IOException e) {
+        } catch (IOException | ExecutionException | TimeoutException e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("Voice Search Failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.internalServerError().body("Voice Search Failed");
         } finally {
             if (temp != null) try { Files.deleteIfExists(temp); } catch (IOException ignored) {}
         }
@@ -0,0 +1,184 @@
+package com.example.vprofile.voicesearch;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.vprofile.videofolder.VideoRepository;
+
+/**
+ * In-memory {@link InvertedIndex} over each video's transcript and its
+ * owner's key skills, so voice search answers without scanning the video
+ * table. Built in the background at startup and rebuilt periodically, which
+ * also picks up changes made by other nodes; changes made on this node are
+ * applied as they happen.
+ */
+@Service
+public class VoiceSearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(VoiceSearchIndex.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    private final VideoRepository videoRepo;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Null until the first build has finished
+    private InvertedIndex index;
+    // Videos changed while a rebuild was reading the table; re-applied after the swap
+    private Set<Long> changedDuringRebuild;
+
+    public VoiceSearchIndex(VideoRepository videoRepo) {
+        this.videoRepo = videoRepo;
+    }
+
+    /**
+     * Match percentage per video id for every video scoring at least
+     * {@code minPercentage}, or null if the index has not been built yet.
+     */
+    public Map<Long, Integer> match(List<String> keywords, String jobId, int minPercentage) {
+        lock.readLock().lock();
+        try {
+            return index != null ? index.match(keywords, jobId, minPercentage) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(initialDelay = 1000, fixedDelayString = "${voicesearch.index.rebuild-ms:600000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        InvertedIndex fresh = new InvertedIndex();
+        try {
+            long afterId = 0;
+            List<Object[]> rows;
+            do {
+                rows = videoRepo.findSearchDocumentsAfter(afterId, PageRequest.of(0, PAGE_SIZE));
+                for (Object[] row : rows) {
+                    put(fresh, row);
+                    afterId = (Long) row[0];
+                }
+            } while (rows.size() == PAGE_SIZE);
+        } catch (RuntimeException e) {
+            log.warn("Voice search index rebuild failed: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        Set<Long> changed;
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+            changed = changedDuringRebuild;
+            changedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reindexVideos(changed);
+        log.info("Voice search index built: {} videos in {} ms", fresh.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Re-reads the videos' transcripts and key skills and updates the index.
+     */
+    public void reindexVideos(Collection<Long> videoIds) {
+        if (videoIds == null || videoIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Object[]> rows = new HashMap<>();
+        try {
+            for (Object[] row : videoRepo.findSearchDocuments(videoIds)) {
+                rows.put((Long) row[0], row);
+            }
+        } catch (RuntimeException e) {
+            // The next rebuild will pick the change up
+            log.warn("Could not reindex videos {} for voice search: {}", videoIds, e.getMessage());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Long videoId : videoIds) {
+                Object[] row = rows.get(videoId);
+                if (index != null) {
+                    if (row != null) {
+                        put(index, row);
+                    } else {
+                        index.remove(videoId);
+                    }
+                }
+                if (changedDuringRebuild != null) {
+                    changedDuringRebuild.add(videoId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void reindexVideo(Long videoId) {
+        reindexVideos(List.of(videoId));
+    }
+
+    /**
+     * Updates the user's videos after their key skills changed.
+     */
+    public void reindexUser(Long userId) {
+        reindexVideos(videoRepo.findVideoIdsByUserId(userId));
+    }
+
+    public void removeVideo(Long videoId) {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                index.remove(videoId);
+            }
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(videoId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void put(InvertedIndex target, Object[] row) {
+        Long videoId = (Long) row[0];
+        String jobId = (String) row[1];
+        String transcription = (String) row[2];
+        String keySkills = (String) row[3];
+        // As before, only videos with a transcript are searchable
+        if (transcription == null || transcription.isBlank()) {
+            target.remove(videoId);
+            return;
+        }
+        target.put(videoId, jobId, searchText(transcription, keySkills));
+    }
+
+    /**
+     * The text a video is searched by: its transcript plus the owner's key skills.
+     */
+    static String searchText(String transcription, String keySkills) {
+        return keySkills != null ? transcription + "\n" + keySkills : transcription;
+    }
+}
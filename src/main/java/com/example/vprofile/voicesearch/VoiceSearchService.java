@@ -1,12 +1,18 @@
 package com.example.vprofile.voicesearch;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.example.vprofile.VideoEmbedding.EmbeddingCodec;
+import com.example.vprofile.VideoEmbedding.EmbeddingService;
+import com.example.vprofile.VideoEmbedding.SemanticSearchIndex;
 import com.example.vprofile.videofolder.Video;
 import com.example.vprofile.videofolder.VideoRepository;
 
@@ -15,22 +21,27 @@ public class VoiceSearchService {
 
     private static final Logger log = LoggerFactory.getLogger(VoiceSearchService.class);
 
+    private static final int MIN_MATCH_PERCENTAGE = 20;
+
     private final SearchQueryRepository searchRepo;
     private final VideoRepository videoRepo;
+    private final VoiceSearchIndex searchIndex;
+    private final SemanticSearchIndex semanticIndex;
+    private final EmbeddingService embeddingService;
 
-    public VoiceSearchService(SearchQueryRepository searchRepo, VideoRepository videoRepo) {
+    public VoiceSearchService(SearchQueryRepository searchRepo, VideoRepository videoRepo,
+            VoiceSearchIndex searchIndex, SemanticSearchIndex semanticIndex, EmbeddingService embeddingService) {
         this.searchRepo = searchRepo;
         this.videoRepo = videoRepo;
+        this.searchIndex = searchIndex;
+        this.semanticIndex = semanticIndex;
+        this.embeddingService = embeddingService;
     }
     public List<Video> search(Long userId, String query, String jobId) throws Exception {
-        List<Video> videos;
+        boolean byJob = jobId != null && !jobId.isBlank();
 
-        if (jobId != null && !jobId.isBlank()) {
-            videos = videoRepo.findAllByJobId(jobId);
-        } else {
-            videos = videoRepo.findAll();
-        }
         if (query == null || query.isBlank()) {
+            List<Video> videos = byJob ? videoRepo.findAllByJobId(jobId) : videoRepo.findAll();
             videos.forEach(v -> v.setConfidence(100));
             return videos;
         }
@@ -39,24 +50,39 @@ public class VoiceSearchService {
             return List.of();
         }
         searchRepo.save(new SearchQuery(userId, query, null));
+
+        Map<Long, Integer> matches = searchIndex.match(keywords, byJob ? jobId : null, MIN_MATCH_PERCENTAGE);
         List<Scored> scored = new ArrayList<>();
-        int minMatchPercentage = 20;
-        for (Video v : videos) {
-            if (v.getTranscription() == null || v.getTranscription().isBlank()) {
-                continue;
+        if (matches != null) {
+            // Only the matching rows are loaded
+            for (Video v : videoRepo.findAllById(matches.keySet())) {
+                if (!byJob || jobId.equals(v.getJobId())) {
+                    scored.add(new Scored(v, matches.get(v.getId())));
+                }
             }
-
-            int matchPercentage = calculateKeywordMatch(keywords, v.getTranscription());
-
-            if (matchPercentage >= minMatchPercentage) {
-                scored.add(new Scored(v, matchPercentage));
+        } else {
+            log.info("Voice search index not built yet, scanning videos");
+            List<Video> videos = byJob ? videoRepo.findAllByJobId(jobId) : videoRepo.findAll();
+            Map<Long, String> keySkills = findKeySkills(videos);
+            for (Video v : videos) {
+                if (v.getTranscription() == null || v.getTranscription().isBlank()) {
+                    continue;
+                }
+
+                String text = VoiceSearchIndex.searchText(v.getTranscription(), keySkills.get(v.getId()));
+                int matchPercentage = calculateKeywordMatch(keywords, text);
+
+                if (matchPercentage >= MIN_MATCH_PERCENTAGE) {
+                    scored.add(new Scored(v, matchPercentage));
+                }
             }
         }
 
         if (scored.isEmpty()) {
             return List.of();
         }
-        scored.sort((a, b) -> Double.compare(b.score, a.score));
+        scored.sort(Comparator.comparingDouble((Scored s) -> s.score).reversed()
+                .thenComparing(s -> s.video.getId()));
         return scored.stream()
                 .map(s -> {
                     s.video.setConfidence((int) s.score);
@@ -65,6 +91,39 @@ public class VoiceSearchService {
                 .toList();
     }
 
+    /**
+     * Ranks videos by similarity of their stored embedding to the query's
+     * embedding rather than by keyword overlap. Confidence is the cosine
+     * similarity as a percentage. An empty query lists videos as in
+     * {@link #search}.
+     */
+    public List<Video> semanticSearch(Long userId, String query, String jobId, String college, int limit)
+            throws Exception {
+        if (query == null || query.isBlank()) {
+            return search(userId, query, jobId);
+        }
+        searchRepo.save(new SearchQuery(userId, query, null));
+
+        float[] vector = EmbeddingCodec.toVector(embeddingService.getEmbeddingForText(query));
+        List<SemanticSearchIndex.Hit> hits = semanticIndex.search(vector, limit, jobId, college);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Video> videos = new HashMap<>();
+        for (Video v : videoRepo.findAllById(hits.stream().map(SemanticSearchIndex.Hit::getVideoId).toList())) {
+            videos.put(v.getId(), v);
+        }
+        List<Video> results = new ArrayList<>(hits.size());
+        for (SemanticSearchIndex.Hit hit : hits) {
+            Video v = videos.get(hit.getVideoId());
+            if (v != null) {
+                v.setConfidence((int) Math.round(Math.max(0, hit.getSimilarity()) * 100));
+                results.add(v);
+            }
+        }
+        return results;
+    }
+
     /**
      * Extract keywords from query
      */
@@ -88,25 +147,37 @@ public class VoiceSearchService {
     }
 
     /**
-     * Liberal keyword matching with partial support
+     * Owners' key skills for the videos that have them, by video id, so the
+     * scan searches the same text as the index.
+     */
+    private Map<Long, String> findKeySkills(List<Video> videos) {
+        Map<Long, String> keySkills = new HashMap<>();
+        List<Long> ids = videos.stream()
+                .filter(v -> v.getTranscription() != null && !v.getTranscription().isBlank())
+                .map(Video::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return keySkills;
+        }
+        for (Object[] row : videoRepo.findSearchDocuments(ids)) {
+            if (row[3] != null) {
+                keySkills.put((Long) row[0], (String) row[3]);
+            }
+        }
+        return keySkills;
+    }
+
+    /**
+     * Liberal keyword matching with partial support. Used only until the
+     * {@link VoiceSearchIndex} has been built; the index matches the same way.
      */
-    private int calculateKeywordMatch(List<String> keywords, String transcription) {
-        String text = transcription.toLowerCase();
+    private int calculateKeywordMatch(List<String> keywords, String searchText) {
+        String text = searchText.toLowerCase();
         int matched = 0;
 
         for (String keyword : keywords) {
-            boolean found = false;
-
-            // Exact word match
-            String pattern = "\\b" + java.util.regex.Pattern.quote(keyword) + "\\b";
-            if (text.matches(".*" + pattern + ".*")) {
-                found = true;
-            }
-
-            // Partial match
-            if (!found && text.contains(keyword)) {
-                found = true;
-            }
+            // A whole-word match is also a substring match, so one check covers both
+            boolean found = text.contains(keyword);
 
             if (found) {
                 matched++;
@@ -0,0 +1,182 @@
+package com.example.vprofile.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JavaProsodyExtractorTest {
+
+    private static final Path SMILE_BIN = Path.of("/usr/local/bin/SMILExtract");
+    private static final Path SMILE_CONFIG = Path.of("/root/opensmile/config/is09-13/IS09_emotion.conf");
+
+    private final JavaProsodyExtractor extractor = new JavaProsodyExtractor();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void toneGivesItsPitchEnergyAndCrossingRate() {
+        ProsodyFeatures features = extractor.extract(ProsodyKernelsTest.tone(200, 0.5, ProsodyKernels.SAMPLE_RATE));
+
+        assertEquals(200, features.getPitch(), 200 * 0.02);
+        assertEquals(0.5 / Math.sqrt(2), features.getEnergy(), 1e-3);
+        assertEquals(2 * 200.0 / ProsodyKernels.SAMPLE_RATE, features.getZcr(), 0.003);
+        assertTrue(features.getVoiceProb() > 0.9, "voiceProb " + features.getVoiceProb());
+        assertTrue(Double.isFinite(features.getTone()));
+    }
+
+    @Test
+    void clipShorterThanOneFrameGivesZeros() {
+        ProsodyFeatures features = extractor.extract(new float[ProsodyKernels.FRAME_SIZE - 1]);
+
+        assertEquals(0, features.getPitch());
+        assertEquals(0, features.getEnergy());
+        assertEquals(0, features.getVoiceProb());
+    }
+
+    @Test
+    void preparedWavMatchesSamples() throws Exception {
+        float[] pcm = ProsodyKernelsTest.tone(150, 0.4, ProsodyKernels.SAMPLE_RATE);
+        Path wav = writeWav(tempDir.resolve("tone.wav"), pcm);
+
+        ProsodyFeatures fromSamples = extractor.extract(quantize(pcm));
+        ProsodyFeatures fromWav;
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(tempDir, "java-")) {
+            fromWav = extractor.extract(wav, null, workspace);
+        }
+
+        assertEquals(fromSamples.getPitch(), fromWav.getPitch(), 1e-9);
+        assertEquals(fromSamples.getEnergy(), fromWav.getEnergy(), 1e-9);
+        assertEquals(fromSamples.getTone(), fromWav.getTone(), 1e-9);
+        assertEquals(fromSamples.getVoiceProb(), fromWav.getVoiceProb(), 1e-9);
+        assertEquals(fromSamples.getZcr(), fromWav.getZcr(), 1e-9);
+    }
+
+    /**
+     * A 1.5 s 160 Hz vowel-like tone (three harmonics) checked against the IS09
+     * functionals in its CSV. Those are the values the signal was built to
+     * have; {@link #fixtureCsvMatchesOpenSmile} holds them to SMILExtract
+     * wherever it is installed.
+     */
+    @Test
+    void matchesReferenceFixture() throws Exception {
+        Map<String, Double> expected = readReference("vowel-160hz.is09.csv");
+        Path wav = copyResource("vowel-160hz.wav");
+
+        ProsodyFeatures actual;
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(tempDir, "fixture-")) {
+            actual = extractor.extract(wav, null, workspace);
+        }
+
+        assertEquals(expected.get("F0_sma_amean"), actual.getPitch(), expected.get("F0_sma_amean") * 0.02);
+        assertEquals(expected.get("pcm_RMSenergy_sma_amean"), actual.getEnergy(),
+                expected.get("pcm_RMSenergy_sma_amean") * 0.02);
+        assertEquals(expected.get("pcm_zcr_sma_amean"), actual.getZcr(), expected.get("pcm_zcr_sma_amean") * 0.05);
+        assertTrue(actual.getVoiceProb() > 0.9, "voiceProb " + actual.getVoiceProb());
+    }
+
+    /**
+     * Runs only where openSMILE is installed, as on the analysis hosts.
+     */
+    @Test
+    void fixtureCsvMatchesOpenSmile() throws Exception {
+        assumeTrue(Files.isExecutable(SMILE_BIN) && Files.isReadable(SMILE_CONFIG), "openSMILE not installed");
+        Map<String, Double> expected = readReference("vowel-160hz.is09.csv");
+        Path wav = copyResource("vowel-160hz.wav");
+
+        ProsodyFeatures smile;
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(tempDir, "fixture-smile-")) {
+            smile = new OpenSmileProsodyExtractor().extract(wav, null, workspace);
+        }
+
+        assertEquals(expected.get("F0_sma_amean"), smile.getPitch(), expected.get("F0_sma_amean") * 0.05);
+        assertEquals(expected.get("pcm_RMSenergy_sma_amean"), smile.getEnergy(),
+                expected.get("pcm_RMSenergy_sma_amean") * 0.10);
+        assertEquals(expected.get("pcm_zcr_sma_amean"), smile.getZcr(), expected.get("pcm_zcr_sma_amean") * 0.10);
+    }
+
+    /**
+     * Runs only where openSMILE is installed, as on the analysis hosts.
+     */
+    @Test
+    void matchesOpenSmileOnTone() throws Exception {
+        assumeTrue(Files.isExecutable(SMILE_BIN) && Files.isReadable(SMILE_CONFIG), "openSMILE not installed");
+        Path wav = writeWav(tempDir.resolve("tone.wav"), ProsodyKernelsTest.tone(200, 0.5, 3 * ProsodyKernels.SAMPLE_RATE));
+
+        ProsodyFeatures expected;
+        ProsodyFeatures actual;
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(tempDir, "parity-")) {
+            expected = new OpenSmileProsodyExtractor().extract(wav, null, workspace);
+            actual = extractor.extract(wav, null, workspace);
+        }
+
+        assertEquals(expected.getPitch(), actual.getPitch(), expected.getPitch() * 0.05);
+        assertEquals(expected.getEnergy(), actual.getEnergy(), expected.getEnergy() * 0.10);
+        assertEquals(expected.getZcr(), actual.getZcr(), expected.getZcr() * 0.10);
+        assertEquals(expected.getVoiceProb(), actual.getVoiceProb(), 0.15);
+    }
+
+    private Path copyResource(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/prosody/" + name)) {
+            Path path = tempDir.resolve(name);
+            Files.copy(in, path);
+            return path;
+        }
+    }
+
+    /**
+     * The single data row of a reference CSV, keyed by column name.
+     */
+    private static Map<String, Double> readReference(String name) throws IOException {
+        try (InputStream in = JavaProsodyExtractorTest.class.getResourceAsStream("/prosody/" + name)) {
+            List<String> lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            String[] header = lines.get(0).split(",");
+            String[] values = lines.get(1).split(",");
+            Map<String, Double> row = new HashMap<>();
+            for (int i = 1; i < header.length; i++) {
+                row.put(header[i], Double.parseDouble(values[i]));
+            }
+            return row;
+        }
+    }
+
+    private static float[] quantize(float[] pcm) {
+        float[] result = new float[pcm.length];
+        for (int i = 0; i < pcm.length; i++) {
+            result[i] = toShort(pcm[i]) / 32768f;
+        }
+        return result;
+    }
+
+    private static short toShort(float sample) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(sample * 32768f)));
+    }
+
+    private static Path writeWav(Path path, float[] pcm) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(44 + pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + pcm.length * 2).putInt(0x45564157); // RIFF....WAVE
+        buffer.putInt(0x20746d66).putInt(16) // "fmt "
+                .putShort((short) 1).putShort((short) 1)
+                .putInt(ProsodyKernels.SAMPLE_RATE).putInt(ProsodyKernels.SAMPLE_RATE * 2)
+                .putShort((short) 2).putShort((short) 16);
+        buffer.putInt(0x61746164).putInt(pcm.length * 2); // "data"
+        for (float sample : pcm) {
+            buffer.putShort(toShort(sample));
+        }
+        return Files.write(path, buffer.array());
+    }
+}
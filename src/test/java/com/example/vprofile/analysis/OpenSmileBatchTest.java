@@ -0,0 +1,137 @@
+package com.example.vprofile.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OpenSmileBatchTest {
+
+    private static final Path SMILE_BIN = Path.of("/usr/local/bin/SMILExtract");
+    private static final Path SMILE_CONFIG = Path.of("/root/opensmile/config/is09-13/IS09_emotion.conf");
+
+    private final JavaProsodyExtractor kernels = new JavaProsodyExtractor();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void clipsStartOnFrameBoundariesWithSilenceBetween() {
+        long[] lengths = { 31_990, 12_346, 3_200 };
+        OpenSmileProsodyExtractor.BatchLayout layout = new OpenSmileProsodyExtractor.BatchLayout(lengths);
+
+        for (int i = 0; i < lengths.length; i++) {
+            assertEquals(0, layout.starts[i] % OpenSmileProsodyExtractor.STEP_BYTES);
+            assertTrue(layout.end(i) - (layout.starts[i] + lengths[i]) >= OpenSmileProsodyExtractor.GAP_BYTES);
+        }
+        assertEquals(layout.totalBytes, layout.end(lengths.length - 1));
+    }
+
+    @Test
+    void frameListCoversOnlyEachClip() {
+        OpenSmileProsodyExtractor.BatchLayout layout = new OpenSmileProsodyExtractor.BatchLayout(
+                new long[] { 32_000, 16_000 });
+
+        assertEquals("0.0000s-1.0000s,1.1000s-1.6000s", layout.frameList());
+    }
+
+    /**
+     * Runs the in-process kernels over a batch laid out as SMILExtract sees it
+     * and takes each clip's functionals from its own frames, as
+     * {@code -frameList} does. The result has to match scoring each clip alone.
+     */
+    @Test
+    void batchedFeaturesMatchPerFile() {
+        List<float[]> clips = List.of(
+                ProsodyKernelsTest.tone(220, 0.6, 20_800),
+                ProsodyKernelsTest.tone(110, 0.1, 14_400),
+                ProsodyKernelsTest.tone(330, 0.4, 16_837));
+        long[] lengths = clips.stream().mapToLong(c -> c.length * 2L).toArray();
+        OpenSmileProsodyExtractor.BatchLayout layout = new OpenSmileProsodyExtractor.BatchLayout(lengths);
+
+        float[] combined = new float[(int) (layout.totalBytes / 2)];
+        for (int i = 0; i < clips.size(); i++) {
+            System.arraycopy(clips.get(i), 0, combined, (int) (layout.starts[i] / 2), clips.get(i).length);
+        }
+        double[][] contours = kernels.contours(combined);
+
+        for (int i = 0; i < clips.size(); i++) {
+            float[] clip = clips.get(i);
+            int from = (int) (layout.starts[i] / 2) / ProsodyKernels.FRAME_STEP;
+            int frames = 1 + (clip.length - ProsodyKernels.FRAME_SIZE) / ProsodyKernels.FRAME_STEP;
+
+            ProsodyFeatures alone = kernels.extract(clip);
+            ProsodyFeatures batched = kernels.functionals(contours, from, from + frames);
+
+            assertEquals(alone.getPitch(), batched.getPitch(), alone.getPitch() * 0.02, "pitch of clip " + i);
+            assertEquals(alone.getEnergy(), batched.getEnergy(), alone.getEnergy() * 0.02, "energy of clip " + i);
+            assertEquals(alone.getZcr(), batched.getZcr(), alone.getZcr() * 0.02, "zcr of clip " + i);
+            assertEquals(alone.getVoiceProb(), batched.getVoiceProb(), 0.02, "voiceProb of clip " + i);
+            assertEquals(alone.getTone(), batched.getTone(), Math.abs(alone.getTone()) * 0.02 + 0.05,
+                    "mfcc of clip " + i);
+        }
+    }
+
+    /**
+     * Runs only where openSMILE is installed, as on the analysis hosts.
+     */
+    @Test
+    void smileBatchMatchesSingleRuns() throws Exception {
+        assumeTrue(Files.isExecutable(SMILE_BIN) && Files.isReadable(SMILE_CONFIG), "openSMILE not installed");
+        List<Path> wavs = List.of(
+                writeWav(tempDir.resolve("a.wav"), ProsodyKernelsTest.tone(220, 0.6, 2 * ProsodyKernels.SAMPLE_RATE)),
+                writeWav(tempDir.resolve("b.wav"), ProsodyKernelsTest.tone(110, 0.1, 3 * ProsodyKernels.SAMPLE_RATE)));
+
+        OpenSmileProsodyExtractor single = new OpenSmileProsodyExtractor();
+        ReflectionTestUtils.setField(single, "batchEnabled", false);
+        OpenSmileProsodyExtractor batched = new OpenSmileProsodyExtractor();
+        ReflectionTestUtils.setField(batched, "batchEnabled", true);
+        ReflectionTestUtils.setField(batched, "maxBatchSize", wavs.size());
+        ReflectionTestUtils.setField(batched, "batchWindowMs", 5_000L);
+        ReflectionTestUtils.setField(batched, "fallbackWorkers", 1);
+        batched.startBatchWorker();
+        try (AnalysisWorkspace workspace = AnalysisWorkspace.create(tempDir, "batch-")) {
+            List<CompletableFuture<ProsodyFeatures>> results = new ArrayList<>();
+            for (Path wav : wavs) {
+                results.add(batched.extractAsync(wav, null, workspace));
+            }
+            for (int i = 0; i < wavs.size(); i++) {
+                ProsodyFeatures expected = single.extract(wavs.get(i), null, workspace);
+                ProsodyFeatures actual = results.get(i).get(2, TimeUnit.MINUTES);
+
+                assertEquals(expected.getPitch(), actual.getPitch(), expected.getPitch() * 0.02);
+                assertEquals(expected.getEnergy(), actual.getEnergy(), expected.getEnergy() * 0.02);
+                assertEquals(expected.getZcr(), actual.getZcr(), expected.getZcr() * 0.02);
+                assertEquals(expected.getVoiceProb(), actual.getVoiceProb(), 0.02);
+            }
+        } finally {
+            batched.stopBatchWorker();
+        }
+    }
+
+    private static Path writeWav(Path path, float[] pcm) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(44 + pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + pcm.length * 2).putInt(0x45564157); // RIFF....WAVE
+        buffer.putInt(0x20746d66).putInt(16) // "fmt "
+                .putShort((short) 1).putShort((short) 1)
+                .putInt(ProsodyKernels.SAMPLE_RATE).putInt(ProsodyKernels.SAMPLE_RATE * 2)
+                .putShort((short) 2).putShort((short) 16);
+        buffer.putInt(0x61746164).putInt(pcm.length * 2); // "data"
+        for (float sample : pcm) {
+            buffer.putShort((short) Math.round(sample * 32767f));
+        }
+        return Files.write(path, buffer.array());
+    }
+}
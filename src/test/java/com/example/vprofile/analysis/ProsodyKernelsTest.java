@@ -0,0 +1,136 @@
+package com.example.vprofile.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ProsodyKernelsTest {
+
+    private static final int PITCH_SPAN = ProsodyKernels.YIN_WINDOW + ProsodyKernels.TAU_MAX;
+
+    static float[] tone(double hz, double amplitude, int samples) {
+        float[] x = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            x[i] = (float) (amplitude * Math.sin(2 * Math.PI * hz * i / ProsodyKernels.SAMPLE_RATE));
+        }
+        return x;
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = { 100, 200, 330 })
+    void yinFindsPitchOfSyntheticTone(double hz) {
+        double[] diff = new double[ProsodyKernels.TAU_MAX + 1];
+        double[] voicing = new double[1];
+
+        double f0 = ProsodyKernels.yin(tone(hz, 0.5, PITCH_SPAN), 0, diff, voicing);
+
+        assertEquals(hz, f0, hz * 0.01);
+        assertTrue(voicing[0] > 0.9, "voicing " + voicing[0]);
+    }
+
+    @Test
+    void yinReportsSilenceAsUnvoiced() {
+        double[] diff = new double[ProsodyKernels.TAU_MAX + 1];
+        double[] voicing = new double[1];
+
+        assertEquals(0, ProsodyKernels.yin(new float[PITCH_SPAN], 0, diff, voicing));
+        assertEquals(0, voicing[0]);
+    }
+
+    @Test
+    void yinReportsNoiseAsUnvoiced() {
+        Random random = new Random(7);
+        float[] noise = new float[PITCH_SPAN];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (float) (0.3 * random.nextGaussian());
+        }
+        double[] diff = new double[ProsodyKernels.TAU_MAX + 1];
+        double[] voicing = new double[1];
+
+        assertEquals(0, ProsodyKernels.yin(noise, 0, diff, voicing));
+        assertTrue(voicing[0] < 0.5, "voicing " + voicing[0]);
+    }
+
+    @Test
+    void rmsOfSineIsAmplitudeOverRootTwo() {
+        // 200 Hz fills the frame with exactly five periods
+        float[] x = tone(200, 0.5, ProsodyKernels.FRAME_SIZE);
+
+        assertEquals(0.5 / Math.sqrt(2), ProsodyKernels.rms(x, 0, ProsodyKernels.FRAME_SIZE), 1e-4);
+    }
+
+    @Test
+    void zcrOfSineIsTwiceItsFrequencyPerSample() {
+        float[] x = tone(200, 0.5, ProsodyKernels.FRAME_SIZE);
+
+        assertEquals(2 * 200.0 / ProsodyKernels.SAMPLE_RATE,
+                ProsodyKernels.zcr(x, 0, ProsodyKernels.FRAME_SIZE), 2.0 / ProsodyKernels.FRAME_SIZE);
+    }
+
+    @Test
+    void constantSignalHasNoCrossings() {
+        float[] x = new float[ProsodyKernels.FRAME_SIZE];
+        Arrays.fill(x, 0.25f);
+
+        assertEquals(0.25, ProsodyKernels.rms(x, 0, x.length), 1e-9);
+        assertEquals(0, ProsodyKernels.zcr(x, 0, x.length));
+    }
+
+    @Test
+    void mfccOfSilenceIsFlatCepstrum() {
+        float[] x = new float[ProsodyKernels.FRAME_SIZE];
+        double[] re = new double[ProsodyKernels.FFT_SIZE];
+        double[] im = new double[ProsodyKernels.FFT_SIZE];
+        double[] bands = new double[ProsodyKernels.MEL_BANDS];
+
+        // Every band sits at the floor, so only c0 is non-zero
+        double c0 = Math.sqrt(2.0 / ProsodyKernels.MEL_BANDS) * ProsodyKernels.MEL_BANDS
+                * Math.log(ProsodyKernels.MEL_FLOOR);
+        assertEquals(c0, ProsodyKernels.mfcc(x, 0, 0, re, im, bands), 1e-9);
+        for (int c = 1; c <= 12; c++) {
+            assertEquals(0, ProsodyKernels.mfcc(x, 0, c, re, im, bands), 1e-9, "c" + c);
+        }
+    }
+
+    @Test
+    void mfccOfToneIsFiniteAndNotFlat() {
+        float[] x = tone(200, 0.5, ProsodyKernels.FRAME_SIZE);
+        double[] re = new double[ProsodyKernels.FFT_SIZE];
+        double[] im = new double[ProsodyKernels.FFT_SIZE];
+        double[] bands = new double[ProsodyKernels.MEL_BANDS];
+
+        for (int c = 0; c <= 12; c++) {
+            double value = ProsodyKernels.mfcc(x, 0, c, re, im, bands);
+            assertTrue(Double.isFinite(value), "c" + c);
+        }
+        assertTrue(Math.abs(ProsodyKernels.mfcc(x, 0, 4, re, im, bands)) > 1);
+    }
+
+    @Test
+    void fftPutsCosineInItsBin() {
+        double[] re = new double[ProsodyKernels.FFT_SIZE];
+        double[] im = new double[ProsodyKernels.FFT_SIZE];
+        for (int n = 0; n < re.length; n++) {
+            re[n] = Math.cos(2 * Math.PI * 8 * n / ProsodyKernels.FFT_SIZE);
+        }
+
+        ProsodyKernels.fft(re, im);
+
+        assertEquals(ProsodyKernels.FFT_SIZE / 2.0, Math.hypot(re[8], im[8]), 1e-6);
+        assertEquals(0, Math.hypot(re[9], im[9]), 1e-6);
+    }
+
+    @Test
+    void smaMeanOfConstantContourIsTheConstant() {
+        double[] contour = { 3, 3, 3, 3 };
+
+        assertEquals(3, ProsodyKernels.smaMean(contour, contour.length), 1e-12);
+        assertEquals(0, ProsodyKernels.smaMean(contour, 0));
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.vprofile.score;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.vprofile.analysis.AnalysisCacheService;
+import com.example.vprofile.videofolder.VideoRepository;
+
+/**
+ * Scores the same clip on the calling thread ({@code facial.parallel=false},
+ * the pre-pool behaviour) and on the detection pool, and expects identical
+ * results. Tracking is off so that chunk boundaries cannot change which
+ * frames get a full search. The clip has to yield faces in both runs, so the
+ * comparison cannot pass on two empty results. Set
+ * {@code -Dfacial.fixture=<clip>} to run it on a real recording instead of the
+ * generated one.
+ */
+class FacialScoringServiceTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int SECONDS = 30;
+
+    @TempDir
+    static Path tempDir;
+
+    private static String clip;
+
+    @BeforeAll
+    static void prepareClip() throws Exception {
+        clip = System.getProperty("facial.fixture");
+        if (clip == null) {
+            clip = writeSyntheticClip(tempDir.resolve("faces.mp4")).toString();
+        }
+    }
+
+    @Test
+    void parallelDetectionScoresLikeSequential() throws Exception {
+        ScoredRun sequential = score(false, 1);
+        ScoredRun parallel = score(true, 4);
+
+        assertTrue(sequential.framesWithFaces > 0, "no faces detected in " + clip);
+        assertEquals(sequential.framesWithFaces, parallel.framesWithFaces);
+        assertEquals(sequential.scoring.getSmileScore(), parallel.scoring.getSmileScore());
+        assertEquals(sequential.scoring.getEyeContactScore(), parallel.scoring.getEyeContactScore());
+        assertEquals(sequential.scoring.getStraightFaceScore(), parallel.scoring.getStraightFaceScore());
+        assertEquals(sequential.scoring.getTotalScore(), parallel.scoring.getTotalScore());
+    }
+
+    private static ScoredRun score(boolean parallel, int threads) throws Exception {
+        FacialScoringRepository facialScoringRepository = mock(FacialScoringRepository.class);
+        FacialScoringService service = new FacialScoringService(threads);
+        ReflectionTestUtils.setField(service, "sampleFps", 1.0);
+        ReflectionTestUtils.setField(service, "parallel", parallel);
+        ReflectionTestUtils.setField(service, "tracking", false);
+        ReflectionTestUtils.setField(service, "trackChunk", 8);
+        ReflectionTestUtils.setField(service, "facialScoringRepository", facialScoringRepository);
+        ReflectionTestUtils.setField(service, "totalScoreService", mock(TotalScoreService.class));
+        ReflectionTestUtils.setField(service, "videoRepository", mock(VideoRepository.class));
+        ReflectionTestUtils.setField(service, "analysisCacheService", mock(AnalysisCacheService.class));
+        try {
+            double total = service.analyzeVideoAndScore(clip, 1L);
+            assertNotEquals(-1, total, "no frames decoded from " + clip);
+            ArgumentCaptor<FacialScoring> saved = ArgumentCaptor.forClass(FacialScoring.class);
+            verify(facialScoringRepository).save(saved.capture());
+            assertEquals(total, saved.getValue().getTotalScore());
+
+            // Same detection pass again, to see how many frames it found a face in
+            long framesWithFaces = FacialScoringService.framesWithFaces(service.detectFrames(clip, 1L, parallel));
+            return new ScoredRun(saved.getValue(), framesWithFaces);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static final class ScoredRun {
+        final FacialScoring scoring;
+        final long framesWithFaces;
+
+        ScoredRun(FacialScoring scoring, long framesWithFaces) {
+            this.scoring = scoring;
+            this.framesWithFaces = framesWithFaces;
+        }
+    }
+
+    /**
+     * A cartoon face drifting and pausing across a textured background, with
+     * the mouth opening every few seconds, at 5 fps.
+     */
+    private static Path writeSyntheticClip(Path path) throws Exception {
+        int fps = 5;
+        try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(path.toFile(), WIDTH, HEIGHT);
+                OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat()) {
+            recorder.setFormat("mp4");
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_MPEG4);
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+            recorder.setFrameRate(fps);
+            recorder.setVideoQuality(2);
+            recorder.start();
+
+            Mat frame = new Mat(HEIGHT, WIDTH, opencv_core.CV_8UC3);
+            for (int i = 0; i < SECONDS * fps; i++) {
+                drawFace(frame, i, fps);
+                recorder.record(converter.convert(frame));
+            }
+            frame.release();
+            recorder.stop();
+        }
+        return path;
+    }
+
+    private static void drawFace(Mat frame, int index, int fps) {
+        int second = index / fps;
+        frame.put(new Scalar(90, 100, 110, 0));
+        for (int x = 0; x < WIDTH; x += 40) {
+            opencv_imgproc.line(frame, new Point(x, 0), new Point(x, HEIGHT), new Scalar(70, 80, 90, 0));
+        }
+
+        // Still for four seconds, then a jump, so stillness is neither 0 nor 100%
+        int cx = 220 + (second / 4 % 3) * 100;
+        int cy = 240 + (second / 4 % 2) * 20;
+        Scalar skin = new Scalar(150, 180, 220, 0);
+        Scalar dark = new Scalar(30, 30, 40, 0);
+        opencv_imgproc.ellipse(frame, new Point(cx, cy), new Size(90, 120), 0, 0, 360, skin, -1, 8, 0);
+        opencv_imgproc.ellipse(frame, new Point(cx - 35, cy - 30), new Size(18, 10), 0, 0, 360, dark, -1, 8, 0);
+        opencv_imgproc.ellipse(frame, new Point(cx + 35, cy - 30), new Size(18, 10), 0, 0, 360, dark, -1, 8, 0);
+        opencv_imgproc.rectangle(frame, new Point(cx - 55, cy - 55), new Point(cx - 15, cy - 48), dark, -1, 8, 0);
+        opencv_imgproc.rectangle(frame, new Point(cx + 15, cy - 55), new Point(cx + 55, cy - 48), dark, -1, 8, 0);
+        int mouth = second % 5 < 2 ? 20 : 6;
+        opencv_imgproc.ellipse(frame, new Point(cx, cy + 55), new Size(35, mouth), 0, 0, 180, dark, -1, 8, 0);
+    }
+}
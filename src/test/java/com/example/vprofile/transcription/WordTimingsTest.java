@@ -0,0 +1,98 @@
+package com.example.vprofile.transcription;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WordTimingsTest {
+
+    @Test
+    void roundTripsTimingsAndText() {
+        List<WordTimings.Word> words = List.of(
+                new WordTimings.Word("hello", 0, 120),
+                new WordTimings.Word("world", 400, 900),
+                new WordTimings.Word("again", 70_000, 70_350));
+
+        List<WordTimings.Word> decoded = WordTimings.decode(WordTimings.encode(words));
+
+        assertWords(words, decoded);
+    }
+
+    @Test
+    void valuesAbove127TakeSeveralVarintBytes() {
+        // Gap 200 and duration 16384 need two and three bytes; the text length fits in one
+        List<WordTimings.Word> words = List.of(new WordTimings.Word("a", 200, 200 + 16_384));
+
+        byte[] encoded = WordTimings.encode(words);
+
+        assertEquals(2 + 3 + 1 + 1, encoded.length);
+        assertWords(words, WordTimings.decode(encoded));
+    }
+
+    @Test
+    void multiByteUtf8TextKeepsItsBytesAndLength() {
+        List<WordTimings.Word> words = List.of(
+                new WordTimings.Word("naïve", 0, 300),
+                new WordTimings.Word("नमस्ते", 350, 800),
+                new WordTimings.Word("👍", 900, 950),
+                new WordTimings.Word("ok", 1000, 1100));
+
+        assertWords(words, WordTimings.decode(WordTimings.encode(words)));
+    }
+
+    @Test
+    void longUtf8TextNeedsTwoByteLength() {
+        String text = "é".repeat(100); // 200 bytes
+        List<WordTimings.Word> words = List.of(new WordTimings.Word(text, 5, 10), new WordTimings.Word("x", 20, 30));
+
+        assertWords(words, WordTimings.decode(WordTimings.encode(words)));
+    }
+
+    @Test
+    void overlappingWordsAreClampedToThePreviousEnd() {
+        List<WordTimings.Word> decoded = WordTimings.decode(WordTimings.encode(List.of(
+                new WordTimings.Word("first", 100, 500),
+                new WordTimings.Word("starts-early", 300, 700),
+                new WordTimings.Word("inside", 350, 450))));
+
+        assertEquals(100, decoded.get(0).getStartMs());
+        assertEquals(500, decoded.get(0).getEndMs());
+        // Starts before the previous word ended: moved to its end, end kept
+        assertEquals(500, decoded.get(1).getStartMs());
+        assertEquals(700, decoded.get(1).getEndMs());
+        // Wholly inside the previous word: collapses to zero length at its end
+        assertEquals(700, decoded.get(2).getStartMs());
+        assertEquals(700, decoded.get(2).getEndMs());
+        for (int i = 1; i < decoded.size(); i++) {
+            assertTrue(decoded.get(i).getStartMs() >= decoded.get(i - 1).getEndMs());
+        }
+    }
+
+    @Test
+    void endBeforeStartBecomesZeroLength() {
+        List<WordTimings.Word> decoded = WordTimings.decode(WordTimings.encode(List.of(
+                new WordTimings.Word("odd", 400, 100))));
+
+        assertEquals(400, decoded.get(0).getStartMs());
+        assertEquals(400, decoded.get(0).getEndMs());
+    }
+
+    @Test
+    void emptyAndNullDecodeToNoWords() {
+        assertEquals(0, WordTimings.encode(List.of()).length);
+        assertTrue(WordTimings.decode(new byte[0]).isEmpty());
+        assertTrue(WordTimings.decode(null).isEmpty());
+    }
+
+    private static void assertWords(List<WordTimings.Word> expected, List<WordTimings.Word> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getText(), actual.get(i).getText());
+            assertEquals(expected.get(i).getStartMs(), actual.get(i).getStartMs());
+            assertEquals(expected.get(i).getEndMs(), actual.get(i).getEndMs());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.vprofile.voicesearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link InvertedIndex#match} against the scan it replaced, which counted a
+ * keyword as found when it was a substring of the lower-cased text.
+ */
+class InvertedIndexTest {
+
+    private static final String[] VOCABULARY = {
+        "Java", "JavaScript", "C++", "C", "C#", "front-end", "back-end", "Node.js", "React",
+        "Spring-Boot", "SQL", "NoSQL", "ML", "HTML5", "5G", "end-to-end", "e-commerce", "and", "the",
+        "developer", "devops", "K8s", "+91", "a", "x"
+    };
+    private static final String[] SEPARATORS = { " ", ", ", ". ", "\n", "/", " (", ") ", ";" };
+
+    private final Map<Long, String> texts = new LinkedHashMap<>();
+    private final Map<Long, String> jobs = new HashMap<>();
+    private final InvertedIndex index = new InvertedIndex();
+
+    private void put(long videoId, String jobId, String text) {
+        texts.put(videoId, text);
+        jobs.put(videoId, jobId);
+        index.put(videoId, jobId, text);
+    }
+
+    /**
+     * The previous scan: percentage of keywords contained in the text.
+     */
+    private Map<Long, Integer> scan(List<String> keywords, String jobId, int minPercentage) {
+        Map<Long, Integer> result = new HashMap<>();
+        texts.forEach((videoId, text) -> {
+            if (jobId != null && !jobId.equals(jobs.get(videoId))) {
+                return;
+            }
+            String lower = text.toLowerCase();
+            int matched = 0;
+            for (String keyword : keywords) {
+                if (lower.contains(keyword)) {
+                    matched++;
+                }
+            }
+            int percentage = (int) Math.round((matched * 100.0) / keywords.size());
+            if (matched > 0 && percentage >= minPercentage) {
+                result.put(videoId, percentage);
+            }
+        });
+        return result;
+    }
+
+    private void assertMatchesScan(List<String> keywords) {
+        assertEquals(scan(keywords, null, 20), index.match(keywords, null, 20), keywords.toString());
+    }
+
+    @Test
+    void keywordMatchesPartOfAWord() {
+        put(1, null, "Five years of JavaScript");
+        put(2, null, "Java and Spring");
+
+        assertMatchesScan(List.of("java"));
+        assertMatchesScan(List.of("script"));
+        assertMatchesScan(List.of("ava"));
+        assertEquals(Map.of(1L, 100, 2L, 100), index.match(List.of("java"), null, 20));
+    }
+
+    @Test
+    void hyphenatedTermsMatchWholeAndInPart() {
+        put(1, null, "Built the front-end and the back-end");
+        put(2, null, "End to end testing");
+        put(3, null, "Frontend work");
+
+        assertMatchesScan(List.of("front-end"));
+        assertMatchesScan(List.of("end"));
+        assertMatchesScan(List.of("-end"));
+        assertMatchesScan(List.of("t-e"));
+        assertMatchesScan(List.of("frontend"));
+        assertEquals(Map.of(1L, 100), index.match(List.of("front-end"), null, 20));
+    }
+
+    @Test
+    void plusSignsAreMatchedLiterally() {
+        put(1, null, "Skilled in C++ and C#");
+        put(2, null, "Call me on +91 98765");
+        put(3, null, "C programming");
+
+        assertMatchesScan(List.of("c++"));
+        assertMatchesScan(List.of("c+"));
+        assertMatchesScan(List.of("++"));
+        assertMatchesScan(List.of("+91"));
+        assertEquals(Map.of(1L, 100), index.match(List.of("c++"), null, 20));
+    }
+
+    @Test
+    void punctuationSplitsTerms() {
+        put(1, null, "Node.js, React/Redux; SQL(Postgres)");
+
+        assertMatchesScan(List.of("node", "js", "redux", "postgres"));
+        assertMatchesScan(List.of("nodejs"));
+        assertMatchesScan(List.of("sql", "nosql"));
+    }
+
+    @Test
+    void percentageRoundsLikeTheScanAndRespectsTheMinimum() {
+        put(1, null, "java spring");
+        put(2, null, "java");
+
+        List<String> keywords = List.of("java", "spring", "kafka");
+        assertEquals(Map.of(1L, 67, 2L, 33), index.match(keywords, null, 20));
+        assertEquals(Map.of(1L, 67), index.match(keywords, null, 50));
+        assertEquals(scan(keywords, null, 50), index.match(keywords, null, 50));
+    }
+
+    @Test
+    void jobFilterAndRemovalLimitTheMatches() {
+        put(1, "job-a", "java developer");
+        put(2, "job-b", "java developer");
+        put(3, "job-a", "java developer");
+        index.remove(3);
+        texts.remove(3L);
+
+        assertEquals(scan(List.of("java"), "job-a", 20), index.match(List.of("java"), "job-a", 20));
+        assertEquals(Map.of(1L, 100), index.match(List.of("java"), "job-a", 20));
+        assertEquals(Map.of(), index.match(List.of("java"), "job-c", 20));
+    }
+
+    @Test
+    void randomTextsMatchLikeTheScan() {
+        Random random = new Random(42);
+        for (long videoId = 1; videoId <= 300; videoId++) {
+            StringBuilder text = new StringBuilder();
+            int words = 1 + random.nextInt(12);
+            for (int i = 0; i < words; i++) {
+                text.append(VOCABULARY[random.nextInt(VOCABULARY.length)])
+                        .append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            put(videoId, "job-" + random.nextInt(3), text.toString());
+        }
+
+        // Keywords as extractKeywords produces them: [a-z0-9+-], at least two characters
+        String[] keywords = {
+            "java", "script", "c++", "c+", "++", "front-end", "-end", "end", "to-end", "node", "js",
+            "sql", "ql", "html5", "5g", "boot", "spring-boot", "e-commerce", "dev", "ops", "k8s", "+91",
+            "react", "kafka", "an", "ml"
+        };
+        for (int round = 0; round < 200; round++) {
+            int count = 1 + random.nextInt(4);
+            List<String> query = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                query.add(keywords[random.nextInt(keywords.length)]);
+            }
+            String jobId = random.nextBoolean() ? null : "job-" + random.nextInt(3);
+            int min = random.nextBoolean() ? 20 : 1 + random.nextInt(100);
+            assertEquals(scan(query, jobId, min), index.match(query, jobId, min), query + " in " + jobId);
+        }
+    }
+}